@@ -0,0 +1,151 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.bench;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+
+/**
+ * ベンチマーク用の日本語・英語まじりのテキストとフレーズを生成する
+ * 
+ * 乱数の種を固定しているので、何度実行しても同じテキストが生成される。
+ * 外部のデータを使わないので、オフラインで実行できる。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class Corpus {
+
+  private static final String KATAKANA = "アイウエオカキクケコサシスセソタチツテトナニヌネノハヒフヘホマミムメモヤユヨラリルレロワン";
+  private static final String HIRAGANA = "あいうえおかきくけこさしすせそたちつてとなにぬねのはひふへほまみむめもやゆよらりるれろわん";
+  private static final String KANJI = "日本語文字検索独立語句仮想通貨記事閲覧代表冬季大会結果車両型番速度基盤期待";
+  private static final String ZENKAKU_NUMERIC = "０１２３４５６７８９";
+  private static final String HANKAKU_NUMERIC = "0123456789";
+  private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+  private static final String ALPHA_NUMERIC = ALPHABET + HANKAKU_NUMERIC;
+
+  // 語と語の間に入れる区切り
+  private static final String[] SEPARATORS = { " ", "、", "。", "の", "は", "を", "が", "に", "（", "）", ", ", ". " };
+
+  private Corpus() {
+  }
+
+  /**
+   * 分析モードに対応する語を生成する
+   * 
+   * @param random
+   * @param mode
+   * @param length
+   * @return
+   */
+  public static String word(Random random, PhraseAnalysisMode mode, int length) {
+    switch (mode) {
+    case ZENKAKU_KATAKANA:
+      return randomString(random, KATAKANA, length);
+    case ZENKAKU_HIRAGANA:
+      return randomString(random, HIRAGANA, length);
+    case ZENKAKU_KANJI:
+      return randomString(random, KANJI, length);
+    case ZENKAKU_NUMERIC_ONLY:
+      return randomString(random, ZENKAKU_NUMERIC, length);
+    case HANKAKU_NUMERIC_ONLY:
+      return randomString(random, HANKAKU_NUMERIC, length);
+    case HANKAKU_ALPHABET_ONLY:
+      return randomString(random, ALPHABET, length);
+    default:
+      // 英字と数字の両方を含むようにする
+      return randomString(random, ALPHABET, 1) + randomString(random, ALPHA_NUMERIC, length - 2) + randomString(random, HANKAKU_NUMERIC, 1);
+    }
+  }
+
+  /**
+   * UNKNOWN以外の分析モードを返す
+   * 
+   * @return
+   */
+  public static List<PhraseAnalysisMode> knownModes() {
+    final List<PhraseAnalysisMode> modes = new ArrayList<PhraseAnalysisMode>();
+    for (PhraseAnalysisMode mode : PhraseAnalysisMode.values()) {
+      if (mode != PhraseAnalysisMode.UNKNOWN) {
+        modes.add(mode);
+      }
+    }
+    return modes;
+  }
+
+  /**
+   * いろいろな分析モードの、重複しないフレーズを生成する
+   * 
+   * @param seed
+   * @param numOfPhrases
+   * @return
+   */
+  public static List<String> phrases(long seed, int numOfPhrases) {
+    final Random random = new Random(seed);
+    final List<PhraseAnalysisMode> modes = knownModes();
+    final Set<String> phrases = new LinkedHashSet<String>();
+    while (phrases.size() < numOfPhrases) {
+      phrases.add(word(random, modes.get(random.nextInt(modes.size())), 2 + random.nextInt(7)));
+    }
+    return new ArrayList<String>(phrases);
+  }
+
+  /**
+   * 指定した長さのテキストを生成する
+   * 
+   * 生成する語のうち、hitRatioの割合で指定したフレーズのいずれかを入れる
+   * 
+   * @param seed
+   * @param length
+   * @param phrases
+   * @param hitRatio
+   * @return
+   */
+  public static String text(long seed, int length, List<String> phrases, double hitRatio) {
+    final Random random = new Random(seed);
+    final List<PhraseAnalysisMode> modes = knownModes();
+    final StringBuilder sb = new StringBuilder(length + 16);
+    while (sb.length() < length) {
+      if (!phrases.isEmpty() && random.nextDouble() < hitRatio) {
+        sb.append(phrases.get(random.nextInt(phrases.size())));
+      } else {
+        sb.append(word(random, modes.get(random.nextInt(modes.size())), 2 + random.nextInt(7)));
+      }
+      sb.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+    }
+    sb.setLength(length);
+    return sb.toString();
+  }
+
+  private static String randomString(Random random, String chars, int length) {
+    final StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append(chars.charAt(random.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,83 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.bench;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.riversun.phrasef.PhraseFinder;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.PhrasefResult;
+
+/**
+ * 分析モードごとのPhraseFinder#findPhraseの性能を測る
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindPhraseBenchmark {
+
+  @Param({ "ZENKAKU_KATAKANA", "ZENKAKU_HIRAGANA", "ZENKAKU_KANJI", "ZENKAKU_NUMERIC_ONLY", "HANKAKU_NUMERIC_ONLY", "HANKAKU_ALPHABET_ONLY", "HANKAKU_ALPHA_NUMERIC" })
+  public PhraseAnalysisMode mode;
+
+  // dense:フレーズが多く含まれるテキスト、sparse:ほとんど含まれないテキスト
+  @Param({ "dense", "sparse" })
+  public String density;
+
+  @Param({ "100000" })
+  public int textLength;
+
+  private final PhraseFinder mFinder = new PhraseFinder();
+
+  private String mPhrase;
+
+  private String mText;
+
+  @Setup
+  public void setup() {
+    mPhrase = Corpus.word(new Random(mode.ordinal()), mode, 4);
+    mText = Corpus.text(1L, textLength, Collections.singletonList(mPhrase), "dense".equals(density) ? 0.2 : 0.0005);
+  }
+
+  @Benchmark
+  public PhrasefResult findPhrase() {
+    return mFinder.findPhrase(mText, mPhrase);
+  }
+}
@@ -0,0 +1,117 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.riversun.phrasef.PhraseFinder;
+import org.riversun.phrasef.PhraseFinder.HintMode;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+import org.riversun.phrasef.PhraseSet;
+
+/**
+ * 辞書の大きさとヒットの密度ごとのPhraseFinder#findPhrasesの性能を測る
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FindPhrasesBenchmark {
+
+  @Param({ "10", "100", "1000", "10000" })
+  public int dictionarySize;
+
+  // dense:フレーズが多く含まれるテキスト、sparse:ほとんど含まれないテキスト
+  @Param({ "dense", "sparse" })
+  public String density;
+
+  @Param({ "100000" })
+  public int textLength;
+
+  // EAGERではヒットしたフレーズごとにテキスト全体のヒントを作るので、その影響も測れるようにする
+  @Param({ "EAGER", "NONE" })
+  public HintMode hintMode;
+
+  private final PhraseFinder mFinder = new PhraseFinder();
+
+  private List<String> mPhrases;
+
+  private PhraseSet mPhraseSet;
+
+  private String mText;
+
+  @Setup
+  public void setup() {
+    mFinder.setHintMode(hintMode);
+    mPhrases = Corpus.phrases(1L, dictionarySize);
+    mPhraseSet = PhraseSet.compile(mPhrases);
+    mText = Corpus.text(2L, textLength, mPhrases, "dense".equals(density) ? 0.2 : 0.0005);
+  }
+
+  /**
+   * フレーズのリストで検索する（呼ぶたびにフレーズ群をコンパイルする）
+   * 
+   * @return
+   */
+  @Benchmark
+  public PhrasefResultSet findPhrases() {
+    return mFinder.findPhrases(mText, mPhrases);
+  }
+
+  /**
+   * コンパイル済みのフレーズ群で検索する
+   * 
+   * @return
+   */
+  @Benchmark
+  public PhrasefResultSet findPhrasesCompiled() {
+    return mFinder.findPhrases(mText, mPhraseSet);
+  }
+
+  /**
+   * コンパイル済みのフレーズ群で検索し、検出位置だけを得る
+   * 
+   * @return
+   */
+  @Benchmark
+  public PhrasefCompactResult findPhrasesCompact() {
+    return mFinder.findPhrasesCompact(mText, mPhraseSet);
+  }
+}
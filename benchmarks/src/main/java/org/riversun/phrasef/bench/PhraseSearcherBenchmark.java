@@ -0,0 +1,120 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseSearcher;
+
+/**
+ * フレーズの候補の探し方（String#indexOfとHorspool法）ごとの性能を測る
+ * 
+ * テキスト全体から、フレーズのすべての出現位置を探す
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhraseSearcherBenchmark {
+
+  @Param({ "4", "8", "16", "32", "64" })
+  public int phraseLength;
+
+  // katakana:カタカナのテキストとフレーズ、alphabet:英字のテキストとフレーズ、
+  // nearMiss:フレーズの末尾以外と一致する部分が繰り返し出現するカタカナのテキスト
+  @Param({ "katakana", "alphabet", "nearMiss" })
+  public String textType;
+
+  @Param({ "100000" })
+  public int textLength;
+
+  private String mText;
+
+  private PhraseSearcher mIndexOf;
+
+  private PhraseSearcher mHorspool;
+
+  @Setup
+  public void setup() {
+    final Random random = new Random(phraseLength);
+    final String phrase;
+    final StringBuilder sb = new StringBuilder(textLength);
+    if ("alphabet".equals(textType)) {
+      phrase = Corpus.word(random, PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY, phraseLength);
+      while (sb.length() < textLength) {
+        sb.append(Corpus.word(random, PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY, 8)).append(' ');
+      }
+    } else {
+      phrase = Corpus.word(random, PhraseAnalysisMode.ZENKAKU_KATAKANA, phraseLength);
+      final String nearMiss = phrase.substring(0, phrase.length() - 1);
+      while (sb.length() < textLength) {
+        if ("nearMiss".equals(textType)) {
+          sb.append(nearMiss);
+        }
+        sb.append(Corpus.word(random, PhraseAnalysisMode.ZENKAKU_KATAKANA, 8)).append('、');
+      }
+    }
+    sb.setLength(textLength - phrase.length());
+    sb.append(phrase);
+    mText = sb.toString();
+    mIndexOf = PhraseSearcher.INDEX_OF.compile(phrase);
+    mHorspool = PhraseSearcher.HORSPOOL.compile(phrase);
+  }
+
+  @Benchmark
+  public int indexOf() {
+    return countAll(mIndexOf);
+  }
+
+  @Benchmark
+  public int horspool() {
+    return countAll(mHorspool);
+  }
+
+  private int countAll(PhraseSearcher searcher) {
+    int count = 0;
+    int index = searcher.indexOf(mText, 0);
+    while (index >= 0) {
+      count++;
+      index = searcher.indexOf(mText, index + searcher.getPhrase().length());
+    }
+    return count;
+  }
+}
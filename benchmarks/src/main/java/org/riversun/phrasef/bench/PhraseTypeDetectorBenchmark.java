@@ -0,0 +1,129 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.riversun.phrasef.PhraseTypeDetector;
+
+/**
+ * PhraseTypeDetectorの判定メソッドの性能を測る
+ * 
+ * いろいろな文字種別の語に対して、それぞれの判定を行う
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhraseTypeDetectorBenchmark {
+
+  private String[] mWords;
+
+  private String mText;
+
+  @Setup
+  public void setup() {
+    final List<String> words = Corpus.phrases(3L, 1000);
+    mWords = words.toArray(new String[0]);
+    mText = Corpus.text(4L, 10000, words, 0.0);
+  }
+
+  @Benchmark
+  public void isZenkakuKatakanaOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isZenkakuKatakanaOnly(word));
+    }
+  }
+
+  @Benchmark
+  public void isZenkakuHiraganaOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isZenkakuHiraganaOnly(word));
+    }
+  }
+
+  @Benchmark
+  public void isZenkakuKanjiOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isZenkakuKanjiOnly(word));
+    }
+  }
+
+  @Benchmark
+  public void isZenkakuNumericOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isZenkakuNumericOnly(word));
+    }
+  }
+
+  @Benchmark
+  public void isHankakuNumericOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isHankakuNumericOnly(word));
+    }
+  }
+
+  @Benchmark
+  public void isHankakuAlphabetOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isHankakuAlphabetOnly(word));
+    }
+  }
+
+  @Benchmark
+  public void isHankakuAlphaNumericOnly(Blackhole bh) {
+    for (String word : mWords) {
+      bh.consume(PhraseTypeDetector.isHankakuAlphaNumericOnly(word));
+    }
+  }
+
+  /**
+   * 境界判定で使う、１文字ずつの文字種別の判定
+   * 
+   * @return
+   */
+  @Benchmark
+  public int getCharClass() {
+    int sum = 0;
+    for (int i = 0; i < mText.length(); i++) {
+      sum += PhraseTypeDetector.getCharClass(mText.charAt(i));
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,308 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.server;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 最小限のJSONの読み書き
+ * 
+ * 読み込んだ値は、オブジェクトはMap、配列はList、数値はDouble、文字列はString、真偽値はBoolean、nullはnullになる。<br>
+ * オブジェクトと配列の入れ子は{@link #MAX_DEPTH}段までとする（深い入れ子でスタックがあふれないようにする）
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class Json {
+
+  // オブジェクトと配列の入れ子の最大の深さ
+  static final int MAX_DEPTH = 64;
+
+  private final String mText;
+  private int mPos = 0;
+
+  // 現在のオブジェクトと配列の入れ子の深さ
+  private int mDepth = 0;
+
+  private Json(String text) {
+    mText = text;
+  }
+
+  /**
+   * JSON文字列を読み込む
+   * 
+   * @param text
+   * @return
+   * @throws IllegalArgumentException
+   *           JSONとして正しくない場合
+   */
+  static Object parse(String text) {
+    final Json json = new Json(text);
+    json.skipWhitespace();
+    final Object value = json.readValue();
+    json.skipWhitespace();
+    if (json.mPos != text.length()) {
+      throw json.error("unexpected trailing characters");
+    }
+    return value;
+  }
+
+  /**
+   * 文字列をJSONの文字列リテラルとしてoutに書き込む
+   * 
+   * @param out
+   * @param str
+   * @throws IOException
+   */
+  static void writeString(Appendable out, String str) throws IOException {
+    if (str == null) {
+      out.append("null");
+      return;
+    }
+    out.append('"');
+    for (int i = 0; i < str.length(); i++) {
+      final char c = str.charAt(i);
+      switch (c) {
+      case '"':
+        out.append("\\\"");
+        break;
+      case '\\':
+        out.append("\\\\");
+        break;
+      case '\n':
+        out.append("\\n");
+        break;
+      case '\r':
+        out.append("\\r");
+        break;
+      case '\t':
+        out.append("\\t");
+        break;
+      default:
+        if (c < 0x20) {
+          out.append(String.format("\\u%04x", (int) c));
+        } else {
+          out.append(c);
+        }
+      }
+    }
+    out.append('"');
+  }
+
+  private Object readValue() {
+    if (mPos >= mText.length()) {
+      throw error("unexpected end of input");
+    }
+    final char c = mText.charAt(mPos);
+    switch (c) {
+    case '{':
+      enter();
+      final Map<String, Object> map = readObject();
+      mDepth--;
+      return map;
+    case '[':
+      enter();
+      final List<Object> list = readArray();
+      mDepth--;
+      return list;
+    case '"':
+      return readString();
+    case 't':
+      expectWord("true");
+      return Boolean.TRUE;
+    case 'f':
+      expectWord("false");
+      return Boolean.FALSE;
+    case 'n':
+      expectWord("null");
+      return null;
+    default:
+      if (c == '-' || (c >= '0' && c <= '9')) {
+        return readNumber();
+      }
+      throw error("unexpected character '" + c + "'");
+    }
+  }
+
+  private void enter() {
+    if (++mDepth > MAX_DEPTH) {
+      throw error("nesting too deep (max " + MAX_DEPTH + ")");
+    }
+  }
+
+  private Map<String, Object> readObject() {
+    final Map<String, Object> map = new LinkedHashMap<String, Object>();
+    mPos++;
+    skipWhitespace();
+    if (peek() == '}') {
+      mPos++;
+      return map;
+    }
+    while (true) {
+      skipWhitespace();
+      if (peek() != '"') {
+        throw error("object key must be a string");
+      }
+      final String key = readString();
+      skipWhitespace();
+      expect(':');
+      skipWhitespace();
+      map.put(key, readValue());
+      skipWhitespace();
+      if (peek() == ',') {
+        mPos++;
+      } else {
+        expect('}');
+        return map;
+      }
+    }
+  }
+
+  private List<Object> readArray() {
+    final List<Object> list = new ArrayList<Object>();
+    mPos++;
+    skipWhitespace();
+    if (peek() == ']') {
+      mPos++;
+      return list;
+    }
+    while (true) {
+      skipWhitespace();
+      list.add(readValue());
+      skipWhitespace();
+      if (peek() == ',') {
+        mPos++;
+      } else {
+        expect(']');
+        return list;
+      }
+    }
+  }
+
+  private String readString() {
+    mPos++;
+    final StringBuilder sb = new StringBuilder();
+    while (true) {
+      if (mPos >= mText.length()) {
+        throw error("unterminated string");
+      }
+      final char c = mText.charAt(mPos++);
+      if (c == '"') {
+        return sb.toString();
+      }
+      if (c != '\\') {
+        sb.append(c);
+        continue;
+      }
+      if (mPos >= mText.length()) {
+        throw error("unterminated string");
+      }
+      final char e = mText.charAt(mPos++);
+      switch (e) {
+      case '"':
+      case '\\':
+      case '/':
+        sb.append(e);
+        break;
+      case 'b':
+        sb.append('\b');
+        break;
+      case 'f':
+        sb.append('\f');
+        break;
+      case 'n':
+        sb.append('\n');
+        break;
+      case 'r':
+        sb.append('\r');
+        break;
+      case 't':
+        sb.append('\t');
+        break;
+      case 'u':
+        if (mPos + 4 > mText.length()) {
+          throw error("invalid unicode escape");
+        }
+        try {
+          sb.append((char) Integer.parseInt(mText.substring(mPos, mPos + 4), 16));
+        } catch (NumberFormatException ex) {
+          throw error("invalid unicode escape");
+        }
+        mPos += 4;
+        break;
+      default:
+        throw error("invalid escape '\\" + e + "'");
+      }
+    }
+  }
+
+  private Double readNumber() {
+    final int start = mPos;
+    while (mPos < mText.length() && "+-0123456789.eE".indexOf(mText.charAt(mPos)) >= 0) {
+      mPos++;
+    }
+    try {
+      return Double.valueOf(mText.substring(start, mPos));
+    } catch (NumberFormatException e) {
+      throw error("invalid number");
+    }
+  }
+
+  private void expectWord(String word) {
+    if (!mText.startsWith(word, mPos)) {
+      throw error("unexpected token");
+    }
+    mPos += word.length();
+  }
+
+  private void expect(char c) {
+    if (peek() != c) {
+      throw error("'" + c + "' expected");
+    }
+    mPos++;
+  }
+
+  private char peek() {
+    if (mPos >= mText.length()) {
+      throw error("unexpected end of input");
+    }
+    return mText.charAt(mPos);
+  }
+
+  private void skipWhitespace() {
+    while (mPos < mText.length()) {
+      final char c = mText.charAt(mPos);
+      if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+        break;
+      }
+      mPos++;
+    }
+  }
+
+  private IllegalArgumentException error(String message) {
+    return new IllegalArgumentException("Invalid JSON at " + mPos + ": " + message);
+  }
+}
@@ -0,0 +1,700 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import org.riversun.phrasef.ImmutablePhraseFinder;
+import org.riversun.phrasef.PhraseFinder.PhrasePos;
+import org.riversun.phrasef.PhraseFinder.PhrasefResult;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+import org.riversun.phrasef.PhraseSet;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * 名前をつけたコンパイル済みのフレーズ群でテキストを検索する、常駐型のHTTPサーバー
+ * 
+ * JDK付属のHttpServerで動き、既定ではループバックアドレスだけで待ち受ける。<br>
+ * 
+ * <pre>
+ * GET  /phrasesets        登録されたフレーズ群の一覧
+ * POST /scan/{name}       テキストを検索する
+ *   Content-Typeがapplication/json以外 : 本文をそのまま１つのテキストとして検索し、PhrasefResultSetのJSONを返す
+ *   {"text":"..."}                     : １つのテキストを検索し、PhrasefResultSetのJSONを返す
+ *   {"documents":["...", "..."]}       : 複数のテキストを検索し、{"phraseSet":name,"results":[...]}を返す
+ * </pre>
+ * 
+ * 同じフレーズ群に対して同時に届いたリクエストは、短い時間（batchDelayMillis）だけ待ってまとめ、
+ * {@link ImmutablePhraseFinder#findPhrasesInBatchAsync(java.util.Collection, PhraseSet, Executor)}で一度に検索する。<br>
+ * リクエストは上限のあるスレッドプールで処理する。待ち行列があふれた場合は、受付スレッドで処理することで受付を遅らせる。<br>
+ * まとめた検索は、Builderで指定したExecutor（指定しない場合はサーバーが持つスレッド数固定のプール）で行う。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseFinderServer {
+
+  public static final int DEFAULT_PORT = 8080;
+
+  private static final String CONTENT_TYPE_JSON = "application/json; charset=utf-8";
+
+  private final HttpServer mServer;
+  private final ThreadPoolExecutor mRequestExecutor;
+  private final ScheduledExecutorService mBatchExecutor;
+  private final Executor mScanExecutor;
+  private final ExecutorService mOwnedScanExecutor;
+  private final ImmutablePhraseFinder mFinder;
+  private final Map<String, MicroBatcher> mBatchers;
+  private final long mBatchDelayMillis;
+  private final int mMaxBatchSize;
+  private final int mMaxRequestBytes;
+
+  // まとめて検索した回数
+  private final AtomicLong mNumOfBatches = new AtomicLong();
+
+  private PhraseFinderServer(Builder builder) throws IOException {
+
+    mFinder = builder.mFinder != null ? builder.mFinder : new ImmutablePhraseFinder.Builder().build();
+    mBatchDelayMillis = builder.mBatchDelayMillis;
+    mMaxBatchSize = builder.mMaxBatchSize;
+    mMaxRequestBytes = builder.mMaxRequestBytes;
+
+    final Map<String, MicroBatcher> batchers = new LinkedHashMap<String, MicroBatcher>();
+    for (Map.Entry<String, PhraseSet> entry : builder.mPhraseSets.entrySet()) {
+      batchers.put(entry.getKey(), new MicroBatcher(entry.getValue()));
+    }
+    mBatchers = Collections.unmodifiableMap(batchers);
+
+    mRequestExecutor = new ThreadPoolExecutor(builder.mNumOfThreads, builder.mNumOfThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(builder.mMaxQueuedRequests), new ThreadPoolExecutor.CallerRunsPolicy());
+    // まとめる時間を計るタイマー専用（検索はmScanExecutorで行う）
+    mBatchExecutor = Executors.newSingleThreadScheduledExecutor();
+    if (builder.mScanExecutor != null) {
+      mScanExecutor = builder.mScanExecutor;
+      mOwnedScanExecutor = null;
+    } else {
+      mOwnedScanExecutor = Executors.newFixedThreadPool(builder.mNumOfScanThreads);
+      mScanExecutor = mOwnedScanExecutor;
+    }
+
+    mServer = HttpServer.create(new InetSocketAddress(builder.mBindAddress, builder.mPort), builder.mBacklog);
+    mServer.setExecutor(mRequestExecutor);
+    mServer.createContext("/phrasesets", new PhraseSetsHandler());
+    mServer.createContext("/scan/", new ScanHandler());
+  }
+
+  /**
+   * リクエストの受付を開始する
+   */
+  public void start() {
+    mServer.start();
+  }
+
+  /**
+   * サーバーを停止する
+   * 
+   * @param delaySeconds
+   *          処理中のリクエストの完了を待つ最大の秒数
+   */
+  public void stop(int delaySeconds) {
+    mServer.stop(delaySeconds);
+    mRequestExecutor.shutdown();
+    mBatchExecutor.shutdown();
+    if (mOwnedScanExecutor != null) {
+      mOwnedScanExecutor.shutdown();
+    }
+  }
+
+  /**
+   * 待ち受けているアドレスを返す
+   * 
+   * @return
+   */
+  public InetSocketAddress getAddress() {
+    return mServer.getAddress();
+  }
+
+  /**
+   * 待ち受けているポート番号を返す（ポート番号に0を指定した場合は、実際に割り当てられたポート番号）
+   * 
+   * @return
+   */
+  public int getPort() {
+    return mServer.getAddress().getPort();
+  }
+
+  /**
+   * まとめて検索した回数を返す
+   * 
+   * @return
+   */
+  long getNumOfBatches() {
+    return mNumOfBatches.get();
+  }
+
+  /**
+   * 同じフレーズ群に対するリクエストを、短い時間だけ待ってまとめて検索する
+   */
+  private final class MicroBatcher {
+
+    private final PhraseSet mPhraseSet;
+
+    private List<PendingRequest> mPendingRequests = new ArrayList<PendingRequest>();
+    private int mNumOfPendingDocuments = 0;
+    private boolean mFlushScheduled = false;
+
+    MicroBatcher(PhraseSet phraseSet) {
+      mPhraseSet = phraseSet;
+    }
+
+    /**
+     * テキストを検索待ちに加える
+     * 
+     * @param documents
+     * @return documentsと同じ順に並んだ検索結果
+     */
+    CompletableFuture<List<PhrasefResultSet>> submit(List<String> documents) {
+      final PendingRequest request = new PendingRequest(documents);
+      synchronized (MicroBatcher.this) {
+        mPendingRequests.add(request);
+        mNumOfPendingDocuments += documents.size();
+        if (mNumOfPendingDocuments >= mMaxBatchSize) {
+          // - 十分な数のテキストが集まった場合は、待たずに検索する
+          mBatchExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+              flush();
+            }
+          });
+        } else if (!mFlushScheduled) {
+          mFlushScheduled = true;
+          mBatchExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+              flush();
+            }
+          }, mBatchDelayMillis, TimeUnit.MILLISECONDS);
+        }
+      }
+      return request.future;
+    }
+
+    private void flush() {
+
+      final List<PendingRequest> requests;
+      synchronized (MicroBatcher.this) {
+        requests = mPendingRequests;
+        mPendingRequests = new ArrayList<PendingRequest>();
+        mNumOfPendingDocuments = 0;
+        mFlushScheduled = false;
+      }
+      if (requests.isEmpty()) {
+        return;
+      }
+
+      final List<String> documents = new ArrayList<String>();
+      for (PendingRequest request : requests) {
+        documents.addAll(request.documents);
+      }
+
+      // 検索はmScanExecutorで行い、このスレッド（タイマー用）では終了を待たない
+      mNumOfBatches.incrementAndGet();
+      final CompletableFuture<List<PhrasefResultSet>> batch;
+      try {
+        batch = mFinder.findPhrasesInBatchAsync(documents, mPhraseSet, mScanExecutor);
+      } catch (RuntimeException e) {
+        completeExceptionally(requests, e);
+        return;
+      }
+      batch.whenComplete(new BiConsumer<List<PhrasefResultSet>, Throwable>() {
+        @Override
+        public void accept(List<PhrasefResultSet> results, Throwable error) {
+          if (error != null) {
+            completeExceptionally(requests, error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            return;
+          }
+          int from = 0;
+          for (PendingRequest request : requests) {
+            final int to = from + request.documents.size();
+            request.future.complete(results.subList(from, to));
+            from = to;
+          }
+        }
+      });
+    }
+
+    private void completeExceptionally(List<PendingRequest> requests, Throwable error) {
+      for (PendingRequest request : requests) {
+        request.future.completeExceptionally(error);
+      }
+    }
+  }
+
+  /**
+   * 検索待ちのリクエスト
+   */
+  private static final class PendingRequest {
+    final List<String> documents;
+    final CompletableFuture<List<PhrasefResultSet>> future = new CompletableFuture<List<PhrasefResultSet>>();
+
+    PendingRequest(List<String> documents) {
+      this.documents = documents;
+    }
+  }
+
+  /**
+   * リクエストを処理できない場合の例外（HTTPステータスを持つ）
+   */
+  private static final class HttpError extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    final int status;
+
+    HttpError(int status, String message) {
+      super(message);
+      this.status = status;
+    }
+  }
+
+  /**
+   * 登録されたフレーズ群の一覧を返す
+   */
+  private final class PhraseSetsHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+          throw new HttpError(405, "method not allowed");
+        }
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\"phraseSets\":[");
+        boolean first = true;
+        for (Map.Entry<String, MicroBatcher> entry : mBatchers.entrySet()) {
+          if (!first) {
+            sb.append(',');
+          }
+          first = false;
+          sb.append("{\"name\":");
+          Json.writeString(sb, entry.getKey());
+          sb.append(",\"size\":").append(entry.getValue().mPhraseSet.size()).append('}');
+        }
+        sb.append("]}");
+        sendJson(exchange, 200, sb.toString());
+      } catch (HttpError e) {
+        sendError(exchange, e);
+      }
+    }
+  }
+
+  /**
+   * テキストを検索する
+   */
+  private final class ScanHandler implements HttpHandler {
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+      try {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+          throw new HttpError(405, "method not allowed");
+        }
+
+        final String name = exchange.getRequestURI().getPath().substring("/scan/".length());
+        final MicroBatcher batcher = mBatchers.get(name);
+        if (batcher == null) {
+          throw new HttpError(404, "unknown phrase set: " + name);
+        }
+
+        final String body = readBody(exchange);
+        final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+
+        final List<String> documents;
+        final boolean isBatch;
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+          final Object request;
+          try {
+            request = Json.parse(body);
+          } catch (IllegalArgumentException e) {
+            throw new HttpError(400, e.getMessage());
+          }
+          if (!(request instanceof Map)) {
+            throw new HttpError(400, "request must be a JSON object");
+          }
+          final Map<?, ?> map = (Map<?, ?>) request;
+          if (map.get("documents") instanceof List) {
+            documents = new ArrayList<String>();
+            for (Object document : (List<?>) map.get("documents")) {
+              if (!(document instanceof String)) {
+                throw new HttpError(400, "documents must be an array of strings");
+              }
+              documents.add((String) document);
+            }
+            isBatch = true;
+          } else if (map.get("text") instanceof String) {
+            documents = Collections.singletonList((String) map.get("text"));
+            isBatch = false;
+          } else {
+            throw new HttpError(400, "\"text\" or \"documents\" is required");
+          }
+        } else {
+          documents = Collections.singletonList(body);
+          isBatch = false;
+        }
+
+        final List<PhrasefResultSet> results;
+        if (documents.isEmpty()) {
+          results = Collections.emptyList();
+        } else {
+          try {
+            results = batcher.submit(documents).get();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HttpError(503, "interrupted");
+          } catch (ExecutionException e) {
+            throw new HttpError(500, String.valueOf(e.getCause()));
+          }
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        if (isBatch) {
+          sb.append("{\"phraseSet\":");
+          Json.writeString(sb, name);
+          sb.append(",\"results\":[");
+          for (int i = 0; i < results.size(); i++) {
+            if (i > 0) {
+              sb.append(',');
+            }
+            writeResultSet(sb, results.get(i));
+          }
+          sb.append("]}");
+        } else {
+          writeResultSet(sb, results.get(0));
+        }
+        sendJson(exchange, 200, sb.toString());
+
+      } catch (HttpError e) {
+        sendError(exchange, e);
+      }
+    }
+  }
+
+  private String readBody(HttpExchange exchange) throws IOException, HttpError {
+    final InputStream is = exchange.getRequestBody();
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final byte[] buf = new byte[8192];
+    int len;
+    while ((len = is.read(buf)) != -1) {
+      baos.write(buf, 0, len);
+      if (baos.size() > mMaxRequestBytes) {
+        throw new HttpError(413, "request body too large");
+      }
+    }
+    return new String(baos.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * PhrasefResultSetと同じ項目名でJSONに書き込む
+   * 
+   * @param out
+   * @param resultSet
+   * @throws IOException
+   */
+  static void writeResultSet(Appendable out, PhrasefResultSet resultSet) throws IOException {
+    out.append("{\"isHit\":").append(String.valueOf(resultSet.isHit));
+    out.append(",\"numOfHits\":").append(String.valueOf(resultSet.numOfHits));
+    out.append(",\"hint\":");
+    Json.writeString(out, resultSet.getHint());
+    out.append(",\"phraseResultMap\":{");
+    boolean first = true;
+    for (Map.Entry<String, PhrasefResult> entry : resultSet.phraseResultMap.entrySet()) {
+      if (!first) {
+        out.append(',');
+      }
+      first = false;
+      Json.writeString(out, entry.getKey());
+      out.append(':');
+      writeResult(out, entry.getValue());
+    }
+    out.append("}}");
+  }
+
+  private static void writeResult(Appendable out, PhrasefResult result) throws IOException {
+    out.append("{\"phrase\":");
+    Json.writeString(out, result.phrase);
+    out.append(",\"analysisMode\":");
+    Json.writeString(out, result.analysisMode != null ? result.analysisMode.name() : null);
+    out.append(",\"isHit\":").append(String.valueOf(result.isHit));
+    out.append(",\"numOfHits\":").append(String.valueOf(result.numOfHits));
+    out.append(",\"hint\":");
+    Json.writeString(out, result.getHint());
+    out.append(",\"posList\":[");
+    if (result.posList != null) {
+      for (int i = 0; i < result.posList.size(); i++) {
+        final PhrasePos pos = result.posList.get(i);
+        if (i > 0) {
+          out.append(',');
+        }
+        out.append("{\"startIndex\":").append(String.valueOf(pos.startIndex));
+        out.append(",\"endIndex\":").append(String.valueOf(pos.endIndex)).append('}');
+      }
+    }
+    out.append("]}");
+  }
+
+  private static void sendError(HttpExchange exchange, HttpError e) throws IOException {
+    final StringBuilder sb = new StringBuilder();
+    sb.append("{\"error\":");
+    Json.writeString(sb, e.getMessage());
+    sb.append('}');
+    sendJson(exchange, e.status, sb.toString());
+  }
+
+  private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+    final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE_JSON);
+    exchange.sendResponseHeaders(status, bytes.length);
+    final OutputStream os = exchange.getResponseBody();
+    try {
+      os.write(bytes);
+    } finally {
+      os.close();
+    }
+  }
+
+  /**
+   * PhraseFinderServerを生成する
+   */
+  public static final class Builder {
+
+    private InetAddress mBindAddress = InetAddress.getLoopbackAddress();
+    private int mPort = DEFAULT_PORT;
+    private int mBacklog = 0;
+    private int mNumOfThreads = Runtime.getRuntime().availableProcessors();
+    private int mNumOfScanThreads = Runtime.getRuntime().availableProcessors();
+    private Executor mScanExecutor = null;
+    private int mMaxQueuedRequests = 256;
+    private long mBatchDelayMillis = 2;
+    private int mMaxBatchSize = 64;
+    private int mMaxRequestBytes = 16 * 1024 * 1024;
+    private ImmutablePhraseFinder mFinder = null;
+    private final Map<String, PhraseSet> mPhraseSets = new LinkedHashMap<String, PhraseSet>();
+
+    /**
+     * 待ち受けるアドレスを指定する（既定はループバックアドレス）
+     * 
+     * @param bindAddress
+     * @return
+     */
+    public Builder setBindAddress(InetAddress bindAddress) {
+      if (bindAddress == null) {
+        throw new NullPointerException("bindAddress must not be null");
+      }
+      mBindAddress = bindAddress;
+      return Builder.this;
+    }
+
+    /**
+     * 待ち受けるポート番号を指定する（0の場合は空いているポート番号を使う）
+     * 
+     * @param port
+     * @return
+     */
+    public Builder setPort(int port) {
+      mPort = port;
+      return Builder.this;
+    }
+
+    /**
+     * 接続待ちの上限を指定する（0の場合はシステムの既定値）
+     * 
+     * @param backlog
+     * @return
+     */
+    public Builder setBacklog(int backlog) {
+      mBacklog = backlog;
+      return Builder.this;
+    }
+
+    /**
+     * リクエストを処理するスレッドの数を指定する
+     * 
+     * @param numOfThreads
+     * @return
+     */
+    public Builder setNumOfThreads(int numOfThreads) {
+      if (numOfThreads <= 0) {
+        throw new IllegalArgumentException("numOfThreads must be positive");
+      }
+      mNumOfThreads = numOfThreads;
+      return Builder.this;
+    }
+
+    /**
+     * まとめた検索を行うスレッドの数を指定する（setScanExecutorを指定しない場合に使う）
+     * 
+     * @param numOfScanThreads
+     * @return
+     */
+    public Builder setNumOfScanThreads(int numOfScanThreads) {
+      if (numOfScanThreads <= 0) {
+        throw new IllegalArgumentException("numOfScanThreads must be positive");
+      }
+      mNumOfScanThreads = numOfScanThreads;
+      return Builder.this;
+    }
+
+    /**
+     * まとめた検索を行うExecutorを指定する
+     * 
+     * nullの場合（デフォルト）は、サーバーがスレッド数固定のプールを作り、stopで停止する。<br>
+     * 指定したExecutorはstopで停止しない。
+     * 
+     * @param scanExecutor
+     * @return
+     */
+    public Builder setScanExecutor(Executor scanExecutor) {
+      mScanExecutor = scanExecutor;
+      return Builder.this;
+    }
+
+    /**
+     * 処理を待つリクエストの上限を指定する
+     * 
+     * @param maxQueuedRequests
+     * @return
+     */
+    public Builder setMaxQueuedRequests(int maxQueuedRequests) {
+      if (maxQueuedRequests <= 0) {
+        throw new IllegalArgumentException("maxQueuedRequests must be positive");
+      }
+      mMaxQueuedRequests = maxQueuedRequests;
+      return Builder.this;
+    }
+
+    /**
+     * 同時に届いたリクエストをまとめるために待つ時間（ミリ秒）を指定する
+     * 
+     * @param batchDelayMillis
+     * @return
+     */
+    public Builder setBatchDelayMillis(long batchDelayMillis) {
+      if (batchDelayMillis < 0) {
+        throw new IllegalArgumentException("batchDelayMillis must not be negative");
+      }
+      mBatchDelayMillis = batchDelayMillis;
+      return Builder.this;
+    }
+
+    /**
+     * 待たずに検索を始めるテキストの数を指定する
+     * 
+     * @param maxBatchSize
+     * @return
+     */
+    public Builder setMaxBatchSize(int maxBatchSize) {
+      if (maxBatchSize <= 0) {
+        throw new IllegalArgumentException("maxBatchSize must be positive");
+      }
+      mMaxBatchSize = maxBatchSize;
+      return Builder.this;
+    }
+
+    /**
+     * リクエスト本文の最大バイト数を指定する
+     * 
+     * @param maxRequestBytes
+     * @return
+     */
+    public Builder setMaxRequestBytes(int maxRequestBytes) {
+      if (maxRequestBytes <= 0) {
+        throw new IllegalArgumentException("maxRequestBytes must be positive");
+      }
+      mMaxRequestBytes = maxRequestBytes;
+      return Builder.this;
+    }
+
+    /**
+     * 検索に使うImmutablePhraseFinderを指定する（ヒントの書式やキャッシュなど）
+     * 
+     * @param finder
+     * @return
+     */
+    public Builder setFinder(ImmutablePhraseFinder finder) {
+      mFinder = finder;
+      return Builder.this;
+    }
+
+    /**
+     * 名前をつけてフレーズ群を登録する
+     * 
+     * @param name
+     * @param phraseSet
+     * @return
+     */
+    public Builder addPhraseSet(String name, PhraseSet phraseSet) {
+      if (name == null || phraseSet == null) {
+        throw new NullPointerException("name and phraseSet must not be null");
+      }
+      mPhraseSets.put(name, phraseSet);
+      return Builder.this;
+    }
+
+    /**
+     * 指定したポートに割り当てたPhraseFinderServerを生成する（受付はstartで開始する）
+     * 
+     * @return
+     * @throws IOException
+     *           ポートに割り当てられない場合
+     */
+    public PhraseFinderServer build() throws IOException {
+      return new PhraseFinderServer(Builder.this);
+    }
+  }
+}
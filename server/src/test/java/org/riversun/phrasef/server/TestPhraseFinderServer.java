@@ -0,0 +1,247 @@
+package org.riversun.phrasef.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+import org.riversun.phrasef.PhraseSet;
+
+/**
+ * Test for PhraseFinderServer class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseFinderServer {
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。";
+
+  private static final PhraseSet PHRASE_SET = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ"));
+
+  private PhraseFinderServer mServer;
+
+  @Before
+  public void setUp() throws Exception {
+    mServer = new PhraseFinderServer.Builder()
+        .setPort(0)
+        .setNumOfThreads(8)
+        .setBatchDelayMillis(100)
+        .addPhraseSet("crypto", PHRASE_SET)
+        .build();
+    mServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    mServer.stop(0);
+  }
+
+  private static class Response {
+    int status;
+    String body;
+  }
+
+  private Response request(String method, String path, String contentType, String body) throws IOException {
+    final URL url = new URL("http://127.0.0.1:" + mServer.getPort() + path);
+    final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+    conn.setRequestMethod(method);
+    if (body != null) {
+      conn.setDoOutput(true);
+      conn.setRequestProperty("Content-Type", contentType);
+      final OutputStream os = conn.getOutputStream();
+      os.write(body.getBytes(StandardCharsets.UTF_8));
+      os.close();
+    }
+    final Response res = new Response();
+    res.status = conn.getResponseCode();
+    final InputStream is = res.status < 400 ? conn.getInputStream() : conn.getErrorStream();
+    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    final byte[] buf = new byte[4096];
+    int len;
+    while ((len = is.read(buf)) != -1) {
+      baos.write(buf, 0, len);
+    }
+    is.close();
+    res.body = new String(baos.toByteArray(), StandardCharsets.UTF_8);
+    return res;
+  }
+
+  private static String expectedJson(String text) throws IOException {
+    final PhrasefResultSet resultSet = new PhraseFinder().findPhrases(text, PHRASE_SET);
+    final StringBuilder sb = new StringBuilder();
+    PhraseFinderServer.writeResultSet(sb, resultSet);
+    return sb.toString();
+  }
+
+  @Test
+  public void test_scan_single() throws Exception {
+    // テストの期待動作：本文そのもの、または{"text":...}で渡したテキストの検索結果がPhrasefResultSetと同じ項目のJSONで返ること
+    final Response plain = request("POST", "/scan/crypto", "text/plain; charset=utf-8", TEXT);
+    assertEquals(200, plain.status);
+    assertEquals(expectedJson(TEXT), plain.body);
+
+    final Response json = request("POST", "/scan/crypto", "application/json", "{\"text\":\"" + TEXT + "\"}");
+    assertEquals(200, json.status);
+    assertEquals(expectedJson(TEXT), json.body);
+
+    // Content-Typeの大文字・小文字は、既定のロケールによらず区別しないこと
+    final Locale defaultLocale = Locale.getDefault();
+    try {
+      Locale.setDefault(new Locale("tr", "TR"));
+      final Response upperCase = request("POST", "/scan/crypto", "APPLICATION/JSON", "{\"text\":\"" + TEXT + "\"}");
+      assertEquals(200, upperCase.status);
+      assertEquals(expectedJson(TEXT), upperCase.body);
+    } finally {
+      Locale.setDefault(defaultLocale);
+    }
+
+    final Map<?, ?> parsed = (Map<?, ?>) Json.parse(json.body);
+    assertEquals(Boolean.TRUE, parsed.get("isHit"));
+    assertEquals(2.0, parsed.get("numOfHits"));
+    final Map<?, ?> result = (Map<?, ?>) ((Map<?, ?>) parsed.get("phraseResultMap")).get("ビットコイン");
+    assertEquals("ZENKAKU_KATAKANA", result.get("analysisMode"));
+    assertEquals(1, ((List<?>) result.get("posList")).size());
+  }
+
+  @Test
+  public void test_scan_documents() throws Exception {
+    // テストの期待動作：{"documents":[...]}で渡した複数のテキストの検索結果が同じ順で返ること
+    final String second = "ビットコイン\"と\"ビットコインキャッシュ\n";
+    final Response res = request("POST", "/scan/crypto", "application/json",
+        "{\"documents\":[\"" + TEXT + "\", \"ビットコイン\\\"と\\\"ビットコインキャッシュ\\n\"]}");
+    assertEquals(200, res.status);
+    assertEquals("{\"phraseSet\":\"crypto\",\"results\":[" + expectedJson(TEXT) + "," + expectedJson(second) + "]}", res.body);
+  }
+
+  @Test
+  public void test_errors() throws Exception {
+    // テストの期待動作：不正なリクエストにはステータスとエラーのJSONが返ること
+    assertEquals(404, request("POST", "/scan/unknown", "text/plain", TEXT).status);
+    assertEquals(405, request("GET", "/scan/crypto", null, null).status);
+
+    final Response badJson = request("POST", "/scan/crypto", "application/json", "{\"text\":");
+    assertEquals(400, badJson.status);
+    assertTrue(((Map<?, ?>) Json.parse(badJson.body)).get("error") instanceof String);
+
+    assertEquals(400, request("POST", "/scan/crypto", "application/json", "{\"documents\":[1]}").status);
+
+    // 入れ子が深すぎるJSON（スタックがあふれないこと）
+    final StringBuilder deep = new StringBuilder();
+    for (int i = 0; i < 200000; i++) {
+      deep.append('[');
+    }
+    final Response tooDeep = request("POST", "/scan/crypto", "application/json", deep.toString());
+    assertEquals(400, tooDeep.status);
+    assertTrue(((String) ((Map<?, ?>) Json.parse(tooDeep.body)).get("error")).contains("nesting too deep"));
+
+    // 上限までの入れ子は読み込めること
+    final StringBuilder maxDepth = new StringBuilder();
+    for (int i = 0; i < Json.MAX_DEPTH; i++) {
+      maxDepth.insert(0, '[').append(']');
+    }
+    Json.parse(maxDepth.toString());
+    try {
+      Json.parse("[" + maxDepth + "]");
+      fail();
+    } catch (IllegalArgumentException e) {
+    }
+  }
+
+  @Test
+  public void test_phraseSets() throws Exception {
+    // テストの期待動作：登録したフレーズ群の一覧が返ること
+    final Response res = request("GET", "/phrasesets", null, null);
+    assertEquals(200, res.status);
+    assertEquals("{\"phraseSets\":[{\"name\":\"crypto\",\"size\":2}]}", res.body);
+  }
+
+  @Test
+  public void test_microBatching() throws Exception {
+    // テストの期待動作：同時に届いたリクエストがまとめて検索され、それぞれに正しい結果が返ること
+    final int numOfRequests = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(numOfRequests);
+    try {
+      final CountDownLatch start = new CountDownLatch(1);
+      final List<Future<Response>> futures = new ArrayList<Future<Response>>();
+      for (int i = 0; i < numOfRequests; i++) {
+        final String text = i + "番目のビットコイン";
+        futures.add(executor.submit(new Callable<Response>() {
+          @Override
+          public Response call() throws Exception {
+            start.await();
+            return request("POST", "/scan/crypto", "text/plain; charset=utf-8", text);
+          }
+        }));
+      }
+      start.countDown();
+
+      for (int i = 0; i < numOfRequests; i++) {
+        final Response res = futures.get(i).get();
+        assertEquals(200, res.status);
+        assertEquals(expectedJson(i + "番目のビットコイン"), res.body);
+      }
+      assertTrue(mServer.getNumOfBatches() < numOfRequests);
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void test_scanExecutor() throws Exception {
+    // テストの期待動作：Builderで指定したExecutorで検索され、stopしてもそのExecutorは停止されないこと
+    final AtomicInteger numOfTasks = new AtomicInteger();
+    final ExecutorService scanExecutor = Executors.newFixedThreadPool(2);
+    final Executor countingExecutor = new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        numOfTasks.incrementAndGet();
+        scanExecutor.execute(command);
+      }
+    };
+
+    mServer.stop(0);
+    mServer = new PhraseFinderServer.Builder()
+        .setPort(0)
+        .setScanExecutor(countingExecutor)
+        .addPhraseSet("crypto", PHRASE_SET)
+        .build();
+    mServer.start();
+    try {
+      final Response res = request("POST", "/scan/crypto", "text/plain; charset=utf-8", TEXT);
+      assertEquals(200, res.status);
+      assertEquals(expectedJson(TEXT), res.body);
+      assertTrue(numOfTasks.get() > 0);
+
+      mServer.stop(0);
+      assertFalse(scanExecutor.isShutdown());
+    } finally {
+      scanExecutor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.util.Arrays;
+
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+
+/**
+ * フレーズの前後にある文字が、どの文字種別ならフレーズに”従属”しているとみなすか（境界判定ルール）を決める
+ * 
+ * 境界判定ルールは、フレーズを分析するときに一度だけ文字種別（PhraseTypeDetector.CHAR_CLASS_*の組み合わせ）に解決される。
+ * 検索中は解決済みの文字種別と、前後の文字の文字種別を比べるだけなので、ルールの数や複雑さは検索の速さに影響しない。<br>
+ * 生成後は不変なので、複数のスレッドから同時に利用できる。
+ * 
+ * <pre>
+ * // 漢字とカタカナが混ざったフレーズ（UNKNOWN）を、前後に漢字かカタカナが無ければ独立とみなす
+ * BoundaryPolicy policy = BoundaryPolicy.DEFAULT.override(PhraseAnalysisMode.UNKNOWN,
+ *     PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI | PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KATAKANA);
+ * </pre>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public abstract class BoundaryPolicy {
+
+  /**
+   * どの文字も従属とみなす（前後に文字がある限り独立しない）
+   */
+  public static final int DEPENDENT_ON_ALL_CHARS = -1;
+
+  /**
+   * 分析モードごとの標準の境界判定ルール（デフォルト）
+   * 
+   * UNKNOWNのフレーズは、どの文字も従属とみなす
+   */
+  public static final BoundaryPolicy DEFAULT = new BoundaryPolicy() {
+    @Override
+    public int getDependentCharClass(String phrase, PhraseAnalysisMode analysisMode) {
+      return PhraseFinder.dependentCharClassOf(analysisMode);
+    }
+  };
+
+  /**
+   * フレーズの前後にあると”従属”とみなす文字種別を返す
+   * 
+   * @param phrase
+   * @param analysisMode
+   *          フレーズの分析モード
+   * @return PhraseTypeDetector.CHAR_CLASS_*の組み合わせ、または{@link #DEPENDENT_ON_ALL_CHARS}
+   */
+  public abstract int getDependentCharClass(String phrase, PhraseAnalysisMode analysisMode);
+
+  /**
+   * 指定した分析モードのフレーズについてだけ、従属とみなす文字種別を置き換えた境界判定ルールを返す
+   * 
+   * それ以外の分析モードのフレーズは、このルールで判定する
+   * 
+   * @param analysisMode
+   * @param dependentCharClass
+   *          PhraseTypeDetector.CHAR_CLASS_*の組み合わせ、または{@link #DEPENDENT_ON_ALL_CHARS}
+   * @return
+   */
+  public BoundaryPolicy override(PhraseAnalysisMode analysisMode, int dependentCharClass) {
+    if (analysisMode == null) {
+      throw new NullPointerException("analysisMode must not be null");
+    }
+    return new OverridingPolicy(BoundaryPolicy.this, analysisMode, dependentCharClass);
+  }
+
+  /**
+   * 分析モードごとに、従属とみなす文字種別を置き換える
+   */
+  private static final class OverridingPolicy extends BoundaryPolicy {
+
+    private final BoundaryPolicy mBase;
+
+    // 分析モードごとの、置き換えた文字種別
+    private final int[] mDependentCharClasses;
+
+    // 分析モードごとの、置き換えたか否か（置き換えていない場合はmBaseで判定する）
+    private final boolean[] mOverridden;
+
+    OverridingPolicy(BoundaryPolicy base, PhraseAnalysisMode analysisMode, int dependentCharClass) {
+      final int numOfModes = PhraseAnalysisMode.values().length;
+      if (base instanceof OverridingPolicy) {
+        // - 置き換えを重ねる場合は、１つの表にまとめる
+        final OverridingPolicy overriding = (OverridingPolicy) base;
+        mBase = overriding.mBase;
+        mDependentCharClasses = Arrays.copyOf(overriding.mDependentCharClasses, numOfModes);
+        mOverridden = Arrays.copyOf(overriding.mOverridden, numOfModes);
+      } else {
+        mBase = base;
+        mDependentCharClasses = new int[numOfModes];
+        mOverridden = new boolean[numOfModes];
+      }
+      mDependentCharClasses[analysisMode.ordinal()] = dependentCharClass;
+      mOverridden[analysisMode.ordinal()] = true;
+    }
+
+    @Override
+    public int getDependentCharClass(String phrase, PhraseAnalysisMode analysisMode) {
+      if (mOverridden[analysisMode.ordinal()]) {
+        return mDependentCharClasses[analysisMode.ordinal()];
+      }
+      return mBase.getDependentCharClass(phrase, analysisMode);
+    }
+  }
+}
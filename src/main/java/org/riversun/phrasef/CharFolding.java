@@ -0,0 +1,88 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+/**
+ * 全角・半角と大文字・小文字の違いを無視して比較するための文字の変換表
+ * 
+ * 全角英数記号（U+FF01〜U+FF5E）を半角に、全角スペース（U+3000）を半角スペースに、
+ * 英大文字を英小文字に変換する。１文字を１文字に変換するので、変換してもテキスト上の位置は変わらない。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class CharFolding {
+
+  // 半角の文字（U+0000〜U+007F）の変換表
+  private static final char[] ASCII_FOLD = new char[0x80];
+
+  static {
+    for (char c = 0; c < ASCII_FOLD.length; c++) {
+      ASCII_FOLD[c] = (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+  }
+
+  // 全角英数記号と半角の文字コードの差
+  private static final int FULLWIDTH_OFFSET = 0xFF01 - 0x21;
+
+  private CharFolding() {
+  }
+
+  /**
+   * 文字を変換する
+   * 
+   * @param c
+   * @return
+   */
+  static char fold(char c) {
+    if (c < 0x80) {
+      return ASCII_FOLD[c];
+    }
+    if (c >= 0xFF01 && c <= 0xFF5E) {
+      return ASCII_FOLD[c - FULLWIDTH_OFFSET];
+    }
+    if (c == 0x3000) {
+      return ' ';
+    }
+    return c;
+  }
+
+  /**
+   * 文字列を変換する（変換する文字が無い場合はそのまま返す）
+   * 
+   * @param str
+   * @return
+   */
+  static String fold(String str) {
+    for (int i = 0; i < str.length(); i++) {
+      final char c = str.charAt(i);
+      if (fold(c) != c) {
+        final char[] chars = str.toCharArray();
+        for (int j = i; j < chars.length; j++) {
+          chars[j] = fold(chars[j]);
+        }
+        return new String(chars);
+      }
+    }
+    return str;
+  }
+}
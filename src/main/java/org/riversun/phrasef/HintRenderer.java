@@ -0,0 +1,455 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.riversun.phrasef.PhraseFinder.HintContent;
+import org.riversun.phrasef.PhraseFinder.HintContext;
+import org.riversun.phrasef.PhraseFinder.HintContextListener;
+import org.riversun.phrasef.PhraseFinder.HintListener;
+import org.riversun.phrasef.PhraseFinder.HintOverlapPolicy;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.PhrasePos;
+
+/**
+ * 検出位置からヒント用文字列を組み立てる
+ * 
+ * カッコ文字列とHintListener（またはHintContextListener）を保持する。生成後は変更されない。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class HintRenderer {
+
+  private final String mHintPrefix;
+  private final String mHintSuffix;
+  private final HintListener mHintListener;
+  private final HintContextListener mHintContextListener;
+  private final HintOverlapPolicy mOverlapPolicy;
+
+  // HintListenerの呼び出し回数を記録する（nullの場合は記録しない）
+  private final PhraseFinderMetrics mMetrics;
+
+  HintRenderer(String hintPrefix, String hintSuffix, HintListener hintListener, HintContextListener hintContextListener, HintOverlapPolicy overlapPolicy,
+      PhraseFinderMetrics metrics) {
+    mHintPrefix = hintPrefix;
+    mHintSuffix = hintSuffix;
+    mHintListener = hintListener;
+    mHintContextListener = hintContextListener;
+    mOverlapPolicy = overlapPolicy;
+    mMetrics = metrics;
+  }
+
+  /**
+   * 検出位置のリストからヒント用文字列を組み立てる
+   * 
+   * @param srcText
+   * @param posList
+   *          検出位置（開始位置の昇順で、互いに重ならないこと）
+   * @param labelList
+   *          posListの各要素に対応するフレーズ
+   * @return
+   */
+  String render(String srcText, List<PhrasePos> posList, List<Label> labelList) {
+
+    if (posList.size() == 0) {
+      return srcText;
+    }
+
+    final StringBuilder sbHint = new StringBuilder(srcText.length() + posList.size() * (mHintPrefix.length() + mHintSuffix.length()));
+
+    try {
+      write(sbHint, srcText, posList, labelList);
+    } catch (IOException e) {
+      // StringBuilderへの書き込みでは発生しない
+      throw new UncheckedIOException(e);
+    }
+
+    return sbHint.toString();
+  }
+
+  /**
+   * 検出位置のリストからヒント用文字列を組み立てて、outに書き込む
+   * 
+   * @param out
+   * @param srcText
+   * @param posList
+   *          検出位置（開始位置の昇順で、互いに重ならないこと）
+   * @param labelList
+   *          posListの各要素に対応するフレーズ
+   * @throws IOException
+   */
+  void write(Appendable out, String srcText, List<PhrasePos> posList, List<Label> labelList) throws IOException {
+
+    // HintContextListenerには、同じHintContextを使い回して渡す
+    final HintContext context = mHintContextListener != null ? new HintContext() : null;
+
+    int pointer = 0;
+    for (int i = 0; i < posList.size(); i++) {
+      final PhrasePos pos = posList.get(i);
+      out.append(srcText, pointer, pos.startIndex);
+
+      // 独立したフレーズとして認識された部分をカッコで囲みデコレーションする
+      appendDecoratedPhrase(out, srcText, labelList.get(i), pos, context);
+
+      pointer = pos.endIndex;
+    }
+    out.append(srcText, pointer, srcText.length());
+  }
+
+  /**
+   * 複数のフレーズの検出位置から、まとめたヒント用文字列を組み立てる
+   * 
+   * 検出位置が重なる場合は、HintOverlapPolicyにしたがって選ぶ
+   * 
+   * @param srcText
+   * @param posList
+   * @param labelList
+   * @return
+   */
+  String renderCombined(String srcText, List<PhrasePos> posList, List<Label> labelList) {
+
+    if (posList.size() == 0) {
+      return srcText;
+    }
+
+    final StringBuilder sbHint = new StringBuilder(srcText.length() + posList.size() * (mHintPrefix.length() + mHintSuffix.length()));
+
+    try {
+      writeCombined(sbHint, srcText, posList, labelList);
+    } catch (IOException e) {
+      // StringBuilderへの書き込みでは発生しない
+      throw new UncheckedIOException(e);
+    }
+
+    return sbHint.toString();
+  }
+
+  /**
+   * 複数のフレーズの検出位置から、まとめたヒント用文字列を組み立てて、outに書き込む
+   * 
+   * @param out
+   * @param srcText
+   * @param posList
+   * @param labelList
+   * @throws IOException
+   */
+  void writeCombined(Appendable out, String srcText, List<PhrasePos> posList, List<Label> labelList) throws IOException {
+
+    if (mOverlapPolicy == HintOverlapPolicy.ALL) {
+      writeNested(out, srcText, posList, labelList);
+      return;
+    }
+
+    final Integer[] order = sortedOrder(posList, mOverlapPolicy);
+
+    final List<PhrasePos> hintPosList = new ArrayList<PhrasePos>();
+    final List<Label> hintLabelList = new ArrayList<Label>();
+
+    if (mOverlapPolicy == HintOverlapPolicy.FIRST) {
+      // 開始位置の順に、直前に選んだ検出位置と重ならないものを選ぶ
+      int lastEndIndex = 0;
+      for (int i : order) {
+        final PhrasePos pos = posList.get(i);
+        if (pos.startIndex < lastEndIndex) {
+          // - すでにヒントに含めた検出位置と重なる場合
+          continue;
+        }
+        hintPosList.add(pos);
+        hintLabelList.add(labelList.get(i));
+        lastEndIndex = pos.endIndex;
+      }
+    } else {
+      // 長い順に、すでに選んだ検出位置と重ならないものを選ぶ（開始位置から検出位置のインデックスへのマップ）
+      final TreeMap<Integer, Integer> selected = new TreeMap<Integer, Integer>();
+      for (int i : order) {
+        final PhrasePos pos = posList.get(i);
+        final Map.Entry<Integer, Integer> before = selected.floorEntry(pos.startIndex);
+        final Map.Entry<Integer, Integer> after = selected.ceilingEntry(pos.startIndex);
+        if ((before != null && posList.get(before.getValue()).endIndex > pos.startIndex) || (after != null && after.getKey() < pos.endIndex)) {
+          // - すでにヒントに含めた検出位置と重なる場合
+          continue;
+        }
+        selected.put(pos.startIndex, i);
+      }
+      for (int i : selected.values()) {
+        hintPosList.add(posList.get(i));
+        hintLabelList.add(labelList.get(i));
+      }
+    }
+
+    write(out, srcText, hintPosList, hintLabelList);
+  }
+
+  /**
+   * 検出位置のインデックスを、重なりを解決するときに優先する順に並べて返す
+   * 
+   * @param posList
+   * @param overlapPolicy
+   * @return
+   */
+  private static Integer[] sortedOrder(final List<PhrasePos> posList, final HintOverlapPolicy overlapPolicy) {
+    final Integer[] order = new Integer[posList.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        final PhrasePos pos1 = posList.get(o1);
+        final PhrasePos pos2 = posList.get(o2);
+        if (overlapPolicy == HintOverlapPolicy.LONGEST) {
+          final int length1 = pos1.endIndex - pos1.startIndex;
+          final int length2 = pos2.endIndex - pos2.startIndex;
+          if (length1 != length2) {
+            return length2 - length1;
+          }
+          return pos1.startIndex - pos2.startIndex;
+        }
+        if (pos1.startIndex != pos2.startIndex) {
+          return pos1.startIndex < pos2.startIndex ? -1 : 1;
+        }
+        return pos2.endIndex - pos1.endIndex;
+      }
+    });
+    return order;
+  }
+
+  /**
+   * 重なる検出位置もすべてカッコで囲んで、outに書き込む
+   * 
+   * 検出位置の開始位置に前カッコを、終了位置に後カッコを入れる。入れ子になった検出位置は外側から開き、内側から閉じる。<br>
+   * 交差する（入れ子にならずに一部だけ重なる）検出位置は、カッコの対応が崩れるので、{@link HintOverlapPolicy#FIRST}と同じく先に始まるものだけを囲む。
+   * HintListenerでフレーズの文字列を変更しても反映されない（テキストの文字列をそのまま出力する）。
+   * 
+   * @param out
+   * @param srcText
+   * @param posList
+   * @param labelList
+   * @throws IOException
+   */
+  private void writeNested(Appendable out, String srcText, final List<PhrasePos> posList, List<Label> labelList) throws IOException {
+
+    // 前カッコを入れる順（開始位置の昇順、同じ位置なら長い順）に、囲んでいる検出位置と交差しないものを選ぶ
+    final List<Integer> nested = new ArrayList<Integer>();
+    final Deque<PhrasePos> enclosing = new ArrayDeque<PhrasePos>();
+    for (int i : sortedOrder(posList, HintOverlapPolicy.FIRST)) {
+      final PhrasePos pos = posList.get(i);
+      while (!enclosing.isEmpty() && enclosing.peek().endIndex <= pos.startIndex) {
+        enclosing.pop();
+      }
+      if (!enclosing.isEmpty() && enclosing.peek().endIndex < pos.endIndex) {
+        // - 囲んでいる検出位置の途中から始まり、その外側で終わる場合
+        continue;
+      }
+      enclosing.push(pos);
+      nested.add(i);
+    }
+
+    final int numOfPos = nested.size();
+    final Integer[] opens = nested.toArray(new Integer[numOfPos]);
+
+    // 後カッコを入れる順（終了位置の昇順、同じ位置なら後から開いた順）
+    final Integer[] closes = opens.clone();
+    Arrays.sort(closes, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer o1, Integer o2) {
+        final PhrasePos pos1 = posList.get(o1);
+        final PhrasePos pos2 = posList.get(o2);
+        if (pos1.endIndex != pos2.endIndex) {
+          return pos1.endIndex < pos2.endIndex ? -1 : 1;
+        }
+        return pos2.startIndex - pos1.startIndex;
+      }
+    });
+
+    // 検出位置ごとの、後カッコ（と追加情報）
+    final String[] closings = new String[posList.size()];
+
+    final HintContext context = mHintContextListener != null ? new HintContext() : null;
+
+    int pointer = 0;
+    int openIdx = 0;
+    int closeIdx = 0;
+    while (closeIdx < numOfPos) {
+      final int closeAt = posList.get(closes[closeIdx]).endIndex;
+      final int openAt = openIdx < numOfPos ? posList.get(opens[openIdx]).startIndex : Integer.MAX_VALUE;
+
+      if (closeAt <= openAt) {
+        // - 同じ位置では、先に閉じてから開く
+        out.append(srcText, pointer, closeAt);
+        out.append(closings[closes[closeIdx]]);
+        pointer = closeAt;
+        closeIdx++;
+      } else {
+        final int i = opens[openIdx];
+        out.append(srcText, pointer, openAt);
+        final HintContent hc = decorate(labelList.get(i), posList.get(i), context);
+        if (hc == null) {
+          out.append(mHintPrefix);
+          closings[i] = mHintSuffix;
+        } else {
+          out.append(hc.hintPrefix);
+          closings[i] = hc.additionalInfo != null ? hc.hintSuffix + hc.additionalInfo : String.valueOf(hc.hintSuffix);
+        }
+        pointer = openAt;
+        openIdx++;
+      }
+    }
+    out.append(srcText, pointer, srcText.length());
+  }
+
+  /**
+   * 独立したフレーズとして認識された部分をカッコで囲んでヒントに追加する
+   * 
+   * @param out
+   * @param srcText
+   * @param label
+   * @param pos
+   * @param context
+   *          HintContextListenerに渡すHintContext（HintContextListenerが無い場合はnull）
+   * @throws IOException
+   */
+  private void appendDecoratedPhrase(Appendable out, String srcText, Label label, PhrasePos pos, HintContext context) throws IOException {
+    final HintContent hc = decorate(label, pos, context);
+    if (hc == null) {
+      // テキスト上の文字をそのまま囲む（MatchMode.FOLD_WIDTH_AND_CASEではフレーズと表記が異なる場合がある）
+      out.append(mHintPrefix).append(srcText, pos.startIndex, pos.endIndex).append(mHintSuffix);
+    } else {
+      out.append(hc.hintPrefix).append(hc.phrase).append(hc.hintSuffix);
+      if (hc.additionalInfo != null) {
+        out.append(hc.additionalInfo);
+      }
+    }
+  }
+
+  /**
+   * HintContextListenerまたはHintListenerを呼んで、フレーズの書式を得る（どちらも無い場合はnull）
+   * 
+   * @param label
+   * @param pos
+   * @param context
+   * @return
+   */
+  private HintContent decorate(Label label, PhrasePos pos, HintContext context) {
+    final String phrase = label.phrase;
+    if (mMetrics != null && (mHintContextListener != null || mHintListener != null)) {
+      mMetrics.recordHintCallback(label.analysisMode);
+    }
+    if (mHintContextListener != null) {
+      context.hintPrefix = mHintPrefix;
+      context.hintSuffix = mHintSuffix;
+      context.phrase = phrase;
+      context.additionalInfo = null;
+      context.startIndex = pos.startIndex;
+      context.endIndex = pos.endIndex;
+
+      mHintContextListener.onPhraseFound(context);
+      return context;
+    } else if (mHintListener != null) {
+      final HintContent hc = new HintContent();
+      hc.hintPrefix = mHintPrefix;
+      hc.hintSuffix = mHintSuffix;
+      hc.phrase = phrase;
+
+      return mHintListener.onPhraseFound(hc);
+    }
+    return null;
+  }
+
+  /**
+   * １つのフレーズのヒントを、必要になったときに組み立てるためのものを返す
+   * 
+   * @param srcText
+   * @param posList
+   * @param label
+   * @return
+   */
+  PendingHint pending(String srcText, List<PhrasePos> posList, Label label) {
+    return new PendingHint(this, srcText, posList, Collections.nCopies(posList.size(), label), false);
+  }
+
+  /**
+   * 複数のフレーズをまとめたヒントを、必要になったときに組み立てるためのものを返す
+   * 
+   * @param srcText
+   * @param posList
+   * @param labelList
+   * @return
+   */
+  PendingHint pendingCombined(String srcText, List<PhrasePos> posList, List<Label> labelList) {
+    return new PendingHint(this, srcText, posList, labelList, true);
+  }
+
+  /**
+   * まだ組み立てていないヒント
+   */
+  static final class PendingHint {
+
+    private final HintRenderer mRenderer;
+    private final String mSrcText;
+    private final List<PhrasePos> mPosList;
+    private final List<Label> mLabelList;
+    private final boolean mCombined;
+
+    private PendingHint(HintRenderer renderer, String srcText, List<PhrasePos> posList, List<Label> labelList, boolean combined) {
+      mRenderer = renderer;
+      mSrcText = srcText;
+      mPosList = posList;
+      mLabelList = labelList;
+      mCombined = combined;
+    }
+
+    String render() {
+      if (mCombined) {
+        return mRenderer.renderCombined(mSrcText, mPosList, mLabelList);
+      } else {
+        return mRenderer.render(mSrcText, mPosList, mLabelList);
+      }
+    }
+  }
+
+  /**
+   * 検出位置に対応するフレーズと、その分析モード（フレーズごとに１つ生成して、検出位置の間で共有する）
+   */
+  static final class Label {
+
+    final String phrase;
+    final PhraseAnalysisMode analysisMode;
+
+    Label(String phrase, PhraseAnalysisMode analysisMode) {
+      this.phrase = phrase;
+      this.analysisMode = analysisMode;
+    }
+  }
+}
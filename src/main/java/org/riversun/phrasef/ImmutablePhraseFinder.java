@@ -0,0 +1,598 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import org.riversun.phrasef.PhraseFinder.HintContextListener;
+import org.riversun.phrasef.PhraseFinder.HintListener;
+import org.riversun.phrasef.PhraseFinder.HintMode;
+import org.riversun.phrasef.PhraseFinder.HintOverlapPolicy;
+import org.riversun.phrasef.PhraseFinder.MatchMode;
+import org.riversun.phrasef.PhraseFinder.PhraseHitListener;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+import org.riversun.phrasef.PhraseFinder.PhrasefResult;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+import org.riversun.phrasef.PhraseFinder.PhrasefUtf8CompactResult;
+import org.riversun.phrasef.PhraseFinder.Utf8PhraseHitListener;
+
+/**
+ * 設定を変更できないPhraseFinder
+ * 
+ * {@link Builder}で生成し、生成後はヒントのカッコ文字列などの設定を変更できない。<br>
+ * スレッドセーフなので、１つのインスタンスを複数のスレッドで共有できる。
+ * （HintListenerを指定する場合は、HintListenerもスレッドセーフであること）
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class ImmutablePhraseFinder {
+
+  // 生成後に設定を変更しないPhraseFinder（検索処理は設定を読むだけなので共有できる）
+  private final PhraseFinder mFinder;
+
+  // 検索結果のキャッシュ（nullの場合はキャッシュしない）
+  private final PhraseResultCache mResultCache;
+
+  private ImmutablePhraseFinder(Builder builder) {
+    mFinder = new PhraseFinder()
+        .setHintBrace(builder.mHintPrefix, builder.mHintSuffix)
+        .setHintMode(builder.mHintMode)
+        .setHintOverlapPolicy(builder.mHintOverlapPolicy)
+        .setMetrics(builder.mMetrics)
+        .setSearchStrategy(builder.mSearchStrategy)
+        .setMatchMode(builder.mMatchMode)
+        .setBoundaryPolicy(builder.mBoundaryPolicy);
+    mFinder.setHintListener(builder.mHintListener);
+    mFinder.setHintContextListener(builder.mHintContextListener);
+    mResultCache = builder.mResultCache;
+  }
+
+  /**
+   * テキストから独立したフレーズを検索する
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public PhrasefResult findPhrase(String srcText, String phrase) {
+    return mFinder.findPhrase(srcText, phrase);
+  }
+
+  /**
+   * テキストに、独立したフレーズが含まれるか否かを判定する
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public boolean containsPhrase(String srcText, String phrase) {
+    return mFinder.containsPhrase(srcText, phrase);
+  }
+
+  /**
+   * テキストに含まれる、独立したフレーズの数を返す
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public int countPhrase(String srcText, String phrase) {
+    return mFinder.countPhrase(srcText, phrase);
+  }
+
+  /**
+   * テキストに、いずれかのフレーズが独立して含まれるか否かを判定する
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public boolean containsAnyPhrase(String srcText, PhraseSet phraseSet) {
+    return mFinder.containsAnyPhrase(srcText, phraseSet);
+  }
+
+  /**
+   * テキストに含まれる、独立したフレーズの数をすべてのフレーズについて合計して返す
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public int countPhrases(String srcText, PhraseSet phraseSet) {
+    return mFinder.countPhrases(srcText, phraseSet);
+  }
+
+  /**
+   * 編集されていくテキストについて、検索結果を保持し続けるセッションを開始する
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhraseEditSession openEditSession(String srcText, PhraseSet phraseSet) {
+    return mFinder.openEditSession(srcText, phraseSet);
+  }
+
+  /**
+   * 編集されていくテキストについて、１つのフレーズの検索結果を保持し続けるセッションを開始する
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public PhraseEditSession openEditSession(String srcText, String phrase) {
+    return mFinder.openEditSession(srcText, phrase);
+  }
+
+  /**
+   * テキストから見つかった独立したフレーズを、見つかるたびに通知するPublisherを返す
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public PhraseHitPublisher publishPhrase(String srcText, String phrase) {
+    return mFinder.publishPhrase(srcText, phrase);
+  }
+
+  /**
+   * テキストから見つかった独立したフレーズを、見つかるたびに通知するPublisherを返す
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhraseHitPublisher publishPhrases(String srcText, PhraseSet phraseSet) {
+    return mFinder.publishPhrases(srcText, phraseSet);
+  }
+
+  /**
+   * テキストから見つかった独立したフレーズを、見つかるたびに指定したExecutorで通知するPublisherを返す
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @param executor
+   * @return
+   */
+  public PhraseHitPublisher publishPhrases(String srcText, PhraseSet phraseSet, Executor executor) {
+    return mFinder.publishPhrases(srcText, phraseSet, executor);
+  }
+
+  /**
+   * テキストから独立したフレーズを検索する
+   * （複数のフレーズを同時に解析する）
+   * 
+   * @param srcText
+   * @param phrases
+   * @return
+   */
+  public PhrasefResultSet findPhrases(String srcText, List<String> phrases) {
+    return mFinder.findPhrases(srcText, phrases);
+  }
+
+  /**
+   * テキストから独立したフレーズを検索する
+   * （コンパイル済みのフレーズ群を使って、複数のフレーズを同時に解析する）
+   * 
+   * 検索結果のキャッシュを指定している場合は、キャッシュした検出位置から検索結果を組み立てることがある
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefResultSet findPhrases(String srcText, PhraseSet phraseSet) {
+
+    if (mResultCache == null) {
+      return mFinder.findPhrases(srcText, phraseSet);
+    }
+
+    final PhraseResultCache.Key key = new PhraseResultCache.Key(srcText, phraseSet);
+    PhrasefCompactResult compactResult = mResultCache.get(key);
+    if (compactResult == null) {
+      // 同じキーの検索が同時に行われた場合は、後から終わった方の検索結果が残る
+      compactResult = mFinder.findPhrasesCompact(srcText, phraseSet);
+      mResultCache.put(key, compactResult);
+    }
+    // 検索結果は呼び出しごとに組み立てる（呼び出し元どうしで同じインスタンスを共有しない）
+    return mFinder.toResultSet(srcText, compactResult);
+  }
+
+  /**
+   * テキストから独立したフレーズを検索し、検出位置をプリミティブ配列で保持した結果を返す
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefCompactResult findPhrasesCompact(String srcText, PhraseSet phraseSet) {
+    return mFinder.findPhrasesCompact(srcText, phraseSet);
+  }
+
+  /**
+   * プリミティブ配列で保持した検索結果を、通常の検索結果に変換する
+   * 
+   * @param srcText
+   * @param compactResult
+   * @return
+   */
+  public PhrasefResultSet toResultSet(String srcText, PhrasefCompactResult compactResult) {
+    return mFinder.toResultSet(srcText, compactResult);
+  }
+
+  /**
+   * Readerから読み込んだテキストから独立したフレーズを検索する
+   * 
+   * @param reader
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   * @throws IOException
+   */
+  public long findPhrases(Reader reader, PhraseSet phraseSet, PhraseHitListener listener) throws IOException {
+    return mFinder.findPhrases(reader, phraseSet, listener);
+  }
+
+  /**
+   * UTF-8のファイルから独立したフレーズを検索する
+   * 
+   * @param utf8File
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   * @throws IOException
+   */
+  public long findPhrasesInFile(Path utf8File, PhraseSet phraseSet, Utf8PhraseHitListener listener) throws IOException {
+    return mFinder.findPhrasesInFile(utf8File, phraseSet, listener);
+  }
+
+  /**
+   * UTF-8のバイト列から独立したフレーズを検索する
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   */
+  public long findPhrases(byte[] utf8, PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    return mFinder.findPhrases(utf8, phraseSet, listener);
+  }
+
+  /**
+   * UTF-8のバイト列のうち[offset, offset+length)から独立したフレーズを検索する
+   * 
+   * @param utf8
+   * @param offset
+   * @param length
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   */
+  public long findPhrases(byte[] utf8, int offset, int length, PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    return mFinder.findPhrases(utf8, offset, length, phraseSet, listener);
+  }
+
+  /**
+   * UTF-8のバイト列を保持するByteBufferから独立したフレーズを検索する
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   */
+  public long findPhrases(ByteBuffer utf8, PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    return mFinder.findPhrases(utf8, phraseSet, listener);
+  }
+
+  /**
+   * UTF-8のバイト列から独立したフレーズを検索し、検出位置をプリミティブ配列で保持した結果を返す
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefUtf8CompactResult findPhrasesCompact(byte[] utf8, PhraseSet phraseSet) {
+    return mFinder.findPhrasesCompact(utf8, phraseSet);
+  }
+
+  /**
+   * UTF-8のバイト列を保持するByteBufferから独立したフレーズを検索し、検出位置をプリミティブ配列で保持した結果を返す
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefUtf8CompactResult findPhrasesCompact(ByteBuffer utf8, PhraseSet phraseSet) {
+    return mFinder.findPhrasesCompact(utf8, phraseSet);
+  }
+
+  /**
+   * 分析結果のヒントを、文字列を組み立てずにoutに書き込む
+   * 
+   * @param srcText
+   * @param result
+   * @param out
+   * @throws IOException
+   */
+  public void writeHint(String srcText, PhrasefResult result, Appendable out) throws IOException {
+    mFinder.writeHint(srcText, result, out);
+  }
+
+  /**
+   * 複数のフレーズをまとめた分析結果のヒントを、文字列を組み立てずにoutに書き込む
+   * 
+   * @param srcText
+   * @param resultSet
+   * @param out
+   * @throws IOException
+   */
+  public void writeHint(String srcText, PhrasefResultSet resultSet, Appendable out) throws IOException {
+    mFinder.writeHint(srcText, resultSet, out);
+  }
+
+  /**
+   * 複数のテキストを共通プールで並列に検索する
+   * 
+   * @param srcTexts
+   * @param phraseSet
+   * @return srcTextsと同じ順に並んだ検索結果
+   */
+  public List<PhrasefResultSet> findPhrasesInBatch(Collection<String> srcTexts, PhraseSet phraseSet) {
+    return findPhrasesInBatch(srcTexts, phraseSet, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * 複数のテキストを、指定したExecutorで並列に検索する
+   * 
+   * テキストをいくつかのかたまりに分けてExecutorに渡し、すべての検索が終わるまで待つ。
+   * 
+   * @param srcTexts
+   * @param phraseSet
+   * @param executor
+   * @return srcTextsと同じ順に並んだ検索結果
+   */
+  public List<PhrasefResultSet> findPhrasesInBatch(Collection<String> srcTexts, PhraseSet phraseSet, Executor executor) {
+    try {
+      return findPhrasesInBatchAsync(srcTexts, phraseSet, executor).join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * 複数のテキストを、指定したExecutorで並列に検索する（検索の終了を待たない）
+   * 
+   * テキストをいくつかのかたまりに分けてExecutorに渡し、すべての検索が終わると完了するCompletableFutureを返す。
+   * 
+   * @param srcTexts
+   * @param phraseSet
+   * @param executor
+   * @return srcTextsと同じ順に並んだ検索結果
+   */
+  public CompletableFuture<List<PhrasefResultSet>> findPhrasesInBatchAsync(Collection<String> srcTexts, final PhraseSet phraseSet, Executor executor) {
+
+    final String[] texts = srcTexts.toArray(new String[0]);
+    final PhrasefResultSet[] results = new PhrasefResultSet[texts.length];
+
+    if (texts.length == 0) {
+      return CompletableFuture.completedFuture((List<PhrasefResultSet>) new ArrayList<PhrasefResultSet>());
+    }
+
+    // テキストの数が多くてもタスクが増えすぎないように、かたまりに分ける
+    final int numOfChunks = Math.min(texts.length, Runtime.getRuntime().availableProcessors() * 4);
+    final int chunkSize = (texts.length + numOfChunks - 1) / numOfChunks;
+
+    final List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+    for (int from = 0; from < texts.length; from += chunkSize) {
+      final int chunkFrom = from;
+      final int chunkTo = Math.min(from + chunkSize, texts.length);
+      futures.add(CompletableFuture.runAsync(new Runnable() {
+        @Override
+        public void run() {
+          for (int i = chunkFrom; i < chunkTo; i++) {
+            results[i] = findPhrases(texts[i], phraseSet);
+          }
+        }
+      }, executor));
+    }
+
+    return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(new Function<Void, List<PhrasefResultSet>>() {
+      @Override
+      public List<PhrasefResultSet> apply(Void v) {
+        return new ArrayList<PhrasefResultSet>(Arrays.asList(results));
+      }
+    });
+  }
+
+  /**
+   * ImmutablePhraseFinderを生成する
+   */
+  public static final class Builder {
+
+    private String mHintPrefix = PhraseFinder.DEFAULT_HINT_PREFIX;
+    private String mHintSuffix = PhraseFinder.DEFAULT_HINT_SUFFIX;
+    private HintListener mHintListener = null;
+    private HintContextListener mHintContextListener = null;
+    private HintMode mHintMode = HintMode.EAGER;
+    private HintOverlapPolicy mHintOverlapPolicy = HintOverlapPolicy.FIRST;
+    private PhraseFinderMetrics mMetrics = null;
+    private PhraseSearcher.Strategy mSearchStrategy = PhraseSearcher.AUTO;
+    private MatchMode mMatchMode = MatchMode.EXACT;
+    private BoundaryPolicy mBoundaryPolicy = BoundaryPolicy.DEFAULT;
+    private PhraseResultCache mResultCache = null;
+
+    /**
+     * 処理結果のhintに表示されるカッコ文字列を指定する
+     * 
+     * @param prefix
+     * @param suffix
+     * @return
+     */
+    public Builder setHintBrace(String prefix, String suffix) {
+      if (prefix != null) {
+        mHintPrefix = prefix;
+      }
+      if (suffix != null) {
+        mHintSuffix = suffix;
+      }
+      return Builder.this;
+    }
+
+    /**
+     * ヒントの書式を指定するHintListenerを指定する（スレッドセーフであること）
+     * 
+     * @param listener
+     * @return
+     */
+    public Builder setHintListener(HintListener listener) {
+      mHintListener = listener;
+      return Builder.this;
+    }
+
+    /**
+     * ヒントの書式を指定するHintContextListenerを指定する（スレッドセーフであること）
+     * 
+     * HintContextListenerに渡すHintContextは、ヒントを組み立てるたびに生成する
+     * 
+     * @param listener
+     * @return
+     */
+    public Builder setHintContextListener(HintContextListener listener) {
+      mHintContextListener = listener;
+      return Builder.this;
+    }
+
+    /**
+     * 分析結果のhintを組み立てるタイミングを指定する
+     * 
+     * @param hintMode
+     * @return
+     */
+    public Builder setHintMode(HintMode hintMode) {
+      if (hintMode == null) {
+        throw new NullPointerException("hintMode must not be null");
+      }
+      mHintMode = hintMode;
+      return Builder.this;
+    }
+
+    /**
+     * 複数のフレーズをまとめたhintで、検出位置が重なる場合にどれをカッコで囲むかを指定する
+     * 
+     * @param hintOverlapPolicy
+     * @return
+     */
+    public Builder setHintOverlapPolicy(HintOverlapPolicy hintOverlapPolicy) {
+      if (hintOverlapPolicy == null) {
+        throw new NullPointerException("hintOverlapPolicy must not be null");
+      }
+      mHintOverlapPolicy = hintOverlapPolicy;
+      return Builder.this;
+    }
+
+    /**
+     * 検索処理の件数と処理時間の集計先を指定する（nullの場合は集計しない）
+     * 
+     * @param metrics
+     * @return
+     */
+    public Builder setMetrics(PhraseFinderMetrics metrics) {
+      mMetrics = metrics;
+      return Builder.this;
+    }
+
+    /**
+     * １つのフレーズを検索するときの候補の探し方を指定する
+     * 
+     * @param searchStrategy
+     * @return
+     */
+    public Builder setSearchStrategy(PhraseSearcher.Strategy searchStrategy) {
+      if (searchStrategy == null) {
+        throw new NullPointerException("searchStrategy must not be null");
+      }
+      mSearchStrategy = searchStrategy;
+      return Builder.this;
+    }
+
+    /**
+     * 文字の比較方法を指定する
+     * 
+     * @param matchMode
+     * @return
+     */
+    public Builder setMatchMode(MatchMode matchMode) {
+      if (matchMode == null) {
+        throw new NullPointerException("matchMode must not be null");
+      }
+      mMatchMode = matchMode;
+      return Builder.this;
+    }
+
+    /**
+     * フレーズの前後の文字が従属しているか否かを判定するルールを指定する
+     * 
+     * @param boundaryPolicy
+     * @return
+     */
+    public Builder setBoundaryPolicy(BoundaryPolicy boundaryPolicy) {
+      if (boundaryPolicy == null) {
+        throw new NullPointerException("boundaryPolicy must not be null");
+      }
+      mBoundaryPolicy = boundaryPolicy;
+      return Builder.this;
+    }
+
+    /**
+     * findPhrases(String, PhraseSet)の検索結果をキャッシュするPhraseResultCacheを指定する（nullの場合はキャッシュしない）
+     * 
+     * キャッシュした検出位置を使った検索はテキストを走査しないので、PhraseFinderMetricsの検索処理の件数と処理時間には含まれない
+     * （ヒントの組み立ては集計される）。キャッシュを使った回数はPhraseResultCache#getHitCountで取り出す。
+     * 
+     * @param resultCache
+     * @return
+     */
+    public Builder setResultCache(PhraseResultCache resultCache) {
+      mResultCache = resultCache;
+      return Builder.this;
+    }
+
+    public ImmutablePhraseFinder build() {
+      return new ImmutablePhraseFinder(Builder.this);
+    }
+  }
+}
@@ -0,0 +1,159 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * １つの大きなテキストを分割し、fork/joinで並列に走査する
+ * 
+ * 各かたまりは、開始位置がそのかたまりの中にある候補を担当し、
+ * かたまりの後ろに（もっとも長いフレーズの長さ-1）文字はみ出して走査する。
+ * 前後の文字はテキスト全体から判定するので、境目の候補を取りこぼしたり二重に数えたりしない。<br>
+ * 同じフレーズの候補どうしが重ならないようにする処理は、すべてのかたまりの候補をつなげてから順に行う。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class ParallelPhraseScanner {
+
+  // 1つのかたまりの文字数
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+  private ParallelPhraseScanner() {
+  }
+
+  /**
+   * テキストを並列に走査し、独立したフレーズの出現位置を通知する
+   * 
+   * 同じフレーズの出現位置は出現順に通知される。検出される位置はPhraseSet#scanと同じになる
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @param pool
+   * @param segmentSize
+   * @param handler
+   */
+  static void scan(String srcText, PhraseSet phraseSet, ForkJoinPool pool, int segmentSize, PhraseSet.HitHandler handler) {
+
+    // かたまりがフレーズより短いと、はみ出して走査する部分ばかりになる
+    final int size = Math.max(segmentSize, phraseSet.getMaxPhraseLength() * 4);
+
+    final int numOfSegments = (int) (((long) srcText.length() + size - 1) / size);
+
+    if (numOfSegments <= 1) {
+      phraseSet.scan(srcText, handler);
+      return;
+    }
+
+    final CandidateBuffer[] buffers = new CandidateBuffer[numOfSegments];
+    pool.invoke(new SegmentScanTask(srcText, phraseSet, size, 0, numOfSegments, buffers));
+
+    // フレーズごとに、直前に検出した候補の終了位置
+    final int[] lastEndIndexes = new int[phraseSet.size()];
+
+    for (CandidateBuffer buffer : buffers) {
+      for (int i = 0; i < buffer.numOfCandidates; i++) {
+        final int phraseId = buffer.phraseIds[i];
+        final int startIndex = buffer.startIndexes[i];
+        final int endIndex = buffer.endIndexes[i];
+        if (startIndex < lastEndIndexes[phraseId]) {
+          // - 同じフレーズの直前の候補と重なっている場合
+          continue;
+        }
+        lastEndIndexes[phraseId] = endIndex;
+        if (buffer.independents[i]) {
+          handler.onHit(phraseId, startIndex, endIndex);
+        }
+      }
+    }
+  }
+
+  /**
+   * かたまりの範囲を半分ずつに分けながら走査するタスク
+   */
+  private static final class SegmentScanTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String mSrcText;
+    private final PhraseSet mPhraseSet;
+    private final int mSegmentSize;
+    private final int mFromSegment;
+    private final int mToSegment;
+    private final CandidateBuffer[] mBuffers;
+
+    SegmentScanTask(String srcText, PhraseSet phraseSet, int segmentSize, int fromSegment, int toSegment, CandidateBuffer[] buffers) {
+      mSrcText = srcText;
+      mPhraseSet = phraseSet;
+      mSegmentSize = segmentSize;
+      mFromSegment = fromSegment;
+      mToSegment = toSegment;
+      mBuffers = buffers;
+    }
+
+    @Override
+    protected void compute() {
+      if (mToSegment - mFromSegment > 1) {
+        final int mid = (mFromSegment + mToSegment) >>> 1;
+        invokeAll(new SegmentScanTask(mSrcText, mPhraseSet, mSegmentSize, mFromSegment, mid, mBuffers),
+            new SegmentScanTask(mSrcText, mPhraseSet, mSegmentSize, mid, mToSegment, mBuffers));
+        return;
+      }
+      final int fromIndex = mFromSegment * mSegmentSize;
+      final int toIndex = (int) Math.min(mSrcText.length(), (long) fromIndex + mSegmentSize);
+      final CandidateBuffer buffer = new CandidateBuffer();
+      mPhraseSet.scanCandidates(mSrcText, fromIndex, toIndex, buffer);
+      mBuffers[mFromSegment] = buffer;
+    }
+  }
+
+  /**
+   * １つのかたまりで見つかった候補
+   */
+  private static final class CandidateBuffer implements PhraseSet.CandidateHandler {
+
+    int[] phraseIds = new int[16];
+    int[] startIndexes = new int[16];
+    int[] endIndexes = new int[16];
+    boolean[] independents = new boolean[16];
+    int numOfCandidates = 0;
+
+    @Override
+    public void onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent) {
+      if (numOfCandidates == phraseIds.length) {
+        final int newLength = numOfCandidates * 2;
+        phraseIds = Arrays.copyOf(phraseIds, newLength);
+        startIndexes = Arrays.copyOf(startIndexes, newLength);
+        endIndexes = Arrays.copyOf(endIndexes, newLength);
+        independents = Arrays.copyOf(independents, newLength);
+      }
+      phraseIds[numOfCandidates] = phraseId;
+      startIndexes[numOfCandidates] = startIndex;
+      endIndexes[numOfCandidates] = endIndex;
+      independents[numOfCandidates] = isIndependent;
+      numOfCandidates++;
+    }
+  }
+}
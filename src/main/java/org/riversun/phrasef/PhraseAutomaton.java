@@ -0,0 +1,364 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 複数のフレーズを１回の走査で検出するためのAho-Corasickオートマトン
+ *
+ * 状態遷移表は配列に平坦化して保持する。構築後は不変なのでスレッド間で共有できる。
+ *
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class PhraseAutomaton {
+
+  // ルート状態
+  static final int ROOT = 0;
+
+  // 出力（フレーズ）を持たないことを示す値
+  static final int NO_OUTPUT = -1;
+
+  // 状態ごとの遷移の開始位置（mEdgeChars、mEdgeTargetsへのインデックス）
+  private final int[] mEdgeStart;
+
+  // 遷移文字（状態ごとに昇順で並ぶ）
+  private final char[] mEdgeChars;
+
+  // 遷移先の状態
+  private final int[] mEdgeTargets;
+
+  // 失敗時の遷移先
+  private final int[] mFail;
+
+  // その状態で検出されるフレーズのID
+  private final int[] mOutput;
+
+  // 失敗遷移をたどった先で、出力を持つ最初の状態
+  private final int[] mOutputLink;
+
+  /**
+   * フレーズのリストからオートマトンを構築する
+   *
+   * フレーズIDはリスト内のインデックスとなる。空文字列のフレーズは無視される。
+   * 同じフレーズが複数ある場合は、最初に出現したもののIDが使われる。
+   *
+   * @param phrases
+   */
+  PhraseAutomaton(List<String> phrases) {
+
+    // まずはトライ木を構築する
+    final List<Map<Character, Integer>> trie = new ArrayList<Map<Character, Integer>>();
+    final List<Integer> trieOutput = new ArrayList<Integer>();
+    trie.add(new HashMap<Character, Integer>());
+    trieOutput.add(NO_OUTPUT);
+
+    for (int phraseId = 0; phraseId < phrases.size(); phraseId++) {
+      final String phrase = phrases.get(phraseId);
+      if (phrase.length() == 0) {
+        continue;
+      }
+      int node = ROOT;
+      for (int i = 0; i < phrase.length(); i++) {
+        final Character c = phrase.charAt(i);
+        Integer next = trie.get(node).get(c);
+        if (next == null) {
+          next = trie.size();
+          trie.add(new HashMap<Character, Integer>());
+          trieOutput.add(NO_OUTPUT);
+          trie.get(node).put(c, next);
+        }
+        node = next;
+      }
+      if (trieOutput.get(node) == NO_OUTPUT) {
+        trieOutput.set(node, phraseId);
+      }
+    }
+
+    // 幅優先順に状態番号を振り直し、遷移を配列に平坦化する
+    final int numOfNodes = trie.size();
+    final int[] bfsOrder = new int[numOfNodes];
+    final int[] newIdOf = new int[numOfNodes];
+    int head = 0;
+    int tail = 0;
+    bfsOrder[tail++] = ROOT;
+    newIdOf[ROOT] = 0;
+    while (head < tail) {
+      final int oldNode = bfsOrder[head++];
+      final Character[] keys = trie.get(oldNode).keySet().toArray(new Character[0]);
+      Arrays.sort(keys);
+      for (Character c : keys) {
+        final int child = trie.get(oldNode).get(c);
+        newIdOf[child] = tail;
+        bfsOrder[tail++] = child;
+      }
+    }
+
+    mEdgeStart = new int[numOfNodes + 1];
+    mEdgeChars = new char[numOfNodes - 1];
+    mEdgeTargets = new int[numOfNodes - 1];
+    mOutput = new int[numOfNodes];
+
+    int edge = 0;
+    for (int node = 0; node < numOfNodes; node++) {
+      final int oldNode = bfsOrder[node];
+      mEdgeStart[node] = edge;
+      mOutput[node] = trieOutput.get(oldNode);
+      final Character[] keys = trie.get(oldNode).keySet().toArray(new Character[0]);
+      Arrays.sort(keys);
+      for (Character c : keys) {
+        mEdgeChars[edge] = c;
+        mEdgeTargets[edge] = newIdOf[trie.get(oldNode).get(c)];
+        edge++;
+      }
+    }
+    mEdgeStart[numOfNodes] = edge;
+
+    // 幅優先順に失敗遷移と出力リンクを求める
+    mFail = new int[numOfNodes];
+    mOutputLink = new int[numOfNodes];
+    mOutputLink[ROOT] = NO_OUTPUT;
+    for (int node = 0; node < numOfNodes; node++) {
+      for (int e = mEdgeStart[node]; e < mEdgeStart[node + 1]; e++) {
+        final int child = mEdgeTargets[e];
+        if (node == ROOT) {
+          mFail[child] = ROOT;
+        } else {
+          mFail[child] = nextState(mFail[node], mEdgeChars[e]);
+        }
+        final int fail = mFail[child];
+        mOutputLink[child] = mOutput[fail] != NO_OUTPUT ? fail : mOutputLink[fail];
+      }
+    }
+  }
+
+  private PhraseAutomaton(int[] edgeStart, char[] edgeChars, int[] edgeTargets, int[] fail, int[] output, int[] outputLink) {
+    mEdgeStart = edgeStart;
+    mEdgeChars = edgeChars;
+    mEdgeTargets = edgeTargets;
+    mFail = fail;
+    mOutput = output;
+    mOutputLink = outputLink;
+  }
+
+  /**
+   * {@link #writeTo(ByteBuffer)}で書き込むバイト数を返す
+   *
+   * @return
+   */
+  int serializedSize() {
+    final int numOfNodes = mOutput.length;
+    final int numOfEdges = mEdgeChars.length;
+    return 4 + 4 + (numOfNodes + 1) * 4 + numOfEdges * 2 + numOfEdges * 4 + numOfNodes * 4 * 3;
+  }
+
+  /**
+   * 平坦化した状態遷移表をそのまま書き込む
+   *
+   * @param buf
+   */
+  void writeTo(ByteBuffer buf) {
+    buf.putInt(mOutput.length);
+    buf.putInt(mEdgeChars.length);
+    for (int v : mEdgeStart) {
+      buf.putInt(v);
+    }
+    for (char c : mEdgeChars) {
+      buf.putChar(c);
+    }
+    for (int v : mEdgeTargets) {
+      buf.putInt(v);
+    }
+    for (int v : mFail) {
+      buf.putInt(v);
+    }
+    for (int v : mOutput) {
+      buf.putInt(v);
+    }
+    for (int v : mOutputLink) {
+      buf.putInt(v);
+    }
+  }
+
+  /**
+   * {@link #writeTo(ByteBuffer)}で書き込んだ状態遷移表を読み込む
+   *
+   * @param buf
+   * @param numOfPhrases
+   *          フレーズの数（フレーズIDの検証に使う）
+   * @return
+   * @throws IllegalArgumentException
+   *           状態遷移表として正しくない場合
+   */
+  static PhraseAutomaton readFrom(ByteBuffer buf, int numOfPhrases) {
+    final int numOfNodes = buf.getInt();
+    final int numOfEdges = buf.getInt();
+    if (numOfNodes <= 0 || numOfEdges != numOfNodes - 1 || (long) numOfNodes * 18 > buf.remaining()) {
+      throw new IllegalArgumentException("invalid automaton size. nodes=" + numOfNodes + " edges=" + numOfEdges);
+    }
+
+    final int[] edgeStart = new int[numOfNodes + 1];
+    final char[] edgeChars = new char[numOfEdges];
+    final int[] edgeTargets = new int[numOfEdges];
+    final int[] fail = new int[numOfNodes];
+    final int[] output = new int[numOfNodes];
+    final int[] outputLink = new int[numOfNodes];
+
+    buf.asIntBuffer().get(edgeStart);
+    buf.position(buf.position() + edgeStart.length * 4);
+    buf.asCharBuffer().get(edgeChars);
+    buf.position(buf.position() + edgeChars.length * 2);
+    buf.asIntBuffer().get(edgeTargets);
+    buf.position(buf.position() + edgeTargets.length * 4);
+    buf.asIntBuffer().get(fail);
+    buf.position(buf.position() + fail.length * 4);
+    buf.asIntBuffer().get(output);
+    buf.position(buf.position() + output.length * 4);
+    buf.asIntBuffer().get(outputLink);
+    buf.position(buf.position() + outputLink.length * 4);
+
+    // 検索中に配列の範囲外を参照しないことを確かめる
+    for (int node = 0; node < numOfNodes; node++) {
+      if (edgeStart[node] < 0 || edgeStart[node] > edgeStart[node + 1]
+          || fail[node] < 0 || fail[node] >= numOfNodes
+          || output[node] < NO_OUTPUT || output[node] >= numOfPhrases
+          || outputLink[node] < NO_OUTPUT || outputLink[node] >= numOfNodes) {
+        throw new IllegalArgumentException("invalid automaton state. node=" + node);
+      }
+    }
+    if (edgeStart[numOfNodes] != numOfEdges) {
+      throw new IllegalArgumentException("invalid automaton edges");
+    }
+    for (int edge = 0; edge < numOfEdges; edge++) {
+      if (edgeTargets[edge] <= ROOT || edgeTargets[edge] >= numOfNodes) {
+        throw new IllegalArgumentException("invalid automaton edge. edge=" + edge);
+      }
+    }
+
+    // 遷移がルートからのトライ木（状態番号は幅優先順）になっていることを確かめ、各状態の深さを求める
+    final int[] depth = new int[numOfNodes];
+    final boolean[] reached = new boolean[numOfNodes];
+    reached[ROOT] = true;
+    for (int node = 0; node < numOfNodes; node++) {
+      for (int edge = edgeStart[node]; edge < edgeStart[node + 1]; edge++) {
+        final int child = edgeTargets[edge];
+        if (child <= node || reached[child] || (edge > edgeStart[node] && edgeChars[edge - 1] >= edgeChars[edge])) {
+          throw new IllegalArgumentException("invalid automaton edge. edge=" + edge);
+        }
+        reached[child] = true;
+        depth[child] = depth[node] + 1;
+      }
+    }
+    for (int node = 0; node < numOfNodes; node++) {
+      if (!reached[node]) {
+        throw new IllegalArgumentException("unreachable automaton state. node=" + node);
+      }
+    }
+
+    // 失敗遷移と出力リンクは必ず浅い状態を指すこと（循環していると検索が終わらなくなる）
+    if (fail[ROOT] != ROOT || outputLink[ROOT] != NO_OUTPUT) {
+      throw new IllegalArgumentException("invalid automaton state. node=" + ROOT);
+    }
+    for (int node = 1; node < numOfNodes; node++) {
+      if (depth[fail[node]] >= depth[node]
+          || (outputLink[node] != NO_OUTPUT && depth[outputLink[node]] >= depth[node])) {
+        throw new IllegalArgumentException("invalid automaton link. node=" + node);
+      }
+    }
+
+    return new PhraseAutomaton(edgeStart, edgeChars, edgeTargets, fail, output, outputLink);
+  }
+
+  /**
+   * 現在の状態から文字cを読んだときの次の状態を返す
+   *
+   * @param state
+   * @param c
+   * @return
+   */
+  int nextState(int state, char c) {
+    int s = state;
+    while (true) {
+      final int next = findEdge(s, c);
+      if (next >= 0) {
+        return next;
+      }
+      if (s == ROOT) {
+        return ROOT;
+      }
+      s = mFail[s];
+    }
+  }
+
+  /**
+   * 指定した状態で検出されるフレーズを持つ最初の状態を返す（無ければ{@link #NO_OUTPUT}）
+   *
+   * @param state
+   * @return
+   */
+  int firstMatch(int state) {
+    return mOutput[state] != NO_OUTPUT ? state : mOutputLink[state];
+  }
+
+  /**
+   * 同じ位置で検出される次の（より短い）フレーズを持つ状態を返す（無ければ{@link #NO_OUTPUT}）
+   *
+   * @param matchState
+   * @return
+   */
+  int nextMatch(int matchState) {
+    return mOutputLink[matchState];
+  }
+
+  /**
+   * 状態に対応するフレーズIDを返す
+   *
+   * @param matchState
+   * @return
+   */
+  int phraseIdOf(int matchState) {
+    return mOutput[matchState];
+  }
+
+  private int findEdge(int state, char c) {
+    int low = mEdgeStart[state];
+    int high = mEdgeStart[state + 1] - 1;
+    while (low <= high) {
+      final int mid = (low + high) >>> 1;
+      final char midChar = mEdgeChars[mid];
+      if (midChar < c) {
+        low = mid + 1;
+      } else if (midChar > c) {
+        high = mid - 1;
+      } else {
+        return mEdgeTargets[mid];
+      }
+    }
+    return -1;
+  }
+}
@@ -0,0 +1,553 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.util.Arrays;
+
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+
+/**
+ * 編集されていくテキストについて、独立したフレーズの検索結果を保持し続ける
+ * 
+ * {@link #applyEdit(int, int, String)}で編集を与えると、編集された位置の前後
+ * （もっとも長いフレーズの長さ+境界の１文字）だけを走査し直し、それより後ろの検出位置はずらして使う。<br>
+ * 同じフレーズの候補どうしは重ならないように前から選ぶので、走査し直した範囲の終わりで選び方が変わった場合は、
+ * 元の選び方と一致するところまで走査を続ける（ほとんどの場合はすぐに一致する）。<br>
+ * 検索結果は、編集後のテキスト全体をfindPhrasesで検索した結果と同じになる。
+ * 
+ * スレッドセーフではない。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseEditSession {
+
+  private final PhraseFinder mFinder;
+  private final PhraseSet mPhraseSet;
+
+  // 編集中のテキスト
+  private final GapBuffer mText = new GapBuffer();
+
+  // getTextで作った文字列（編集されるまで使い回す）
+  private String mTextCache = "";
+
+  // フレーズごとに、重ならないように選んだ候補（独立していないものも含む）
+  private final Chain[] mChains;
+
+  /**
+   * @param finder
+   *          検索結果を変換するときに使うPhraseFinder（ヒントの書式など）
+   * @param phraseSet
+   * @param srcText
+   *          最初のテキスト
+   */
+  public PhraseEditSession(PhraseFinder finder, PhraseSet phraseSet, String srcText) {
+    if (finder == null || phraseSet == null || srcText == null) {
+      throw new NullPointerException("finder, phraseSet and srcText must not be null");
+    }
+    mFinder = finder;
+    mPhraseSet = phraseSet;
+    mChains = new Chain[phraseSet.size()];
+    applyEdit(0, 0, srcText);
+  }
+
+  /**
+   * テキストの編集を反映する
+   * 
+   * [offset, offset+deletedLength)を削除し、そこにinsertedTextを挿入する
+   * 
+   * @param offset
+   * @param deletedLength
+   * @param insertedText
+   */
+  public void applyEdit(int offset, int deletedLength, String insertedText) {
+
+    if (insertedText == null) {
+      throw new NullPointerException("insertedText must not be null");
+    }
+    final int oldLength = mText.length();
+    if (offset < 0 || deletedLength < 0 || offset > oldLength || deletedLength > oldLength - offset) {
+      throw new IndexOutOfBoundsException("offset=" + offset + " deletedLength=" + deletedLength + " length=" + oldLength);
+    }
+
+    mText.replace(offset, deletedLength, insertedText);
+    mTextCache = null;
+    final int newLength = mText.length();
+
+    final int maxPhraseLength = mPhraseSet.getMaxPhraseLength();
+    if (maxPhraseLength == 0) {
+      return;
+    }
+
+    final int delta = insertedText.length() - deletedLength;
+
+    // 走査し直す範囲（開始位置が[windowFrom, windowTo)の候補）
+    // これより前の候補と後ろの候補は、変更された文字にも、変更された文字に隣接する文字にもかからない
+    final int windowFrom = Math.max(0, offset - maxPhraseLength - 1);
+    final int windowTo = (int) Math.min(newLength, (long) offset + insertedText.length() + maxPhraseLength + 1);
+
+    // 編集前のテキストでの、走査し直さずにずらして使う候補の開始位置
+    final int oldTailFrom = windowTo - delta;
+
+    final CandidateList window = scanCandidates(windowFrom, windowTo);
+
+    final int numOfPhrases = mChains.length;
+
+    // 走査し直した範囲の候補を、フレーズごとに並べる
+    final int[] numOfWindowCandidates = new int[numOfPhrases];
+    for (int i = 0; i < window.size; i++) {
+      numOfWindowCandidates[window.phraseIds[i]]++;
+    }
+
+    // 元の選び方と一致するまで走査を続けるフレーズ
+    final Chain[] pendingTails = new Chain[numOfPhrases];
+    final int[] lastEndIndexes = new int[numOfPhrases];
+    int numOfPendings = 0;
+
+    final int[] cursor = new int[numOfPhrases + 1];
+    final int[] windowOrder = new int[window.size];
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      cursor[phraseId + 1] = cursor[phraseId] + numOfWindowCandidates[phraseId];
+    }
+    for (int i = 0; i < window.size; i++) {
+      windowOrder[cursor[window.phraseIds[i]]++] = i;
+    }
+
+    int windowIndex = 0;
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+
+      final Chain chain = mChains[phraseId];
+      final int length = mPhraseSet.getPhrase(phraseId).length();
+      final int numOfCandidates = numOfWindowCandidates[phraseId];
+
+      if (chain == null && numOfCandidates == 0) {
+        continue;
+      }
+
+      final int prefixEnd = chain != null ? chain.lowerBound(windowFrom) : 0;
+      final int tailBegin = chain != null ? chain.lowerBound(oldTailFrom) : 0;
+      final int oldLastEnd = tailBegin > 0 ? chain.starts[tailBegin - 1] + length : 0;
+
+      if (numOfCandidates == 0 && prefixEnd == tailBegin) {
+        // - 走査し直した範囲に、このフレーズの候補が前にも後にも無い場合
+        chain.shift(tailBegin, delta);
+        continue;
+      }
+
+      int lastEnd = prefixEnd > 0 ? chain.starts[prefixEnd - 1] + length : 0;
+      final Chain middle = new Chain();
+      for (int n = 0; n < numOfCandidates; n++) {
+        final int i = windowOrder[windowIndex++];
+        final int startIndex = window.startIndexes[i];
+        if (startIndex < lastEnd) {
+          // - 同じフレーズの直前の候補と重なっている場合
+          continue;
+        }
+        lastEnd = startIndex + length;
+        middle.add(startIndex, window.independents[i]);
+      }
+
+      // 走査し直した範囲の終わりで、後ろの候補の選び方に影響する終了位置が同じなら、後ろの候補はそのまま使える
+      final int oldBlockEnd = oldLastEnd > oldTailFrom ? oldLastEnd + delta : windowTo;
+      final int newBlockEnd = Math.max(lastEnd, windowTo);
+      if (oldBlockEnd == newBlockEnd) {
+        if (chain == null) {
+          mChains[phraseId] = middle;
+        } else {
+          chain.replace(prefixEnd, tailBegin, middle);
+          chain.shift(prefixEnd + middle.size, delta);
+        }
+      } else {
+        final Chain tail = chain != null ? chain.copyOf(tailBegin, chain.size, delta) : new Chain();
+        final Chain newChain = chain != null ? chain.truncate(prefixEnd) : new Chain();
+        newChain.addAll(middle);
+        mChains[phraseId] = newChain;
+        pendingTails[phraseId] = tail;
+        lastEndIndexes[phraseId] = lastEnd;
+        numOfPendings++;
+      }
+    }
+
+    if (numOfPendings > 0) {
+      resync(windowTo, pendingTails, lastEndIndexes, numOfPendings);
+    }
+  }
+
+  /**
+   * 走査し直した範囲より後ろを、すべてのフレーズの選び方が元の選び方と一致するまで走査する
+   */
+  private void resync(int fromIndex, Chain[] pendingTails, int[] lastEndIndexes, int numOfPendings) {
+
+    final int[] tailCursors = new int[pendingTails.length];
+    final int segmentSize = Math.max(256, mPhraseSet.getMaxPhraseLength() * 4);
+
+    int remaining = numOfPendings;
+    final int length = mText.length();
+    for (int segmentFrom = fromIndex; remaining > 0 && segmentFrom < length; segmentFrom += segmentSize) {
+
+      final CandidateList candidates = scanCandidates(segmentFrom, (int) Math.min(length, (long) segmentFrom + segmentSize));
+
+      // 候補は終了位置の順に並ぶので、同じフレーズの候補は開始位置の順になる
+      for (int i = 0; i < candidates.size && remaining > 0; i++) {
+        final int phraseId = candidates.phraseIds[i];
+        final Chain tail = pendingTails[phraseId];
+        if (tail == null) {
+          continue;
+        }
+        final int startIndex = candidates.startIndexes[i];
+        final boolean isInOldChain = tailCursors[phraseId] < tail.size && tail.starts[tailCursors[phraseId]] == startIndex;
+        if (isInOldChain) {
+          tailCursors[phraseId]++;
+        }
+        if (startIndex < lastEndIndexes[phraseId]) {
+          // - 同じフレーズの直前の候補と重なっている場合
+          continue;
+        }
+        lastEndIndexes[phraseId] = startIndex + mPhraseSet.getPhrase(phraseId).length();
+        mChains[phraseId].add(startIndex, candidates.independents[i]);
+
+        if (isInOldChain) {
+          // - 元の選び方と同じ候補を選んだら、それより後ろは元の選び方と同じになる
+          mChains[phraseId].addAll(tail.copyOf(tailCursors[phraseId], tail.size, 0));
+          pendingTails[phraseId] = null;
+          remaining--;
+        }
+      }
+    }
+  }
+
+  /**
+   * 開始位置が[fromIndex, toIndex)にある候補を、テキストのその付近だけを切り出して走査する
+   * 
+   * @param fromIndex
+   * @param toIndex
+   * @return
+   */
+  private CandidateList scanCandidates(int fromIndex, int toIndex) {
+
+    // 切り出した文字列の中でも、前後の文字による判定（先頭から１文字目の前の文字は見ない）がテキスト全体と同じになるように、
+    // 前に２文字、後ろに（もっとも長いフレーズの長さ）文字を余分に切り出す
+    final int base = fromIndex >= 2 ? fromIndex - 2 : 0;
+    final int limit = (int) Math.min(mText.length(), (long) toIndex + mPhraseSet.getMaxPhraseLength());
+
+    final CandidateList candidates = new CandidateList(base);
+    mPhraseSet.scanCandidates(mText.substring(base, limit), fromIndex - base, toIndex - base, candidates);
+    return candidates;
+  }
+
+  /**
+   * 現在のテキストを返す
+   * 
+   * 編集されてから最初に呼ばれたときに、テキスト全体の文字列を作る
+   * 
+   * @return
+   */
+  public String getText() {
+    if (mTextCache == null) {
+      mTextCache = mText.toString();
+    }
+    return mTextCache;
+  }
+
+  /**
+   * 現在のテキストの長さを返す（テキスト全体の文字列は作らない）
+   * 
+   * @return
+   */
+  public int getTextLength() {
+    return mText.length();
+  }
+
+  /**
+   * 使っているフレーズ群を返す
+   * 
+   * @return
+   */
+  public PhraseSet getPhraseSet() {
+    return mPhraseSet;
+  }
+
+  /**
+   * 現在のテキストに含まれる、独立したフレーズの数を返す
+   * 
+   * @return
+   */
+  public int getNumOfHits() {
+    int numOfHits = 0;
+    for (Chain chain : mChains) {
+      if (chain != null) {
+        numOfHits += chain.numOfIndependents();
+      }
+    }
+    return numOfHits;
+  }
+
+  /**
+   * 現在のテキストの検索結果をプリミティブ配列で返す
+   * 
+   * @return
+   */
+  public PhrasefCompactResult getCompactResult() {
+    final int numOfPhrases = mChains.length;
+    final int[] offsets = new int[numOfPhrases + 1];
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      offsets[phraseId + 1] = offsets[phraseId] + (mChains[phraseId] != null ? mChains[phraseId].numOfIndependents() : 0);
+    }
+    final int[] startIndexes = new int[offsets[numOfPhrases]];
+    final int[] endIndexes = new int[offsets[numOfPhrases]];
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      final Chain chain = mChains[phraseId];
+      if (chain == null) {
+        continue;
+      }
+      final int length = mPhraseSet.getPhrase(phraseId).length();
+      int dest = offsets[phraseId];
+      for (int n = 0; n < chain.size; n++) {
+        if (chain.independents[n]) {
+          startIndexes[dest] = chain.starts[n];
+          endIndexes[dest] = chain.starts[n] + length;
+          dest++;
+        }
+      }
+    }
+    return new PhrasefCompactResult(mPhraseSet, offsets, startIndexes, endIndexes);
+  }
+
+  /**
+   * 現在のテキストの検索結果を返す（ヒントはPhraseFinderの設定にしたがって作られる）
+   * 
+   * @return
+   */
+  public PhrasefResultSet getResultSet() {
+    return mFinder.toResultSet(getText(), getCompactResult());
+  }
+
+  /**
+   * １つのフレーズについて、重ならないように選んだ候補の開始位置（昇順）と独立しているか否か
+   */
+  private static final class Chain {
+
+    int[] starts = new int[4];
+    boolean[] independents = new boolean[4];
+    int size = 0;
+
+    void add(int start, boolean isIndependent) {
+      if (size == starts.length) {
+        starts = Arrays.copyOf(starts, size * 2);
+        independents = Arrays.copyOf(independents, size * 2);
+      }
+      starts[size] = start;
+      independents[size] = isIndependent;
+      size++;
+    }
+
+    void addAll(Chain other) {
+      if (size + other.size > starts.length) {
+        final int newLength = Math.max(starts.length * 2, size + other.size);
+        starts = Arrays.copyOf(starts, newLength);
+        independents = Arrays.copyOf(independents, newLength);
+      }
+      System.arraycopy(other.starts, 0, starts, size, other.size);
+      System.arraycopy(other.independents, 0, independents, size, other.size);
+      size += other.size;
+    }
+
+    /**
+     * [from, to)の候補をotherの候補で置き換える
+     */
+    void replace(int from, int to, Chain other) {
+      final int newSize = size - (to - from) + other.size;
+      if (newSize > starts.length) {
+        final int newLength = Math.max(starts.length * 2, newSize);
+        starts = Arrays.copyOf(starts, newLength);
+        independents = Arrays.copyOf(independents, newLength);
+      }
+      System.arraycopy(starts, to, starts, from + other.size, size - to);
+      System.arraycopy(independents, to, independents, from + other.size, size - to);
+      System.arraycopy(other.starts, 0, starts, from, other.size);
+      System.arraycopy(other.independents, 0, independents, from, other.size);
+      size = newSize;
+    }
+
+    /**
+     * 開始位置がstart以上の最初の候補の位置を返す
+     */
+    int lowerBound(int start) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (starts[mid] < start) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * [from, size)の開始位置をdeltaだけずらす
+     */
+    void shift(int from, int delta) {
+      if (delta == 0) {
+        return;
+      }
+      for (int n = from; n < size; n++) {
+        starts[n] += delta;
+      }
+    }
+
+    /**
+     * [from, to)の候補を、開始位置をdeltaだけずらして複製する
+     */
+    Chain copyOf(int from, int to, int delta) {
+      final Chain copy = new Chain();
+      copy.starts = Arrays.copyOfRange(starts, from, Math.max(to, from + 4));
+      copy.independents = Arrays.copyOfRange(independents, from, Math.max(to, from + 4));
+      copy.size = to - from;
+      copy.shift(0, delta);
+      return copy;
+    }
+
+    /**
+     * 先頭からnewSize個の候補だけを残す
+     */
+    Chain truncate(int newSize) {
+      size = newSize;
+      return this;
+    }
+
+    int numOfIndependents() {
+      int count = 0;
+      for (int n = 0; n < size; n++) {
+        if (independents[n]) {
+          count++;
+        }
+      }
+      return count;
+    }
+  }
+
+  /**
+   * 走査で見つかった候補（見つかった順）
+   */
+  private static final class CandidateList implements PhraseSet.CandidateHandler {
+
+    // 切り出した文字列の、テキスト全体での開始位置
+    private final int mBase;
+
+    int[] phraseIds = new int[16];
+    int[] startIndexes = new int[16];
+    boolean[] independents = new boolean[16];
+    int size = 0;
+
+    CandidateList(int base) {
+      mBase = base;
+    }
+
+    @Override
+    public void onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent) {
+      if (size == phraseIds.length) {
+        phraseIds = Arrays.copyOf(phraseIds, size * 2);
+        startIndexes = Arrays.copyOf(startIndexes, size * 2);
+        independents = Arrays.copyOf(independents, size * 2);
+      }
+      phraseIds[size] = phraseId;
+      startIndexes[size] = mBase + startIndex;
+      independents[size] = isIndependent;
+      size++;
+    }
+  }
+
+  /**
+   * 編集位置に空き（ギャップ）を持つ文字配列
+   * 
+   * 同じ付近への編集では、ギャップを動かす分だけしか文字をコピーしない
+   */
+  private static final class GapBuffer {
+
+    private char[] mChars = new char[16];
+    private int mGapStart = 0;
+    private int mGapEnd = 16;
+
+    int length() {
+      return mChars.length - (mGapEnd - mGapStart);
+    }
+
+    void replace(int offset, int deletedLength, String insertedText) {
+      moveGap(offset);
+      mGapEnd += deletedLength;
+
+      final int insertedLength = insertedText.length();
+      if (insertedLength > mGapEnd - mGapStart) {
+        final int length = length();
+        final int newCapacity = Math.max(mChars.length * 2, length + insertedLength + 16);
+        final char[] newChars = new char[newCapacity];
+        final int tailLength = mChars.length - mGapEnd;
+        System.arraycopy(mChars, 0, newChars, 0, mGapStart);
+        System.arraycopy(mChars, mGapEnd, newChars, newCapacity - tailLength, tailLength);
+        mChars = newChars;
+        mGapEnd = newCapacity - tailLength;
+      }
+      insertedText.getChars(0, insertedLength, mChars, mGapStart);
+      mGapStart += insertedLength;
+    }
+
+    private void moveGap(int offset) {
+      if (offset < mGapStart) {
+        final int count = mGapStart - offset;
+        System.arraycopy(mChars, offset, mChars, mGapEnd - count, count);
+        mGapStart -= count;
+        mGapEnd -= count;
+      } else if (offset > mGapStart) {
+        final int count = offset - mGapStart;
+        System.arraycopy(mChars, mGapEnd, mChars, mGapStart, count);
+        mGapStart += count;
+        mGapEnd += count;
+      }
+    }
+
+    String substring(int from, int to) {
+      final char[] chars = new char[to - from];
+      getChars(from, to, chars);
+      return new String(chars);
+    }
+
+    private void getChars(int from, int to, char[] dest) {
+      if (to <= mGapStart) {
+        System.arraycopy(mChars, from, dest, 0, to - from);
+      } else if (from >= mGapStart) {
+        System.arraycopy(mChars, from + (mGapEnd - mGapStart), dest, 0, to - from);
+      } else {
+        System.arraycopy(mChars, from, dest, 0, mGapStart - from);
+        System.arraycopy(mChars, mGapEnd, dest, mGapStart - from, to - mGapStart);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return substring(0, length());
+    }
+  }
+}
@@ -22,54 +22,434 @@
  */
 package org.riversun.phrasef;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import org.riversun.phrasef.HintRenderer.PendingHint;
 
 /**
  * テキストから独立したフレーズを検索するユーティリティ
  * 
+ * ヒントの設定を変更できるので、スレッドセーフではない。
+ * 複数のスレッドで共有する場合は{@link ImmutablePhraseFinder}を使う。
+ * 
  * @author Tom Misawa (riversun.org@gmail.com)
  *
  */
 public class PhraseFinder {
 
-  private static final String DEFAULT_HINT_PREFIX = "[";
-  private static final String DEFAULT_HINT_SUFFIX = "]";
+  static final String DEFAULT_HINT_PREFIX = "[";
+  static final String DEFAULT_HINT_SUFFIX = "]";
+
+  // どの文字も従属とみなすことを示す文字種別
+  static final int DEPENDENT_ON_ALL_CHARS = BoundaryPolicy.DEPENDENT_ON_ALL_CHARS;
 
   private String mHintPrefix = DEFAULT_HINT_PREFIX;
   private String mHintSuffix = DEFAULT_HINT_SUFFIX;
 
+  private HintMode mHintMode = HintMode.EAGER;
+
+  private HintOverlapPolicy mHintOverlapPolicy = HintOverlapPolicy.FIRST;
+
+  // １つのフレーズの候補を探す方法
+  private PhraseSearcher.Strategy mSearchStrategy = PhraseSearcher.AUTO;
+
+  // 文字の比較方法
+  private MatchMode mMatchMode = MatchMode.EXACT;
+
+  // フレーズの前後の文字が従属しているか否かを判定するルール
+  private BoundaryPolicy mBoundaryPolicy = BoundaryPolicy.DEFAULT;
+
+  // 検索処理の集計先（nullの場合は集計しない）
+  private PhraseFinderMetrics mMetrics = null;
+
   /**
    * テキストから独立したフレーズを検索する
    * （複数のフレーズを同時に解析する）
    * 
+   * すべてのフレーズを１つのオートマトンにまとめ、テキストを１回だけ走査する。
+   * そのため処理時間はフレーズ数によらず、テキストの長さに比例する。
+   * 
    * @param srcText
    * @param phrases
    * @return
    */
   public PhrasefResultSet findPhrases(String srcText, List<String> phrases) {
+    return findPhrases(srcText, PhraseSet.compile(phrases, mMatchMode, mBoundaryPolicy), phrases);
+  }
+
+  /**
+   * テキストから独立したフレーズを検索する
+   * （コンパイル済みのフレーズ群を使って、複数のフレーズを同時に解析する）
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefResultSet findPhrases(String srcText, PhraseSet phraseSet) {
+    return findPhrases(srcText, phraseSet, phraseSet.getPhrases());
+  }
+
+  private PhrasefResultSet findPhrases(String srcText, PhraseSet phraseSet, List<String> phrases) {
+    return toResultSet(srcText, findPhrasesCompact(srcText, phraseSet), phrases);
+  }
+
+  /**
+   * 大きなテキストを分割し、共通プールで並列に検索する
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefResultSet findPhrasesParallel(String srcText, PhraseSet phraseSet) {
+    return findPhrasesParallel(srcText, phraseSet, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * 大きなテキストを分割し、指定したForkJoinPoolで並列に検索する
+   * 
+   * 結果は{@link #findPhrases(String, PhraseSet)}と同じになる。
+   * テキストが短い場合は分割せずに検索する。
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @param pool
+   * @return
+   */
+  public PhrasefResultSet findPhrasesParallel(String srcText, PhraseSet phraseSet, ForkJoinPool pool) {
+    final CompactHitCollector collector = new CompactHitCollector(phraseSet.size());
+    ParallelPhraseScanner.scan(srcText, phraseSet, pool, ParallelPhraseScanner.DEFAULT_SEGMENT_SIZE, collector);
+    return toResultSet(srcText, collector.toCompactResult(phraseSet));
+  }
+
+  /**
+   * 大きなテキストを分割し、共通プールで並列に独立したフレーズを検索する
+   * 
+   * 結果は{@link #findPhrase(String, String)}と同じになる。
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public PhrasefResult findPhraseParallel(String srcText, String phrase) {
+    return findPhrasesParallel(srcText, PhraseSet.compile(Collections.singletonList(phrase), mMatchMode, mBoundaryPolicy)).phraseResultMap.get(phrase);
+  }
+
+  /**
+   * Readerから読み込んだテキストから独立したフレーズを検索する
+   * 
+   * テキスト全体を読み込まずに、一定の大きさのバッファで少しずつ検索する。
+   * ヒットしたフレーズはテキスト先頭からの位置でlistenerに通知される。Readerはcloseしない。
+   * 
+   * @param reader
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   * @throws IOException
+   */
+  public long findPhrases(Reader reader, PhraseSet phraseSet, PhraseHitListener listener) throws IOException {
+    return new PhraseStreamScanner(phraseSet, listener).scan(reader);
+  }
+
+  /**
+   * UTF-8のファイルから独立したフレーズを検索する
+   * 
+   * ファイルはメモリマップして、文字列にデコードせずにバイト列のまま検索する。
+   * ヒットしたフレーズはバイト単位と文字単位の位置でlistenerに通知される。
+   * 
+   * @param utf8File
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   * @throws IOException
+   */
+  public long findPhrasesInFile(Path utf8File, PhraseSet phraseSet, Utf8PhraseHitListener listener) throws IOException {
+    return new Utf8PhraseScanner(phraseSet, listener).scan(utf8File);
+  }
+
+  /**
+   * UTF-8のバイト列から独立したフレーズを検索する
+   * 
+   * バイト列を文字列にデコードせずに検索する。
+   * ヒットしたフレーズはバイト単位と文字単位の位置でlistenerに通知される。
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   */
+  public long findPhrases(byte[] utf8, PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    return findPhrases(utf8, 0, utf8.length, phraseSet, listener);
+  }
+
+  /**
+   * UTF-8のバイト列のうち[offset, offset+length)から独立したフレーズを検索する
+   * 
+   * 通知される位置はoffsetからの位置となる
+   * 
+   * @param utf8
+   * @param offset
+   * @param length
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   */
+  public long findPhrases(byte[] utf8, int offset, int length, PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    return new Utf8PhraseScanner(phraseSet, listener).feed(utf8, offset, length).finish();
+  }
+
+  /**
+   * UTF-8のバイト列を保持するByteBuffer（ヒープ、ダイレクトのどちらでもよい）から独立したフレーズを検索する
+   * 
+   * bufferのpositionからlimitまでを検索し、通知される位置はpositionからの位置となる。bufferのpositionは変更しない。
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @param listener
+   * @return ヒット数
+   */
+  public long findPhrases(ByteBuffer utf8, PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    return new Utf8PhraseScanner(phraseSet, listener).feed(utf8).finish();
+  }
+
+  /**
+   * UTF-8のバイト列から独立したフレーズを検索し、検出位置をプリミティブ配列で保持した結果を返す
+   * 
+   * 検出位置は文字単位（{@link #findPhrasesCompact(String, PhraseSet)}と同じ）とバイト単位の両方で得られる
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefUtf8CompactResult findPhrasesCompact(byte[] utf8, PhraseSet phraseSet) {
+    final CompactHitCollector collector = new CompactHitCollector(phraseSet.size());
+    findPhrases(utf8, phraseSet, collector);
+    return collector.toUtf8CompactResult(phraseSet);
+  }
+
+  /**
+   * UTF-8のバイト列を保持するByteBufferから独立したフレーズを検索し、検出位置をプリミティブ配列で保持した結果を返す
+   * 
+   * bufferのpositionからlimitまでを検索する。bufferのpositionは変更しない。
+   * 
+   * @param utf8
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefUtf8CompactResult findPhrasesCompact(ByteBuffer utf8, PhraseSet phraseSet) {
+    final CompactHitCollector collector = new CompactHitCollector(phraseSet.size());
+    findPhrases(utf8, phraseSet, collector);
+    return collector.toUtf8CompactResult(phraseSet);
+  }
+
+  /**
+   * テキストから独立したフレーズを検索し、検出位置をプリミティブ配列で保持した結果を返す
+   * 
+   * 検出位置ごとのオブジェクトやヒント用文字列を生成しないので、位置だけが必要な場合に使う
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhrasefCompactResult findPhrasesCompact(String srcText, PhraseSet phraseSet) {
+
+    final PhraseFinderMetrics metrics = mMetrics;
+    if (metrics == null) {
+      final CompactHitCollector collector = new CompactHitCollector(phraseSet.size());
+
+      // すべてのフレーズの出現位置を１回の走査で検出する
+      phraseSet.scan(srcText, collector);
+
+      return collector.toCompactResult(phraseSet);
+    }
+
+    final long startNanos = System.nanoTime();
+
+    final CompactHitCollector collector = new CompactHitCollector(phraseSet.size());
+    final int[] numOfCandidates = new int[phraseSet.size()];
+    phraseSet.scan(srcText, collector, numOfCandidates);
+    final PhrasefCompactResult result = collector.toCompactResult(phraseSet);
+
+    metrics.recordMultiPhraseScan(phraseSet, numOfCandidates, result, System.nanoTime() - startNanos);
+    return result;
+  }
+
+  /**
+   * 検出位置をプリミティブ配列に集める
+   */
+  private static final class CompactHitCollector implements PhraseSet.HitHandler, Utf8PhraseHitListener {
+
+    // 検出順の（フレーズID、開始位置、終了位置）
+    private int[] mPhraseIds = new int[16];
+    private int[] mStartIndexes = new int[16];
+    private int[] mEndIndexes = new int[16];
+    private int mNumOfHits = 0;
+
+    // 検出順の（バイト単位の開始位置、終了位置）（UTF-8のバイト列を検索した場合）
+    private int[] mByteStartIndexes = new int[0];
+    private int[] mByteEndIndexes = new int[0];
+
+    // フレーズIDごとのヒット数（インデックスはフレーズID+1）
+    private final int[] mOffsets;
+
+    CompactHitCollector(int numOfPhrases) {
+      mOffsets = new int[numOfPhrases + 1];
+    }
+
+    @Override
+    public void onHit(int phraseId, int startIndex, int endIndex) {
+      if (mNumOfHits == mPhraseIds.length) {
+        mPhraseIds = Arrays.copyOf(mPhraseIds, mNumOfHits * 2);
+        mStartIndexes = Arrays.copyOf(mStartIndexes, mNumOfHits * 2);
+        mEndIndexes = Arrays.copyOf(mEndIndexes, mNumOfHits * 2);
+      }
+      mPhraseIds[mNumOfHits] = phraseId;
+      mStartIndexes[mNumOfHits] = startIndex;
+      mEndIndexes[mNumOfHits] = endIndex;
+      mNumOfHits++;
+      mOffsets[phraseId + 1]++;
+    }
+
+    @Override
+    public void onPhraseHit(String phrase, int phraseId, long byteStartIndex, long byteEndIndex, long charStartIndex, long charEndIndex) {
+      if (mNumOfHits >= mByteStartIndexes.length) {
+        mByteStartIndexes = Arrays.copyOf(mByteStartIndexes, Math.max(16, mNumOfHits * 2));
+        mByteEndIndexes = Arrays.copyOf(mByteEndIndexes, mByteStartIndexes.length);
+      }
+      // byte[]とByteBufferの長さはintの範囲に収まる
+      mByteStartIndexes[mNumOfHits] = (int) byteStartIndex;
+      mByteEndIndexes[mNumOfHits] = (int) byteEndIndex;
+      onHit(phraseId, (int) charStartIndex, (int) charEndIndex);
+    }
+
+    PhrasefCompactResult toCompactResult(PhraseSet phraseSet) {
+      final int[] offsets = offsets();
+      final int[] dests = dests(offsets);
+      return new PhrasefCompactResult(phraseSet, offsets, reorder(mStartIndexes, dests), reorder(mEndIndexes, dests));
+    }
+
+    PhrasefUtf8CompactResult toUtf8CompactResult(PhraseSet phraseSet) {
+      final int[] offsets = offsets();
+      final int[] dests = dests(offsets);
+      return new PhrasefUtf8CompactResult(phraseSet, offsets, reorder(mStartIndexes, dests), reorder(mEndIndexes, dests),
+          reorder(mByteStartIndexes, dests), reorder(mByteEndIndexes, dests));
+    }
+
+    /**
+     * フレーズIDごとの検出位置の範囲を求める
+     * 
+     * @return
+     */
+    private int[] offsets() {
+      final int[] offsets = mOffsets.clone();
+      for (int phraseId = 0; phraseId < offsets.length - 1; phraseId++) {
+        offsets[phraseId + 1] += offsets[phraseId];
+      }
+      return offsets;
+    }
+
+    /**
+     * フレーズIDごとに連続するように並べ替えたときの、検出順の各ヒットの移動先を求める（同じフレーズの中では検出順＝出現順）
+     * 
+     * @param offsets
+     * @return
+     */
+    private int[] dests(int[] offsets) {
+      final int[] dests = new int[mNumOfHits];
+      final int[] cursors = Arrays.copyOf(offsets, offsets.length - 1);
+      for (int i = 0; i < mNumOfHits; i++) {
+        dests[i] = cursors[mPhraseIds[i]]++;
+      }
+      return dests;
+    }
+
+    private int[] reorder(int[] values, int[] dests) {
+      final int[] reordered = new int[mNumOfHits];
+      for (int i = 0; i < mNumOfHits; i++) {
+        reordered[dests[i]] = values[i];
+      }
+      return reordered;
+    }
+  }
+
+  /**
+   * プリミティブ配列で保持した検索結果を、通常の検索結果に変換する
+   * 
+   * @param srcText
+   *          検索対象となったテキスト（ヒントの生成に使う）
+   * @param compactResult
+   * @return
+   */
+  public PhrasefResultSet toResultSet(String srcText, PhrasefCompactResult compactResult) {
+    return toResultSet(srcText, compactResult, compactResult.getPhraseSet().getPhrases());
+  }
+
+  private PhrasefResultSet toResultSet(String srcText, PhrasefCompactResult compactResult, List<String> phrases) {
 
     final PhrasefResultSet resultSet = new PhrasefResultSet();
 
-    final List<PhrasefResult> prList = new ArrayList<PhrasefResult>();
-    String srcTextUpdated = srcText;
-    for (String phrase : phrases) {
+    final PhraseSet phraseSet = compactResult.getPhraseSet();
+    final int numOfPhrases = phraseSet.size();
 
-      PhrasefResult pr = findPhrase(srcText, phrase);
-      prList.add(pr);
+    final HintRenderer hintRenderer = newHintRenderer();
+
+    // ヒント用に、すべてのフレーズの検出位置を保持する
+    final List<PhrasePos> allPosList = new ArrayList<PhrasePos>(compactResult.getNumOfHits());
+    final List<HintRenderer.Label> allLabelList = new ArrayList<HintRenderer.Label>(compactResult.getNumOfHits());
+
+    final PhrasefResult[] resultOfPhrases = new PhrasefResult[numOfPhrases];
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      final String phrase = phraseSet.getPhrase(phraseId);
+      final int numOfHits = compactResult.getNumOfHits(phraseId);
+      final HintRenderer.Label label = new HintRenderer.Label(phrase, phraseSet.getAnalysisMode(phraseId));
+
+      final List<PhrasePos> posList = new ArrayList<PhrasePos>(numOfHits);
+      for (int n = 0; n < numOfHits; n++) {
+        final PhrasePos pos = new PhrasePos();
+        pos.startIndex = compactResult.getStartIndex(phraseId, n);
+        pos.endIndex = compactResult.getEndIndex(phraseId, n);
+        posList.add(pos);
+        allPosList.add(pos);
+        allLabelList.add(label);
+      }
+
+      final PhrasefResult pr = new PhrasefResult();
+      pr.phrase = phrase;
+      pr.analysisMode = phraseSet.getAnalysisMode(phraseId);
+      pr.posList = posList;
+      pr.isHit = numOfHits > 0;
+      pr.numOfHits = numOfHits;
+      setHint(pr, hintRenderer, srcText);
+      resultOfPhrases[phraseId] = pr;
+    }
+
+    for (String phrase : phrases) {
+      final PhrasefResult pr = resultOfPhrases[phraseSet.getPhraseId(phrase)];
       resultSet.numOfHits += pr.numOfHits;
       resultSet.isHit |= pr.isHit;
       resultSet.phraseResultMap.put(phrase, pr);
-
-      // hintを構成するために、再度findPhraseを実施する（効率はよくない）
-      final PhrasefResult resultForHint = findPhrase(srcTextUpdated, phrase);
-      srcTextUpdated = resultForHint.hint;
-
     }
 
-    resultSet.hint = srcTextUpdated;
+    switch (mHintMode) {
+    case EAGER:
+      resultSet.hint = hintRenderer.renderCombined(srcText, allPosList, allLabelList);
+      break;
+    case LAZY:
+      resultSet.pendingHint = hintRenderer.pendingCombined(srcText, allPosList, allLabelList);
+      break;
+    default:
+      break;
+    }
 
     return resultSet;
   }
@@ -83,108 +463,370 @@ public class PhraseFinder {
    */
   public PhrasefResult findPhrase(String srcText, String phrase) {
 
+    final PhraseFinderMetrics metrics = mMetrics;
+    final long startNanos = metrics != null ? System.nanoTime() : 0;
+
     final PhrasefResult result = new PhrasefResult();
     result.phrase = phrase;
     result.posList = new ArrayList<PhrasePos>();
 
     // 分析モード判定
     // たとえば phraseが”半角英字”だった場合、分析モードは HANKAKU_ALPHABETとなる。
-    final PhraseAnalysisMode analysisMode = detectAnalysisMode(phrase);
+    // （全角・半角、大文字・小文字の違いを無視する場合は、変換したフレーズで判定する）
+    final boolean folding = mMatchMode == MatchMode.FOLD_WIDTH_AND_CASE;
+    final PhraseAnalysisMode analysisMode = detectAnalysisMode(folding ? CharFolding.fold(phrase) : phrase);
     result.analysisMode = analysisMode;
 
-    // もとの文字列のどこに対象キーワードがあるのか、その解析処理結果がわかるヒント用文字列
-    final StringBuilder sbHint = new StringBuilder();
+    // 分析モードに対して従属とみなす文字種別
+    final int dependentCharClass = mBoundaryPolicy.getDependentCharClass(phrase, analysisMode);
+
+    final PhraseSearcher searcher = folding ? PhraseSearcher.folding(phrase) : mSearchStrategy.compile(phrase);
 
     boolean loop = true;
 
     int pointer = 0;
 
+    // 前後の文字による判定の前の候補の数
+    int numOfCandidates = 0;
+
     while (loop) {
 
-      int startIndex = srcText.indexOf(phrase, pointer);
+      int startIndex = searcher.indexOf(srcText, pointer);
 
       if (startIndex < 0) {
         loop = false;
-        sbHint.append(srcText.substring(pointer, srcText.length()));
-
         break;
       }
 
-      sbHint.append(srcText.substring(pointer, startIndex));
-
       final int endIndex = startIndex + phrase.length();
+      numOfCandidates++;
 
-      // 対象キーワードの前にある１文字
-      String previousOneChar = null;
+      if (folding ? isIndependentAtFolded(srcText, startIndex, endIndex, dependentCharClass) : isIndependentAt(srcText, startIndex, endIndex, dependentCharClass)) {
+        // - 検出した対象キーワード位置から判断して、そのキーワードが独立していた場合
 
-      // 対象キーワードの後にある１文字
-      String nextOneChar = null;
+        final PhrasePos pos = new PhrasePos();
+        pos.startIndex = startIndex;
+        pos.endIndex = endIndex;
 
-      if (startIndex - 1 > 0) {
-        // - 対象キーワードが先頭よりも後にあった場合
-        previousOneChar = srcText.substring(startIndex - 1, startIndex);
-      } else {
-        // - 対象キーワードが先頭にあった場合
-        // previousOneCharはnullとなる
+        result.posList.add(pos);
       }
-      if (endIndex < srcText.length()) {
-        // - 対象キーワードが末尾より前にあった場合
-        nextOneChar = srcText.substring(endIndex, endIndex + 1);
-      } else {
-        // - 対象キーワードが末尾にあった場合
-        // nextOneCharはnullとなる
+      pointer = endIndex;
+
+    }
+
+    result.isHit = result.posList.size() > 0;
+    result.numOfHits = result.posList.size();
+
+    // もとの文字列のどこに対象キーワードがあるのか、その解析処理結果がわかるヒント用文字列
+    setHint(result, newHintRenderer(), srcText);
+
+    if (metrics != null) {
+      metrics.recordPhraseSearch(analysisMode, numOfCandidates, result.numOfHits, System.nanoTime() - startNanos);
+    }
+
+    return result;
+  }
+
+  /**
+   * テキストに、独立したフレーズが含まれるか否かを判定する
+   * 
+   * 検出位置やヒントは作らず、最初に見つかった時点で検索を打ち切る
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public boolean containsPhrase(String srcText, String phrase) {
+    return countPhrase(srcText, phrase, 1) > 0;
+  }
+
+  /**
+   * テキストに含まれる、独立したフレーズの数を返す
+   * 
+   * 結果は{@link #findPhrase(String, String)}のnumOfHitsと同じになる。検出位置やヒントは作らない。
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public int countPhrase(String srcText, String phrase) {
+    return countPhrase(srcText, phrase, Integer.MAX_VALUE);
+  }
+
+  private int countPhrase(String srcText, String phrase, int limit) {
+
+    if (phrase.length() == 0) {
+      return 0;
+    }
+
+    final boolean folding = mMatchMode == MatchMode.FOLD_WIDTH_AND_CASE;
+
+    final int dependentCharClass = mBoundaryPolicy.getDependentCharClass(phrase, detectAnalysisMode(folding ? CharFolding.fold(phrase) : phrase));
+
+    final PhraseSearcher searcher = folding ? PhraseSearcher.folding(phrase) : mSearchStrategy.compile(phrase);
+
+    int numOfHits = 0;
+    int startIndex = searcher.indexOf(srcText, 0);
+    while (startIndex >= 0) {
+      final int endIndex = startIndex + phrase.length();
+      if (folding ? isIndependentAtFolded(srcText, startIndex, endIndex, dependentCharClass) : isIndependentAt(srcText, startIndex, endIndex, dependentCharClass)) {
+        numOfHits++;
+        if (numOfHits >= limit) {
+          break;
+        }
       }
+      startIndex = searcher.indexOf(srcText, endIndex);
+    }
+    return numOfHits;
+  }
 
-      // 対象キーワードの前にある１文字が、その対象キーワードに対して独立しているか否か
-      final boolean isPreviousCharIndependent = isIndependent(previousOneChar, analysisMode);
+  /**
+   * テキストに、いずれかのフレーズが独立して含まれるか否かを判定する
+   * 
+   * @param srcText
+   * @param phrases
+   * @return
+   */
+  public boolean containsAnyPhrase(String srcText, List<String> phrases) {
+    return containsAnyPhrase(srcText, PhraseSet.compile(phrases, mMatchMode, mBoundaryPolicy));
+  }
 
-      // 対象キーワードの次にある１文字が、その対象キーワードに対して独立しているか否か
-      final boolean isNextCharIndependent = isIndependent(nextOneChar, analysisMode);
+  /**
+   * テキストに、いずれかのフレーズが独立して含まれるか否かを判定する
+   * （コンパイル済みのフレーズ群を使う）
+   * 
+   * 検出位置やヒントは作らず、最初に見つかった時点で走査を打ち切る
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public boolean containsAnyPhrase(String srcText, PhraseSet phraseSet) {
+    return phraseSet.count(srcText, 1) > 0;
+  }
 
-      // 対象キーワードの前後にある１文字が、その対象キーワードに対して独立しているか否か
-      final boolean isPrevNextCharIndependent = isPreviousCharIndependent && isNextCharIndependent;
+  /**
+   * テキストに含まれる、独立したフレーズの数をすべてのフレーズについて合計して返す
+   * 
+   * 結果は{@link #findPhrases(String, PhraseSet)}のnumOfHitsと同じになる。検出位置やヒントは作らない。
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public int countPhrases(String srcText, PhraseSet phraseSet) {
+    return phraseSet.count(srcText, Integer.MAX_VALUE);
+  }
 
-      if (isPrevNextCharIndependent) {
-        // - 検出した対象キーワード位置から判断して、そのキーワードが独立していた場合
+  /**
+   * 編集されていくテキストについて、検索結果を保持し続けるセッションを開始する
+   * 
+   * 編集のたびにテキスト全体を検索し直すかわりに、{@link PhraseEditSession#applyEdit(int, int, String)}で編集を与えると、
+   * 編集された位置の前後だけを走査し直す。
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhraseEditSession openEditSession(String srcText, PhraseSet phraseSet) {
+    return new PhraseEditSession(PhraseFinder.this, phraseSet, srcText);
+  }
 
-        final PhrasePos pos = new PhrasePos();
-        pos.startIndex = startIndex;
-        pos.endIndex = endIndex;
+  /**
+   * 編集されていくテキストについて、１つのフレーズの検索結果を保持し続けるセッションを開始する
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public PhraseEditSession openEditSession(String srcText, String phrase) {
+    return openEditSession(srcText, PhraseSet.compile(Collections.singletonList(phrase), mMatchMode, mBoundaryPolicy));
+  }
 
-        result.posList.add(pos);
+  /**
+   * テキストから見つかった独立したフレーズを、見つかるたびに通知するPublisherを返す
+   * 
+   * 購読者が要求した数だけテキストを走査する。ヒントは作らない。
+   * 
+   * @param srcText
+   * @param phrase
+   * @return
+   */
+  public PhraseHitPublisher publishPhrase(String srcText, String phrase) {
+    return new PhraseHitPublisher(srcText, PhraseSet.compile(Collections.singletonList(phrase), mMatchMode, mBoundaryPolicy));
+  }
+
+  /**
+   * テキストから見つかった独立したフレーズを、見つかるたびに通知するPublisherを返す
+   * （コンパイル済みのフレーズ群を使う）
+   * 
+   * 購読者が要求した数だけテキストを走査する。ヒントは作らない。
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @return
+   */
+  public PhraseHitPublisher publishPhrases(String srcText, PhraseSet phraseSet) {
+    return new PhraseHitPublisher(srcText, phraseSet);
+  }
+
+  /**
+   * テキストから見つかった独立したフレーズを、見つかるたびに指定したExecutorで通知するPublisherを返す
+   * 
+   * @param srcText
+   * @param phraseSet
+   * @param executor
+   * @return
+   */
+  public PhraseHitPublisher publishPhrases(String srcText, PhraseSet phraseSet, Executor executor) {
+    return new PhraseHitPublisher(srcText, phraseSet, executor);
+  }
+
+  /**
+   * テキスト中の[startIndex,endIndex)にあるフレーズが、前後の文字に対して独立しているか否かを判定する
+   * 
+   * @param srcText
+   * @param startIndex
+   * @param endIndex
+   * @param dependentCharClass
+   * @return
+   */
+  static boolean isIndependentAt(String srcText, int startIndex, int endIndex, int dependentCharClass) {
+
+    // 対象キーワードの前にある１文字が、その対象キーワードに対して独立しているか否か
+    // （対象キーワードが先頭にあった場合は独立とみなす）
+    boolean isPreviousCharIndependent = true;
+
+    // 対象キーワードの次にある１文字が、その対象キーワードに対して独立しているか否か
+    // （対象キーワードが末尾にあった場合は独立とみなす）
+    boolean isNextCharIndependent = true;
 
-        // 独立したフレーズとして認識された部分をカッコで囲みデコレーションする
-        if (mHintListener == null) {
-          sbHint.append(mHintPrefix + phrase + mHintSuffix);
-        } else {
-          final HintContent hc = new HintContent();
-          hc.hintPrefix = mHintPrefix;
-          hc.hintSuffix = mHintSuffix;
-          hc.phrase = phrase;
+    if (startIndex - 1 > 0) {
+      // - 対象キーワードが先頭よりも後にあった場合
+      isPreviousCharIndependent = isIndependent(srcText.charAt(startIndex - 1), dependentCharClass);
+    }
+    if (endIndex < srcText.length()) {
+      // - 対象キーワードが末尾より前にあった場合
+      isNextCharIndependent = isIndependent(srcText.charAt(endIndex), dependentCharClass);
+    }
+
+    // 対象キーワードの前後にある１文字が、その対象キーワードに対して独立しているか否か
+    return isPreviousCharIndependent && isNextCharIndependent;
+  }
+
+  /**
+   * テキスト中の[startIndex,endIndex)にあるフレーズが、前後の文字に対して独立しているか否かを、
+   * 前後の文字を全角・半角、大文字・小文字の違いを無視する変換をした文字種別で判定する
+   * 
+   * @param srcText
+   * @param startIndex
+   * @param endIndex
+   * @param dependentCharClass
+   * @return
+   */
+  static boolean isIndependentAtFolded(String srcText, int startIndex, int endIndex, int dependentCharClass) {
+    if (startIndex - 1 > 0 && !isIndependent(CharFolding.fold(srcText.charAt(startIndex - 1)), dependentCharClass)) {
+      return false;
+    }
+    if (endIndex < srcText.length() && !isIndependent(CharFolding.fold(srcText.charAt(endIndex)), dependentCharClass)) {
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * 現在のカッコ文字列とHintListenerでヒントを組み立てるものを返す
+   * 
+   * @return
+   */
+  private HintRenderer newHintRenderer() {
+    return new HintRenderer(mHintPrefix, mHintSuffix, mHintListener, mHintContextListener, mHintOverlapPolicy, mMetrics);
+  }
+
+  /**
+   * ヒントのモードに応じて、１つのフレーズの分析結果にヒントを設定する
+   * 
+   * @param result
+   * @param hintRenderer
+   * @param srcText
+   */
+  private void setHint(PhrasefResult result, HintRenderer hintRenderer, String srcText) {
+    switch (mHintMode) {
+    case EAGER:
+      result.hint = hintRenderer.render(srcText, result.posList, Collections.nCopies(result.posList.size(), labelOf(result)));
+      break;
+    case LAZY:
+      result.pendingHint = hintRenderer.pending(srcText, result.posList, labelOf(result));
+      break;
+    default:
+      break;
+    }
+  }
 
-          final HintContent nhc = mHintListener.onPhraseFound(hc);
-          sbHint.append(nhc.hintPrefix + nhc.phrase + nhc.hintSuffix);
-          sbHint.append(nhc.additionalInfo != null ? nhc.additionalInfo : "");
+  private HintListener mHintListener = null;
 
-        }
-      } else {
-        sbHint.append(phrase);
-      }
-      pointer = endIndex;
+  private HintContextListener mHintContextListener = null;
 
-    }
+  public void setHintListener(HintListener listener) {
+    mHintListener = listener;
+  }
 
-    result.isHit = result.posList.size() > 0;
-    result.numOfHits = result.posList.size();
-    result.hint = sbHint.toString();
+  /**
+   * ヒントの書式を指定するHintContextListenerを指定する
+   * 
+   * HintListenerと違い、ヒットごとにHintContentを生成せず、１つのHintContextを使い回して渡す。
+   * HintListenerと両方を指定した場合は、HintContextListenerが使われる。
+   * 
+   * @param listener
+   * @return
+   */
+  public PhraseFinder setHintContextListener(HintContextListener listener) {
+    mHintContextListener = listener;
+    return PhraseFinder.this;
+  }
 
-    return result;
+  /**
+   * 分析結果のヒントを、文字列を組み立てずにoutに書き込む
+   * 
+   * 大きなテキストのヒントをファイルなどに出力する場合は、HintMode.NONEで検索してからこのメソッドを使う
+   * 
+   * @param srcText
+   *          検索対象となったテキスト
+   * @param result
+   * @param out
+   * @throws IOException
+   */
+  public void writeHint(String srcText, PhrasefResult result, Appendable out) throws IOException {
+    newHintRenderer().write(out, srcText, result.posList, Collections.nCopies(result.posList.size(), labelOf(result)));
   }
 
-  private HintListener mHintListener = null;
+  /**
+   * 複数のフレーズをまとめた分析結果のヒントを、文字列を組み立てずにoutに書き込む
+   * 
+   * @param srcText
+   *          検索対象となったテキスト
+   * @param resultSet
+   * @param out
+   * @throws IOException
+   */
+  public void writeHint(String srcText, PhrasefResultSet resultSet, Appendable out) throws IOException {
+    final List<PhrasePos> allPosList = new ArrayList<PhrasePos>(resultSet.numOfHits);
+    final List<HintRenderer.Label> allLabelList = new ArrayList<HintRenderer.Label>(resultSet.numOfHits);
+    for (PhrasefResult result : resultSet.phraseResultMap.values()) {
+      allPosList.addAll(result.posList);
+      allLabelList.addAll(Collections.nCopies(result.posList.size(), labelOf(result)));
+    }
+    newHintRenderer().writeCombined(out, srcText, allPosList, allLabelList);
+  }
 
-  public void setHintListener(HintListener listener) {
-    mHintListener = listener;
+  /**
+   * ヒントを組み立てるときの、分析結果のフレーズと分析モード
+   * 
+   * @param result
+   * @return
+   */
+  private static HintRenderer.Label labelOf(PhrasefResult result) {
+    return new HintRenderer.Label(result.phrase, result.analysisMode != null ? result.analysisMode : detectAnalysisMode(result.phrase));
   }
 
   public static class HintContent {
@@ -203,6 +845,75 @@ public class PhraseFinder {
     public HintContent onPhraseFound(HintContent hint);
   }
 
+  /**
+   * HintContextListenerに渡される、使い回しのHintContent
+   * 
+   * ヒットごとに内容が書き換えられるので、onPhraseFoundの外で参照を保持しないこと
+   */
+  public static class HintContext extends HintContent {
+
+    /**
+     * テキスト中のフレーズの開始位置
+     */
+    public int startIndex;
+
+    /**
+     * テキスト中のフレーズの終了位置
+     */
+    public int endIndex;
+
+    @Override
+    public String toString() {
+      return "HintContext [hintPrefix=" + hintPrefix + ", hintSuffix=" + hintSuffix + ", phrase=" + phrase + ", additionalInfo=" + additionalInfo + ", startIndex="
+          + startIndex + ", endIndex=" + endIndex + "]";
+    }
+  }
+
+  /**
+   * ヒントを組み立てるときに、独立したフレーズごとに呼ばれる
+   * 
+   * contextの内容を書き換えると、ヒントに反映される
+   */
+  public static interface HintContextListener {
+    public void onPhraseFound(HintContext context);
+  }
+
+  /**
+   * ストリームの検索で、独立したフレーズが見つかるたびに呼ばれる
+   */
+  public static interface PhraseHitListener {
+    /**
+     * @param phrase
+     * @param phraseId
+     *          PhraseSetでのフレーズID
+     * @param startIndex
+     *          テキスト先頭からの開始位置
+     * @param endIndex
+     *          テキスト先頭からの終了位置
+     */
+    public void onPhraseHit(String phrase, int phraseId, long startIndex, long endIndex);
+  }
+
+  /**
+   * UTF-8のバイト列の検索で、独立したフレーズが見つかるたびに呼ばれる
+   */
+  public static interface Utf8PhraseHitListener {
+    /**
+     * @param phrase
+     * @param phraseId
+     *          PhraseSetでのフレーズID
+     * @param byteStartIndex
+     *          先頭からの開始位置（バイト単位）
+     * @param byteEndIndex
+     *          先頭からの終了位置（バイト単位）
+     * @param charStartIndex
+     *          先頭からの開始位置（UTF-16のchar単位）
+     * @param charEndIndex
+     *          先頭からの終了位置（UTF-16のchar単位）
+     */
+    public void onPhraseHit(String phrase, int phraseId, long byteStartIndex, long byteEndIndex, long charStartIndex, long charEndIndex);
+  }
+
   /**
    * 指定したphraseがどのような要素群で構成されているか判定する
    * 
@@ -211,88 +922,84 @@ public class PhraseFinder {
    * @param phrase
    * @return
    */
-  private PhraseAnalysisMode detectAnalysisMode(String phrase) {
-    if (PhraseTypeDetector.isHankakuNumericOnly(phrase)) {
+  static PhraseAnalysisMode detectAnalysisMode(String phrase) {
+
+    // フレーズのすべての文字に共通する文字種別
+    final int charClass = PhraseTypeDetector.getCommonCharClass(phrase);
+
+    if ((charClass & PhraseTypeDetector.CHAR_CLASS_HANKAKU_NUMERIC) != 0) {
       return PhraseAnalysisMode.HANKAKU_NUMERIC_ONLY;
-    } else if (PhraseTypeDetector.isHankakuAlphabetOnly(phrase)) {
+    } else if ((charClass & PhraseTypeDetector.CHAR_CLASS_HANKAKU_ALPHABET) != 0) {
       return PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY;
-    } else if (PhraseTypeDetector.isHankakuAlphaNumericOnly(phrase)) {
+    } else if ((charClass & PhraseTypeDetector.CHAR_CLASS_HANKAKU_ALPHA_NUMERIC) != 0) {
       return PhraseAnalysisMode.HANKAKU_ALPHA_NUMERIC;
-    } else if (PhraseTypeDetector.isZenkakuHiraganaOnly(phrase)) {
+    } else if ((charClass & PhraseTypeDetector.CHAR_CLASS_ZENKAKU_HIRAGANA) != 0) {
       return PhraseAnalysisMode.ZENKAKU_HIRAGANA;
-    } else if (PhraseTypeDetector.isZenkakuKatakanaOnly(phrase)) {
+    } else if ((charClass & PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KATAKANA) != 0) {
       return PhraseAnalysisMode.ZENKAKU_KATAKANA;
-    } else if (PhraseTypeDetector.isZenkakuNumericOnly(phrase)) {
+    } else if ((charClass & PhraseTypeDetector.CHAR_CLASS_ZENKAKU_NUMERIC) != 0) {
       return PhraseAnalysisMode.ZENKAKU_NUMERIC_ONLY;
-    } else if (PhraseTypeDetector.isZenkakuKanjiOnly(phrase)) {
+    } else if ((charClass & PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI) != 0) {
       return PhraseAnalysisMode.ZENKAKU_KANJI;
     }
     return PhraseAnalysisMode.UNKNOWN;
   }
 
   /**
-   * 指定した文字列が、指定した分析モードに対して”独立”か否かを判定する
+   * 分析モードに対して、前後にあると”従属”とみなす文字種別を返す
+   * 
+   * 戻り値はPhraseTypeDetector.CHAR_CLASS_*の組み合わせ。
+   * どの文字も従属とみなす場合（UNKNOWN）は{@link #DEPENDENT_ON_ALL_CHARS}を返す
    * 
-   * @param phrase
    * @param analysisMode
    * @return
    */
-  private boolean isIndependent(String phrase, PhraseAnalysisMode analysisMode) {
-
-    if (phrase == null) {
-      return true;
-    }
+  static int dependentCharClassOf(PhraseAnalysisMode analysisMode) {
 
     switch (analysisMode) {
     case HANKAKU_ALPHABET_ONLY:
-      if (PhraseTypeDetector.isHankakuAlphabetOnly(phrase)) {
-        return false;
-      } else {
-        return true;
-      }
+      return PhraseTypeDetector.CHAR_CLASS_HANKAKU_ALPHABET;
     case HANKAKU_NUMERIC_ONLY:
-      if (PhraseTypeDetector.isHankakuNumericOnly(phrase) || PhraseTypeDetector.isHankakuAlphabetOnly(phrase)) {
-        return false;
-      } else {
-        return true;
-      }
+      return PhraseTypeDetector.CHAR_CLASS_HANKAKU_NUMERIC | PhraseTypeDetector.CHAR_CLASS_HANKAKU_ALPHABET;
     case HANKAKU_ALPHA_NUMERIC:
-      if (PhraseTypeDetector.isHankakuAlphaNumericOnly(phrase)) {
-        // - 対象モードが半角英数検出モードで、指定した文字列が半角英数なら、従属なのでfalse
-        return false;
-      } else {
-        return true;
-      }
+      // - 対象モードが半角英数検出モードで、指定した文字が半角英数なら従属
+      return PhraseTypeDetector.CHAR_CLASS_HANKAKU_ALPHA_NUMERIC;
     case ZENKAKU_KATAKANA:
-      if (PhraseTypeDetector.isZenkakuKatakanaOnly(phrase)) {
-        // - 対象モードが全角カタカナ検出モードで、指定した文字列が全角カタカナなら、従属なのでfalse
-        return false;
-      } else {
-        return true;
-      }
+      // - 対象モードが全角カタカナ検出モードで、指定した文字が全角カタカナなら従属
+      return PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KATAKANA;
     case ZENKAKU_HIRAGANA:
-      if (PhraseTypeDetector.isZenkakuHiraganaOnly(phrase)) {
-        return false;
-      } else {
-        return true;
-      }
+      return PhraseTypeDetector.CHAR_CLASS_ZENKAKU_HIRAGANA;
     case ZENKAKU_NUMERIC_ONLY:
-      if (PhraseTypeDetector.isZenkakuNumericOnly(phrase)) {
-        return false;
-      } else {
-        return true;
-      }
+      return PhraseTypeDetector.CHAR_CLASS_ZENKAKU_NUMERIC;
     case ZENKAKU_KANJI:
-      if (PhraseTypeDetector.isZenkakuKanjiOnly(phrase)) {
-        return false;
-      } else {
-        return true;
-      }
+      return PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI;
     default:
-      return false;
+      return DEPENDENT_ON_ALL_CHARS;
     }
   }
 
+  /**
+   * 指定した文字が、指定した文字種別に対して”独立”か否かを判定する
+   * 
+   * @param c
+   * @param dependentCharClass
+   * @return
+   */
+  static boolean isIndependent(char c, int dependentCharClass) {
+    return dependentCharClass != DEPENDENT_ON_ALL_CHARS && (PhraseTypeDetector.getCharClass(c) & dependentCharClass) == 0;
+  }
+
+  /**
+   * 指定したコードポイントが、指定した文字種別に対して”独立”か否かを判定する
+   * 
+   * @param codePoint
+   * @param dependentCharClass
+   * @return
+   */
+  static boolean isIndependentCodePoint(int codePoint, int dependentCharClass) {
+    return dependentCharClass != DEPENDENT_ON_ALL_CHARS && (PhraseTypeDetector.getCodePointClass(codePoint) & dependentCharClass) == 0;
+  }
+
   /**
    * 処理結果のhintに表示されるカッコ文字列を指定する
    * 
@@ -321,6 +1028,134 @@ public class PhraseFinder {
     return PhraseFinder.this;
   }
 
+  /**
+   * 分析結果のhintを組み立てるタイミングを指定する
+   * 
+   * @param hintMode
+   * @return
+   */
+  public PhraseFinder setHintMode(HintMode hintMode) {
+    if (hintMode == null) {
+      throw new NullPointerException("hintMode must not be null");
+    }
+    mHintMode = hintMode;
+    return PhraseFinder.this;
+  }
+
+  /**
+   * findPhraseなど、１つのフレーズを検索するときの候補の探し方を指定する
+   * 
+   * デフォルトは{@link PhraseSearcher#AUTO}。どの探し方でも検索結果は変わらない。
+   * 
+   * @param searchStrategy
+   * @return
+   */
+  public PhraseFinder setSearchStrategy(PhraseSearcher.Strategy searchStrategy) {
+    if (searchStrategy == null) {
+      throw new NullPointerException("searchStrategy must not be null");
+    }
+    mSearchStrategy = searchStrategy;
+    return PhraseFinder.this;
+  }
+
+  /**
+   * 文字の比較方法を指定する
+   * 
+   * MatchMode.FOLD_WIDTH_AND_CASEの場合は、findPhraseやフレーズのリストを渡す検索で、
+   * 全角・半角、大文字・小文字の違いを無視する（検出位置は元のテキストでの位置となる）。<br>
+   * コンパイル済みのPhraseSetを渡す検索では、PhraseSetをコンパイルしたときの比較方法が使われる。
+   * 
+   * @param matchMode
+   * @return
+   */
+  public PhraseFinder setMatchMode(MatchMode matchMode) {
+    if (matchMode == null) {
+      throw new NullPointerException("matchMode must not be null");
+    }
+    mMatchMode = matchMode;
+    return PhraseFinder.this;
+  }
+
+  /**
+   * フレーズの前後の文字が従属しているか否かを判定するルールを指定する
+   * 
+   * findPhraseやフレーズのリストを渡す検索で使われる。コンパイル済みのPhraseSetを渡す検索では、
+   * PhraseSetをコンパイルしたときのルールが使われる。
+   * 
+   * @param boundaryPolicy
+   * @return
+   */
+  public PhraseFinder setBoundaryPolicy(BoundaryPolicy boundaryPolicy) {
+    if (boundaryPolicy == null) {
+      throw new NullPointerException("boundaryPolicy must not be null");
+    }
+    mBoundaryPolicy = boundaryPolicy;
+    return PhraseFinder.this;
+  }
+
+  /**
+   * 検索処理の件数と処理時間の集計先を指定する
+   * 
+   * nullを指定すると集計しない（デフォルト）。
+   * 集計しない場合は、検索処理にほとんど影響を与えない。
+   * 
+   * @param metrics
+   * @return
+   */
+  public PhraseFinder setMetrics(PhraseFinderMetrics metrics) {
+    mMetrics = metrics;
+    return PhraseFinder.this;
+  }
+
+  /**
+   * 検索処理の集計先を返す（集計しない場合はnull）
+   * 
+   * @return
+   */
+  public PhraseFinderMetrics getMetrics() {
+    return mMetrics;
+  }
+
+  /**
+   * 複数のフレーズをまとめたhintで、検出位置が重なる場合にどれをカッコで囲むかを指定する
+   * 
+   * @param hintOverlapPolicy
+   * @return
+   */
+  public PhraseFinder setHintOverlapPolicy(HintOverlapPolicy hintOverlapPolicy) {
+    if (hintOverlapPolicy == null) {
+      throw new NullPointerException("hintOverlapPolicy must not be null");
+    }
+    mHintOverlapPolicy = hintOverlapPolicy;
+    return PhraseFinder.this;
+  }
+
+  /**
+   * 分析結果のhintを組み立てるタイミング
+   */
+  public enum HintMode {
+    EAGER, // 検索時にhintを組み立てる（デフォルト）
+    LAZY, // getHint()が呼ばれたときに、検出位置からhintを組み立てる
+    NONE // hintを組み立てない
+  };
+
+  /**
+   * 複数のフレーズをまとめたhintで、検出位置が重なる場合にどれをカッコで囲むか
+   */
+  public enum HintOverlapPolicy {
+    FIRST, // 先に始まるものを囲む。同じ位置から始まる場合は長いものを囲む（デフォルト）
+    LONGEST, // 長いものを囲む。同じ長さの場合は先に始まるものを囲む
+    ALL // 重なるものもすべて囲む（入れ子になる）。入れ子にならずに交差するものは、FIRSTと同じく先に始まるものを囲む
+  };
+
+  /**
+   * 文字の比較方法
+   */
+  public enum MatchMode {
+    EXACT, // 文字をそのまま比較する（デフォルト）
+    FOLD_WIDTH_AND_CASE // 全角・半角、大文字・小文字の違いを無視して比較する（"ＤＥＮＴ"、"dent"、"DENT"を同じとみなす）
+  };
+
   /**
    * 分析モード
    */
@@ -338,9 +1173,34 @@ public class PhraseFinder {
   public static class PhrasefResultSet {
     public boolean isHit;
     public int numOfHits;
-    public String hint;
+    public volatile String hint;
     public final Map<String, PhrasefResult> phraseResultMap = new LinkedHashMap<String, PhrasefResult>();
 
+    // まだ組み立てていないhint（HintMode.LAZYの場合。検索結果を返した後はthisのロックを取って参照する）
+    PendingHint pendingHint;
+
+    /**
+     * 分析結果のヒントを返す
+     * 
+     * HintMode.LAZYで検索した場合は、はじめて呼ばれたときにヒントを組み立てる。<br>
+     * 同じ結果を複数のスレッドから呼んでも、ヒントは一度だけ組み立てられる。
+     * 
+     * @return
+     */
+    public String getHint() {
+      final String renderedHint = hint;
+      if (renderedHint != null) {
+        return renderedHint;
+      }
+      synchronized (this) {
+        if (hint == null && pendingHint != null) {
+          hint = pendingHint.render();
+          pendingHint = null;
+        }
+        return hint;
+      }
+    }
+
     @Override
     public String toString() {
       return "PhrasefResultSet [isHit=" + isHit + ", numOfHits=" + numOfHits + ", hint=" + hint + ", phraseResultMap=" + phraseResultMap + "]";
@@ -348,6 +1208,188 @@ public class PhraseFinder {
 
   }
 
+  /**
+   * 検出位置をプリミティブ配列で保持した分析結果
+   * 
+   * 検出位置はフレーズIDごとに出現順に並ぶ
+   */
+  public static class PhrasefCompactResult {
+
+    private final PhraseSet mPhraseSet;
+
+    // フレーズIDごとの検出位置の範囲（[mOffsets[phraseId], mOffsets[phraseId + 1])）
+    final int[] mOffsets;
+
+    private final int[] mStartIndexes;
+    private final int[] mEndIndexes;
+
+    PhrasefCompactResult(PhraseSet phraseSet, int[] offsets, int[] startIndexes, int[] endIndexes) {
+      mPhraseSet = phraseSet;
+      mOffsets = offsets;
+      mStartIndexes = startIndexes;
+      mEndIndexes = endIndexes;
+    }
+
+    /**
+     * 検索に使ったフレーズ群を返す
+     * 
+     * @return
+     */
+    public PhraseSet getPhraseSet() {
+      return mPhraseSet;
+    }
+
+    /**
+     * 検索の結果、いずれかのフレーズが見つかったか否か
+     * 
+     * @return
+     */
+    public boolean isHit() {
+      return mStartIndexes.length > 0;
+    }
+
+    /**
+     * すべてのフレーズのヒット数の合計を返す
+     * 
+     * @return
+     */
+    public int getNumOfHits() {
+      return mStartIndexes.length;
+    }
+
+    /**
+     * 指定したフレーズのヒット数を返す
+     * 
+     * @param phraseId
+     * @return
+     */
+    public int getNumOfHits(int phraseId) {
+      return mOffsets[phraseId + 1] - mOffsets[phraseId];
+    }
+
+    /**
+     * 指定したフレーズのn番目の検出位置の開始位置を返す
+     * 
+     * @param phraseId
+     * @param n
+     * @return
+     */
+    public int getStartIndex(int phraseId, int n) {
+      return mStartIndexes[indexOf(phraseId, n)];
+    }
+
+    /**
+     * 指定したフレーズのn番目の検出位置の終了位置を返す
+     * 
+     * @param phraseId
+     * @param n
+     * @return
+     */
+    public int getEndIndex(int phraseId, int n) {
+      return mEndIndexes[indexOf(phraseId, n)];
+    }
+
+    /**
+     * 指定したフレーズの開始位置を配列にコピーして返す
+     * 
+     * @param phraseId
+     * @return
+     */
+    public int[] getStartIndexes(int phraseId) {
+      return Arrays.copyOfRange(mStartIndexes, mOffsets[phraseId], mOffsets[phraseId + 1]);
+    }
+
+    /**
+     * 指定したフレーズの終了位置を配列にコピーして返す
+     * 
+     * @param phraseId
+     * @return
+     */
+    public int[] getEndIndexes(int phraseId) {
+      return Arrays.copyOfRange(mEndIndexes, mOffsets[phraseId], mOffsets[phraseId + 1]);
+    }
+
+    int indexOf(int phraseId, int n) {
+      if (n < 0 || n >= getNumOfHits(phraseId)) {
+        throw new IndexOutOfBoundsException("n=" + n + ", numOfHits=" + getNumOfHits(phraseId));
+      }
+      return mOffsets[phraseId] + n;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append("PhrasefCompactResult [numOfHits=").append(getNumOfHits()).append(", hits={");
+      for (int phraseId = 0; phraseId < mPhraseSet.size(); phraseId++) {
+        if (phraseId > 0) {
+          sb.append(", ");
+        }
+        sb.append(mPhraseSet.getPhrase(phraseId)).append("=").append(Arrays.toString(getStartIndexes(phraseId)));
+      }
+      sb.append("}]");
+      return sb.toString();
+    }
+  }
+
+  /**
+   * UTF-8のバイト列を検索した、検出位置をプリミティブ配列で保持した分析結果
+   * 
+   * getStartIndexなどは文字（UTF-16のchar）単位の位置を、getByteStartIndexなどはバイト単位の位置を返す
+   */
+  public static class PhrasefUtf8CompactResult extends PhrasefCompactResult {
+
+    private final int[] mByteStartIndexes;
+    private final int[] mByteEndIndexes;
+
+    PhrasefUtf8CompactResult(PhraseSet phraseSet, int[] offsets, int[] startIndexes, int[] endIndexes, int[] byteStartIndexes, int[] byteEndIndexes) {
+      super(phraseSet, offsets, startIndexes, endIndexes);
+      mByteStartIndexes = byteStartIndexes;
+      mByteEndIndexes = byteEndIndexes;
+    }
+
+    /**
+     * 指定したフレーズのn番目の検出位置の、バイト単位の開始位置を返す
+     * 
+     * @param phraseId
+     * @param n
+     * @return
+     */
+    public int getByteStartIndex(int phraseId, int n) {
+      return mByteStartIndexes[indexOf(phraseId, n)];
+    }
+
+    /**
+     * 指定したフレーズのn番目の検出位置の、バイト単位の終了位置を返す
+     * 
+     * @param phraseId
+     * @param n
+     * @return
+     */
+    public int getByteEndIndex(int phraseId, int n) {
+      return mByteEndIndexes[indexOf(phraseId, n)];
+    }
+
+    /**
+     * 指定したフレーズの、バイト単位の開始位置を配列にコピーして返す
+     * 
+     * @param phraseId
+     * @return
+     */
+    public int[] getByteStartIndexes(int phraseId) {
+      return Arrays.copyOfRange(mByteStartIndexes, mOffsets[phraseId], mOffsets[phraseId + 1]);
+    }
+
+    /**
+     * 指定したフレーズの、バイト単位の終了位置を配列にコピーして返す
+     * 
+     * @param phraseId
+     * @return
+     */
+    public int[] getByteEndIndexes(int phraseId) {
+      return Arrays.copyOfRange(mByteEndIndexes, mOffsets[phraseId], mOffsets[phraseId + 1]);
+    }
+  }
+
   /**
    * 分析結果
    */
@@ -376,13 +1418,38 @@ public class PhraseFinder {
     /**
      * 分析結果のヒント
      */
-    public String hint;
+    public volatile String hint;
 
     /**
      * 検索対象文字列の位置
      */
     public List<PhrasePos> posList;
 
+    // まだ組み立てていないhint（HintMode.LAZYの場合。検索結果を返した後はthisのロックを取って参照する）
+    PendingHint pendingHint;
+
+    /**
+     * 分析結果のヒントを返す
+     * 
+     * HintMode.LAZYで検索した場合は、はじめて呼ばれたときにヒントを組み立てる。<br>
+     * 同じ結果を複数のスレッドから呼んでも、ヒントは一度だけ組み立てられる。
+     * 
+     * @return
+     */
+    public String getHint() {
+      final String renderedHint = hint;
+      if (renderedHint != null) {
+        return renderedHint;
+      }
+      synchronized (this) {
+        if (hint == null && pendingHint != null) {
+          hint = pendingHint.render();
+          pendingHint = null;
+        }
+        return hint;
+      }
+    }
+
     @Override
     public String toString() {
       return "PhrasefResult [phrase=" + phrase + ", analysisMode=" + analysisMode + ", isHit=" + isHit + ", numOfHits=" + numOfHits + ", hint=" + hint
@@ -0,0 +1,409 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.Utf8PhraseHitListener;
+
+/**
+ * ディレクトリ以下のファイルから、フレーズファイルに書かれたフレーズを並列に検索するコマンドラインツール
+ * 
+ * <pre>
+ * java -jar phrase-finder.jar [options] &lt;phrase file&gt; &lt;directory&gt;
+ * 
+ *   -t, --threads N      ワーカースレッドの数（既定はCPUの数）
+ *   -f, --format FORMAT  出力形式 tsv または json（既定はtsv）
+ *   -o, --output FILE    出力先のファイル（既定は標準出力）
+ * </pre>
+ * 
+ * フレーズファイルはUTF-8で１行に１フレーズを書く（空行は無視する）。検索するファイルもUTF-8として扱う。<br>
+ * ヒットしたフレーズは１件１行（ファイル、フレーズ、分析モード、文字単位の位置、バイト単位の位置）で出力し、
+ * 最後に処理量の集計を標準エラー出力に出力する。<br>
+ * ファイルは上限のある待ち行列を通してワーカーに渡し、出力もファイルごとに少しずつ書き出すので、
+ * ファイルの数が多くてもメモリの使用量は増えない。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseFinderCli {
+
+  // これ以下の大きさのファイルは、メモリマップせずにワーカーごとのバッファに読み込む
+  private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+  // ファイルごとの出力をこの大きさごとに書き出す
+  private static final int OUTPUT_CHUNK_SIZE = 64 * 1024;
+
+  private static final String USAGE = "Usage: java -jar phrase-finder.jar [-t threads] [-f tsv|json] [-o output] <phrase file> <directory>";
+
+  /**
+   * 出力形式
+   */
+  enum Format {
+    TSV, JSON
+  }
+
+  private final PhraseFinder mFinder = new PhraseFinder();
+  private final PhraseSet mPhraseSet;
+  private final Format mFormat;
+  private final Writer mOut;
+
+  private final AtomicLong mNumOfFiles = new AtomicLong();
+  private final AtomicLong mNumOfBytes = new AtomicLong();
+  private final AtomicLong mNumOfHits = new AtomicLong();
+  private final AtomicLong mNumOfFilesWithHits = new AtomicLong();
+  private final AtomicLong mNumOfErrors = new AtomicLong();
+
+  // ワーカーごとの読み込みバッファ
+  private final ThreadLocal<ByteBuffer> mReadBuffer = new ThreadLocal<ByteBuffer>() {
+    @Override
+    protected ByteBuffer initialValue() {
+      return ByteBuffer.allocate(READ_BUFFER_SIZE);
+    }
+  };
+
+  private PhraseFinderCli(PhraseSet phraseSet, Format format, Writer out) {
+    mPhraseSet = phraseSet;
+    mFormat = format;
+    mOut = out;
+  }
+
+  public static void main(String[] args) {
+    System.exit(run(args, System.out, System.err));
+  }
+
+  /**
+   * コマンドラインを実行する
+   * 
+   * @param args
+   * @param stdout
+   * @param stderr
+   * @return 終了コード（0:正常終了、1:読み込めないファイルがあった、2:引数の誤り）
+   */
+  static int run(String[] args, PrintStream stdout, PrintStream stderr) {
+
+    int numOfThreads = Runtime.getRuntime().availableProcessors();
+    Format format = Format.TSV;
+    String outputFile = null;
+    final List<String> operands = new ArrayList<String>();
+
+    try {
+      for (int i = 0; i < args.length; i++) {
+        final String arg = args[i];
+        if ("-t".equals(arg) || "--threads".equals(arg)) {
+          numOfThreads = Integer.parseInt(valueOf(args, ++i, arg));
+          if (numOfThreads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+          }
+        } else if ("-f".equals(arg) || "--format".equals(arg)) {
+          format = Format.valueOf(valueOf(args, ++i, arg).toUpperCase(Locale.ROOT));
+        } else if ("-o".equals(arg) || "--output".equals(arg)) {
+          outputFile = valueOf(args, ++i, arg);
+        } else if (arg.startsWith("-") && arg.length() > 1) {
+          throw new IllegalArgumentException("unknown option: " + arg);
+        } else {
+          operands.add(arg);
+        }
+      }
+      if (operands.size() != 2) {
+        throw new IllegalArgumentException("phrase file and directory are required");
+      }
+    } catch (IllegalArgumentException e) {
+      stderr.println(e.getMessage());
+      stderr.println(USAGE);
+      return 2;
+    }
+
+    final Path phraseFile = Paths.get(operands.get(0));
+    final Path root = Paths.get(operands.get(1));
+
+    final List<String> phrases = new ArrayList<String>();
+    try {
+      for (String line : Files.readAllLines(phraseFile, StandardCharsets.UTF_8)) {
+        if (line.length() > 0) {
+          phrases.add(line);
+        }
+      }
+    } catch (IOException e) {
+      stderr.println("Cannot read phrase file: " + phraseFile + ": " + e);
+      return 2;
+    }
+    if (!Files.exists(root)) {
+      stderr.println("No such file or directory: " + root);
+      return 2;
+    }
+
+    OutputStream os = null;
+    try {
+      os = outputFile != null ? Files.newOutputStream(Paths.get(outputFile)) : stdout;
+      final Writer out = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), OUTPUT_CHUNK_SIZE);
+
+      final PhraseFinderCli cli = new PhraseFinderCli(PhraseSet.compile(phrases), format, out);
+      final long startNanos = System.nanoTime();
+      cli.scanTree(root, numOfThreads, stderr);
+      out.flush();
+      cli.printSummary(stderr, System.nanoTime() - startNanos);
+
+      return cli.mNumOfErrors.get() > 0 ? 1 : 0;
+    } catch (IOException e) {
+      stderr.println(e);
+      return 1;
+    } finally {
+      if (outputFile != null && os != null) {
+        try {
+          os.close();
+        } catch (IOException e) {
+          stderr.println(e);
+        }
+      }
+    }
+  }
+
+  private static String valueOf(String[] args, int i, String option) {
+    if (i >= args.length) {
+      throw new IllegalArgumentException("missing value for " + option);
+    }
+    return args[i];
+  }
+
+  /**
+   * ディレクトリ以下のファイルをワーカーで検索する
+   * 
+   * @param root
+   * @param numOfThreads
+   * @param stderr
+   * @throws IOException
+   */
+  private void scanTree(Path root, int numOfThreads, final PrintStream stderr) throws IOException {
+
+    // 待ち行列があふれた場合は、ディレクトリをたどるスレッドで検索することで、たどる速さを抑える
+    final ThreadPoolExecutor executor = new ThreadPoolExecutor(numOfThreads, numOfThreads, 0L, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<Runnable>(numOfThreads * 16), new ThreadPoolExecutor.CallerRunsPolicy());
+
+    try {
+      Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+        @Override
+        public FileVisitResult visitFile(final Path file, BasicFileAttributes attrs) {
+          if (attrs.isRegularFile()) {
+            executor.execute(new Runnable() {
+              @Override
+              public void run() {
+                try {
+                  scanFile(file);
+                } catch (IOException e) {
+                  mNumOfErrors.incrementAndGet();
+                  stderr.println("Cannot read file: " + file + ": " + e);
+                } catch (RuntimeException e) {
+                  mNumOfErrors.incrementAndGet();
+                  stderr.println("Cannot scan file: " + file + ": " + e);
+                }
+              }
+            });
+          }
+          return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFileFailed(Path file, IOException e) {
+          mNumOfErrors.incrementAndGet();
+          stderr.println("Cannot read file: " + file + ": " + e);
+          return FileVisitResult.CONTINUE;
+        }
+      });
+    } finally {
+      executor.shutdown();
+      try {
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * １つのファイルを検索して、ヒットしたフレーズを出力する
+   * 
+   * @param file
+   * @throws IOException
+   */
+  private void scanFile(final Path file) throws IOException {
+
+    final String fileName = file.toString();
+    final StringBuilder sb = new StringBuilder();
+    final long[] numOfHits = new long[1];
+
+    final Utf8PhraseHitListener listener = new Utf8PhraseHitListener() {
+      @Override
+      public void onPhraseHit(String phrase, int phraseId, long byteStartIndex, long byteEndIndex, long charStartIndex, long charEndIndex) {
+        numOfHits[0]++;
+        appendLine(sb, fileName, phrase, mPhraseSet.getAnalysisMode(phraseId), charStartIndex, charEndIndex, byteStartIndex, byteEndIndex);
+        if (sb.length() >= OUTPUT_CHUNK_SIZE) {
+          write(sb);
+        }
+      }
+    };
+
+    final long size;
+    final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      size = channel.size();
+      if (size <= READ_BUFFER_SIZE) {
+        final ByteBuffer buffer = mReadBuffer.get();
+        buffer.clear();
+        while (buffer.position() < size && channel.read(buffer) >= 0) {
+          // 読み終わるまで繰り返す
+        }
+        buffer.flip();
+        mFinder.findPhrases(buffer, mPhraseSet, listener);
+      }
+    } finally {
+      channel.close();
+    }
+    if (size > READ_BUFFER_SIZE) {
+      mFinder.findPhrasesInFile(file, mPhraseSet, listener);
+    }
+
+    write(sb);
+
+    mNumOfFiles.incrementAndGet();
+    mNumOfBytes.addAndGet(size);
+    if (numOfHits[0] > 0) {
+      mNumOfHits.addAndGet(numOfHits[0]);
+      mNumOfFilesWithHits.incrementAndGet();
+    }
+  }
+
+  private void appendLine(StringBuilder sb, String fileName, String phrase, PhraseAnalysisMode mode, long charStartIndex, long charEndIndex, long byteStartIndex,
+      long byteEndIndex) {
+    if (mFormat == Format.JSON) {
+      sb.append("{\"file\":");
+      appendJsonString(sb, fileName);
+      sb.append(",\"phrase\":");
+      appendJsonString(sb, phrase);
+      sb.append(",\"analysisMode\":\"").append(mode.name()).append('"');
+      sb.append(",\"startIndex\":").append(charStartIndex);
+      sb.append(",\"endIndex\":").append(charEndIndex);
+      sb.append(",\"byteStartIndex\":").append(byteStartIndex);
+      sb.append(",\"byteEndIndex\":").append(byteEndIndex);
+      sb.append("}\n");
+    } else {
+      appendTsvField(sb, fileName);
+      sb.append('\t');
+      appendTsvField(sb, phrase);
+      sb.append('\t').append(mode.name());
+      sb.append('\t').append(charStartIndex);
+      sb.append('\t').append(charEndIndex);
+      sb.append('\t').append(byteStartIndex);
+      sb.append('\t').append(byteEndIndex);
+      sb.append('\n');
+    }
+  }
+
+  private static void appendJsonString(StringBuilder sb, String str) {
+    sb.append('"');
+    for (int i = 0; i < str.length(); i++) {
+      final char c = str.charAt(i);
+      if (c == '"') {
+        sb.append("\\\"");
+      } else if (c == '\\') {
+        sb.append("\\\\");
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else if (c == '\r') {
+        sb.append("\\r");
+      } else if (c == '\t') {
+        sb.append("\\t");
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append('"');
+  }
+
+  private static void appendTsvField(StringBuilder sb, String str) {
+    for (int i = 0; i < str.length(); i++) {
+      final char c = str.charAt(i);
+      if (c == '\t') {
+        sb.append("\\t");
+      } else if (c == '\n') {
+        sb.append("\\n");
+      } else if (c == '\r') {
+        sb.append("\\r");
+      } else if (c == '\\') {
+        sb.append("\\\\");
+      } else {
+        sb.append(c);
+      }
+    }
+  }
+
+  /**
+   * 出力をまとめて書き出す（ファイルごとの出力は行の途中で分かれない）
+   * 
+   * @param sb
+   */
+  private void write(StringBuilder sb) {
+    if (sb.length() == 0) {
+      return;
+    }
+    try {
+      synchronized (mOut) {
+        mOut.append(sb);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    sb.setLength(0);
+  }
+
+  private void printSummary(PrintStream stderr, long elapsedNanos) {
+    final double seconds = Math.max(elapsedNanos, 1) / 1e9;
+    stderr.println(String.format(Locale.ROOT, "files=%d bytes=%d hits=%d filesWithHits=%d errors=%d elapsed=%.3fs throughput=%.1fMB/s %.1ffiles/s",
+        mNumOfFiles.get(), mNumOfBytes.get(), mNumOfHits.get(), mNumOfFilesWithHits.get(), mNumOfErrors.get(), seconds,
+        mNumOfBytes.get() / seconds / (1024 * 1024), mNumOfFiles.get() / seconds));
+  }
+}
@@ -0,0 +1,352 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+
+/**
+ * 検索処理の件数と処理時間を分析モードごとに集計する
+ * 
+ * PhraseFinder#setMetricsで指定すると、findPhrase、findPhrases、findPhrasesCompactの
+ * 処理内容が記録される。カウンタにはLongAdderを使うので、複数のスレッドから同時に記録できる。<br>
+ * HintListenerの呼び出し回数には、HintContextListenerの呼び出し回数も含む。<br>
+ * 集計値は{@link #snapshot()}でまとめて取り出す。<br>
+ * ImmutablePhraseFinderでPhraseResultCacheを使う場合、キャッシュした検出位置を使った検索は集計されない（PhraseResultCache#getHitCountを参照）。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseFinderMetrics {
+
+  private static final int NUM_OF_MODES = PhraseAnalysisMode.values().length;
+
+  // 分析モードごとのfindPhraseの呼び出し回数
+  private final LongAdder[] mNumOfPhraseSearches = newAdders();
+
+  // 分析モードごとのfindPhraseの処理時間（ナノ秒）
+  private final LongAdder[] mPhraseSearchNanos = newAdders();
+
+  // 分析モードごとの、テキスト中に見つかった候補の数（前後の文字による判定の前）
+  private final LongAdder[] mNumOfCandidates = newAdders();
+
+  // 分析モードごとの、前後の文字によって独立していないと判定された候補の数
+  private final LongAdder[] mNumOfRejectedCandidates = newAdders();
+
+  // 分析モードごとの、独立したフレーズとして検出された数
+  private final LongAdder[] mNumOfHits = newAdders();
+
+  // 分析モードごとの、HintListenerの呼び出し回数
+  private final LongAdder[] mNumOfHintCallbacks = newAdders();
+
+  // 複数のフレーズをまとめて検索した回数と、その処理時間（ナノ秒）
+  private final LongAdder mNumOfMultiPhraseScans = new LongAdder();
+  private final LongAdder mMultiPhraseScanNanos = new LongAdder();
+
+  private static LongAdder[] newAdders() {
+    final LongAdder[] adders = new LongAdder[NUM_OF_MODES];
+    for (int i = 0; i < adders.length; i++) {
+      adders[i] = new LongAdder();
+    }
+    return adders;
+  }
+
+  /**
+   * １つのフレーズの検索（findPhrase）を記録する
+   * 
+   * @param analysisMode
+   * @param numOfCandidates
+   * @param numOfHits
+   * @param elapsedNanos
+   */
+  void recordPhraseSearch(PhraseAnalysisMode analysisMode, int numOfCandidates, int numOfHits, long elapsedNanos) {
+    final int mode = analysisMode.ordinal();
+    mNumOfPhraseSearches[mode].increment();
+    mPhraseSearchNanos[mode].add(elapsedNanos);
+    addCandidates(mode, numOfCandidates, numOfHits);
+  }
+
+  /**
+   * 複数のフレーズの検索（findPhrases、findPhrasesCompact）を記録する
+   * 
+   * @param phraseSet
+   * @param numOfCandidates
+   *          フレーズIDごとの候補の数
+   * @param result
+   * @param elapsedNanos
+   */
+  void recordMultiPhraseScan(PhraseSet phraseSet, int[] numOfCandidates, PhraseFinder.PhrasefCompactResult result, long elapsedNanos) {
+
+    mNumOfMultiPhraseScans.increment();
+    mMultiPhraseScanNanos.add(elapsedNanos);
+
+    // いったん分析モードごとにまとめてから加算する
+    final long[] candidatesOfModes = new long[NUM_OF_MODES];
+    final long[] hitsOfModes = new long[NUM_OF_MODES];
+    for (int phraseId = 0; phraseId < numOfCandidates.length; phraseId++) {
+      final int mode = phraseSet.getAnalysisMode(phraseId).ordinal();
+      candidatesOfModes[mode] += numOfCandidates[phraseId];
+      hitsOfModes[mode] += result.getNumOfHits(phraseId);
+    }
+    for (int mode = 0; mode < NUM_OF_MODES; mode++) {
+      if (candidatesOfModes[mode] > 0) {
+        addCandidates(mode, candidatesOfModes[mode], hitsOfModes[mode]);
+      }
+    }
+  }
+
+  private void addCandidates(int mode, long numOfCandidates, long numOfHits) {
+    mNumOfCandidates[mode].add(numOfCandidates);
+    mNumOfRejectedCandidates[mode].add(numOfCandidates - numOfHits);
+    mNumOfHits[mode].add(numOfHits);
+  }
+
+  /**
+   * HintListenerまたはHintContextListenerの呼び出しを記録する
+   * 
+   * @param analysisMode
+   *          検索したときに使われたフレーズの分析モード
+   */
+  void recordHintCallback(PhraseAnalysisMode analysisMode) {
+    mNumOfHintCallbacks[analysisMode.ordinal()].increment();
+  }
+
+  /**
+   * 現在の集計値を返す
+   * 
+   * 記録中に呼んだ場合、各集計値は同じ時点のものとは限らない
+   * 
+   * @return
+   */
+  public Snapshot snapshot() {
+    final Snapshot snapshot = new Snapshot();
+    for (int mode = 0; mode < NUM_OF_MODES; mode++) {
+      snapshot.mNumOfPhraseSearches[mode] = mNumOfPhraseSearches[mode].sum();
+      snapshot.mPhraseSearchNanos[mode] = mPhraseSearchNanos[mode].sum();
+      snapshot.mNumOfCandidates[mode] = mNumOfCandidates[mode].sum();
+      snapshot.mNumOfRejectedCandidates[mode] = mNumOfRejectedCandidates[mode].sum();
+      snapshot.mNumOfHits[mode] = mNumOfHits[mode].sum();
+      snapshot.mNumOfHintCallbacks[mode] = mNumOfHintCallbacks[mode].sum();
+    }
+    snapshot.mNumOfMultiPhraseScans = mNumOfMultiPhraseScans.sum();
+    snapshot.mMultiPhraseScanNanos = mMultiPhraseScanNanos.sum();
+    return snapshot;
+  }
+
+  /**
+   * すべての集計値を0に戻す
+   */
+  public void reset() {
+    for (int mode = 0; mode < NUM_OF_MODES; mode++) {
+      mNumOfPhraseSearches[mode].reset();
+      mPhraseSearchNanos[mode].reset();
+      mNumOfCandidates[mode].reset();
+      mNumOfRejectedCandidates[mode].reset();
+      mNumOfHits[mode].reset();
+      mNumOfHintCallbacks[mode].reset();
+    }
+    mNumOfMultiPhraseScans.reset();
+    mMultiPhraseScanNanos.reset();
+  }
+
+  /**
+   * ある時点の集計値
+   */
+  public static final class Snapshot {
+
+    private final long[] mNumOfPhraseSearches = new long[NUM_OF_MODES];
+    private final long[] mPhraseSearchNanos = new long[NUM_OF_MODES];
+    private final long[] mNumOfCandidates = new long[NUM_OF_MODES];
+    private final long[] mNumOfRejectedCandidates = new long[NUM_OF_MODES];
+    private final long[] mNumOfHits = new long[NUM_OF_MODES];
+    private final long[] mNumOfHintCallbacks = new long[NUM_OF_MODES];
+    private long mNumOfMultiPhraseScans;
+    private long mMultiPhraseScanNanos;
+
+    private Snapshot() {
+    }
+
+    /**
+     * findPhraseの呼び出し回数を返す
+     * 
+     * @param analysisMode
+     * @return
+     */
+    public long getNumOfPhraseSearches(PhraseAnalysisMode analysisMode) {
+      return mNumOfPhraseSearches[analysisMode.ordinal()];
+    }
+
+    /**
+     * findPhraseの処理時間の合計（ナノ秒）を返す
+     * 
+     * @param analysisMode
+     * @return
+     */
+    public long getPhraseSearchNanos(PhraseAnalysisMode analysisMode) {
+      return mPhraseSearchNanos[analysisMode.ordinal()];
+    }
+
+    /**
+     * テキスト中に見つかった候補の数（前後の文字による判定の前）を返す
+     * 
+     * @param analysisMode
+     * @return
+     */
+    public long getNumOfCandidates(PhraseAnalysisMode analysisMode) {
+      return mNumOfCandidates[analysisMode.ordinal()];
+    }
+
+    /**
+     * 前後の文字によって独立していないと判定された候補の数を返す
+     * 
+     * @param analysisMode
+     * @return
+     */
+    public long getNumOfRejectedCandidates(PhraseAnalysisMode analysisMode) {
+      return mNumOfRejectedCandidates[analysisMode.ordinal()];
+    }
+
+    /**
+     * 独立したフレーズとして検出された数を返す
+     * 
+     * @param analysisMode
+     * @return
+     */
+    public long getNumOfHits(PhraseAnalysisMode analysisMode) {
+      return mNumOfHits[analysisMode.ordinal()];
+    }
+
+    /**
+     * HintListenerの呼び出し回数を返す
+     * 
+     * @param analysisMode
+     * @return
+     */
+    public long getNumOfHintCallbacks(PhraseAnalysisMode analysisMode) {
+      return mNumOfHintCallbacks[analysisMode.ordinal()];
+    }
+
+    /**
+     * すべての分析モードのfindPhraseの呼び出し回数を返す
+     * 
+     * @return
+     */
+    public long getNumOfPhraseSearches() {
+      return sum(mNumOfPhraseSearches);
+    }
+
+    /**
+     * すべての分析モードのfindPhraseの処理時間の合計（ナノ秒）を返す
+     * 
+     * @return
+     */
+    public long getPhraseSearchNanos() {
+      return sum(mPhraseSearchNanos);
+    }
+
+    /**
+     * すべての分析モードの候補の数を返す
+     * 
+     * @return
+     */
+    public long getNumOfCandidates() {
+      return sum(mNumOfCandidates);
+    }
+
+    /**
+     * すべての分析モードの、独立していないと判定された候補の数を返す
+     * 
+     * @return
+     */
+    public long getNumOfRejectedCandidates() {
+      return sum(mNumOfRejectedCandidates);
+    }
+
+    /**
+     * すべての分析モードの、独立したフレーズとして検出された数を返す
+     * 
+     * @return
+     */
+    public long getNumOfHits() {
+      return sum(mNumOfHits);
+    }
+
+    /**
+     * すべての分析モードのHintListenerの呼び出し回数を返す
+     * 
+     * @return
+     */
+    public long getNumOfHintCallbacks() {
+      return sum(mNumOfHintCallbacks);
+    }
+
+    /**
+     * 複数のフレーズをまとめて検索した回数を返す
+     * 
+     * @return
+     */
+    public long getNumOfMultiPhraseScans() {
+      return mNumOfMultiPhraseScans;
+    }
+
+    /**
+     * 複数のフレーズをまとめて検索した処理時間の合計（ナノ秒）を返す
+     * 
+     * @return
+     */
+    public long getMultiPhraseScanNanos() {
+      return mMultiPhraseScanNanos;
+    }
+
+    private static long sum(long[] values) {
+      long sum = 0;
+      for (long value : values) {
+        sum += value;
+      }
+      return sum;
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder sb = new StringBuilder();
+      sb.append("Snapshot [numOfMultiPhraseScans=").append(mNumOfMultiPhraseScans);
+      sb.append(", multiPhraseScanNanos=").append(mMultiPhraseScanNanos);
+      for (PhraseAnalysisMode mode : PhraseAnalysisMode.values()) {
+        final int i = mode.ordinal();
+        if (mNumOfPhraseSearches[i] == 0 && mNumOfCandidates[i] == 0 && mNumOfHintCallbacks[i] == 0) {
+          continue;
+        }
+        sb.append(", ").append(mode).append("={");
+        sb.append("numOfPhraseSearches=").append(mNumOfPhraseSearches[i]);
+        sb.append(", phraseSearchNanos=").append(mPhraseSearchNanos[i]);
+        sb.append(", numOfCandidates=").append(mNumOfCandidates[i]);
+        sb.append(", numOfRejectedCandidates=").append(mNumOfRejectedCandidates[i]);
+        sb.append(", numOfHits=").append(mNumOfHits[i]);
+        sb.append(", numOfHintCallbacks=").append(mNumOfHintCallbacks[i]);
+        sb.append("}");
+      }
+      sb.append("]");
+      return sb.toString();
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * テキストから見つかった独立したフレーズを、見つかるたびに購読者に通知する
+ * 
+ * java.util.concurrent.Flow（Java 9以降）と同じ形の{@link Subscriber}、{@link Subscription}で、
+ * 購読者が要求した数（デマンド）だけフレーズを通知する。<br>
+ * テキストは要求に応じて少しずつ走査するので、最初のフレーズはテキスト全体を走査する前に通知される。
+ * 要求した数だけ通知すると、次の要求が来るまで走査を止める。購読者がcancelすると、残りのテキストは走査しない。<br>
+ * 要求が残っている間にテキストの終わりまで走査すると、onCompleteを通知する。<br>
+ * 購読者ごとに最初から走査する。フレーズは終了位置の順に通知され、内容はfindPhrasesの結果と同じになる。
+ * 
+ * Executorを指定しない場合は、requestを呼んだスレッドで通知する。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseHitPublisher {
+
+  private final String mSrcText;
+  private final PhraseSet mPhraseSet;
+  private final Executor mExecutor;
+
+  /**
+   * @param srcText
+   * @param phraseSet
+   */
+  public PhraseHitPublisher(String srcText, PhraseSet phraseSet) {
+    this(srcText, phraseSet, null);
+  }
+
+  /**
+   * @param srcText
+   * @param phraseSet
+   * @param executor
+   *          通知を行うExecutor（nullの場合はrequestを呼んだスレッドで通知する）
+   */
+  public PhraseHitPublisher(String srcText, PhraseSet phraseSet, Executor executor) {
+    if (srcText == null || phraseSet == null) {
+      throw new NullPointerException("srcText and phraseSet must not be null");
+    }
+    mSrcText = srcText;
+    mPhraseSet = phraseSet;
+    mExecutor = executor;
+  }
+
+  /**
+   * 購読者を登録する
+   * 
+   * 購読者のonSubscribeが呼ばれ、Subscription#requestで要求した数だけonNextが呼ばれる
+   * 
+   * @param subscriber
+   */
+  public void subscribe(Subscriber subscriber) {
+    if (subscriber == null) {
+      throw new NullPointerException("subscriber must not be null");
+    }
+    final HitSubscription subscription = new HitSubscription(subscriber, mPhraseSet.cursor(mSrcText));
+    subscriber.onSubscribe(subscription);
+  }
+
+  /**
+   * 購読者とPhraseHitPublisherの間の購読（Flow.Subscriptionと同じ）
+   */
+  public interface Subscription {
+
+    /**
+     * さらにn個のフレーズを要求する（nは正の値であること）
+     * 
+     * @param n
+     */
+    public void request(long n);
+
+    /**
+     * 購読をやめる。以降は通知されない
+     */
+    public void cancel();
+  }
+
+  /**
+   * フレーズの通知を受け取る購読者（Flow.Subscriberと同じ）
+   */
+  public interface Subscriber {
+
+    public void onSubscribe(Subscription subscription);
+
+    public void onNext(PhraseHit hit);
+
+    public void onError(Throwable throwable);
+
+    public void onComplete();
+  }
+
+  /**
+   * 見つかった独立したフレーズ
+   */
+  public static class PhraseHit {
+
+    public final String phrase;
+
+    /**
+     * PhraseSetでのフレーズID
+     */
+    public final int phraseId;
+
+    public final int startIndex;
+    public final int endIndex;
+
+    PhraseHit(String phrase, int phraseId, int startIndex, int endIndex) {
+      this.phrase = phrase;
+      this.phraseId = phraseId;
+      this.startIndex = startIndex;
+      this.endIndex = endIndex;
+    }
+
+    @Override
+    public String toString() {
+      return "PhraseHit [phrase=" + phrase + ", phraseId=" + phraseId + ", startIndex=" + startIndex + ", endIndex=" + endIndex + "]";
+    }
+  }
+
+  /**
+   * 要求された数だけテキストを走査して通知する
+   */
+  final class HitSubscription implements Subscription, Runnable {
+
+    private final Subscriber mSubscriber;
+
+    private PhraseSet.HitCursor mCursor;
+
+    // まだ通知していない要求数
+    private final AtomicLong mDemand = new AtomicLong();
+
+    // 通知処理が動いているか（動いている間の要求は、動いているスレッドがまとめて処理する）
+    private final AtomicInteger mWip = new AtomicInteger();
+
+    private volatile boolean mCancelled = false;
+
+    // requestに不正な値が渡された場合の例外
+    private volatile Throwable mError = null;
+
+    HitSubscription(Subscriber subscriber, PhraseSet.HitCursor cursor) {
+      mSubscriber = subscriber;
+      mCursor = cursor;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        mError = new IllegalArgumentException("request must be positive. n=" + n);
+      } else {
+        // 上限はLong.MAX_VALUE（無制限）とする
+        long current;
+        long next;
+        do {
+          current = mDemand.get();
+          if (current == Long.MAX_VALUE) {
+            break;
+          }
+          next = current + n;
+          if (next < 0) {
+            next = Long.MAX_VALUE;
+          }
+        } while (!mDemand.compareAndSet(current, next));
+      }
+      schedule();
+    }
+
+    @Override
+    public void cancel() {
+      mCancelled = true;
+      schedule();
+    }
+
+    private void schedule() {
+      if (mWip.getAndIncrement() != 0) {
+        return;
+      }
+      if (mExecutor != null) {
+        mExecutor.execute(HitSubscription.this);
+      } else {
+        run();
+      }
+    }
+
+    @Override
+    public void run() {
+      int missed = 1;
+      while (true) {
+        if (drain()) {
+          return;
+        }
+        missed = mWip.addAndGet(-missed);
+        if (missed == 0) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * 要求された数だけ通知する
+     * 
+     * @return 購読が終わった場合はtrue
+     */
+    private boolean drain() {
+
+      if (mCursor == null) {
+        return true;
+      }
+
+      final long demand = mDemand.get();
+      long emitted = 0;
+
+      while (true) {
+        if (mCancelled) {
+          terminate();
+          return true;
+        }
+        if (mError != null) {
+          terminate();
+          mSubscriber.onError(mError);
+          return true;
+        }
+
+        if (emitted == demand) {
+          // - 要求を満たしたら、次の要求が来るまでテキストを走査しない
+          break;
+        }
+
+        final int phraseId = mCursor.next();
+        if (phraseId < 0) {
+          // - 要求に応じて走査した結果、テキストの終わりに達した場合は完了を通知する
+          terminate();
+          mSubscriber.onComplete();
+          return true;
+        }
+
+        emitted++;
+        mSubscriber.onNext(new PhraseHit(mPhraseSet.getPhrase(phraseId), phraseId, mCursor.getStartIndex(), mCursor.getEndIndex()));
+      }
+
+      if (emitted > 0 && demand != Long.MAX_VALUE) {
+        mDemand.addAndGet(-emitted);
+      }
+      return false;
+    }
+
+    private void terminate() {
+      mCancelled = true;
+      mCursor = null;
+    }
+
+    /**
+     * テキストを走査した位置を返す（購読が終わった場合は-1）
+     * 
+     * @return
+     */
+    int getScannedIndex() {
+      final PhraseSet.HitCursor cursor = mCursor;
+      return cursor != null ? cursor.getScannedIndex() : -1;
+    }
+  }
+}
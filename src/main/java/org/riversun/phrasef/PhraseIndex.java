@@ -0,0 +1,447 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.PhrasePos;
+
+/**
+ * 文書群に対して、独立したフレーズを繰り返し検索するための転置インデックス
+ * 
+ * 文書を追加するときに、分析モードごとの”従属”とみなす文字種別が連続する最長の部分（ラン）に分割して、
+ * ランの文字列ごとに出現位置を記録する。<br>
+ * フレーズの文字はすべてその分析モードで従属とみなす文字種別に含まれるので、
+ * 独立したフレーズはランそのものと一致する。そのため検索は文書を走査せずに、記録した出現位置を引くだけで済む。<br>
+ * 検出位置は{@link PhraseFinder#findPhrase(String, String)}と同じになる。
+ * 
+ * 文書は１回の走査で、すべての分析モードのランに分割する。<br>
+ * UNKNOWNのフレーズは、前後にどの文字があっても従属とみなされるので、文書全体か、文書の2文字目から末尾までと一致する場合にしか検出されない。
+ * そのためUNKNOWNのランは作らず、文書全体と2文字目以降のSHA-256のダイジェストだけを記録する。
+ * 
+ * 文書は追加するだけで、文書の文字列そのものは保持しない。スレッドセーフではない。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseIndex {
+
+  private static final PhraseAnalysisMode[] MODES = PhraseAnalysisMode.values();
+
+  // ランに分割する分析モード（UNKNOWN以外）と、その従属とみなす文字種別
+  private static final PhraseAnalysisMode[] RUN_MODES = new PhraseAnalysisMode[MODES.length - 1];
+  private static final int[] RUN_DEPENDENT_CHAR_CLASSES = new int[RUN_MODES.length];
+
+  static {
+    int m = 0;
+    for (PhraseAnalysisMode mode : MODES) {
+      if (mode != PhraseAnalysisMode.UNKNOWN) {
+        RUN_MODES[m] = mode;
+        RUN_DEPENDENT_CHAR_CLASSES[m] = PhraseFinder.dependentCharClassOf(mode);
+        m++;
+      }
+    }
+  }
+
+  // ダイジェストを求めるときに、一度に変換する文字数
+  private static final int DIGEST_CHUNK_SIZE = 1024;
+
+  // 分析モードごとの、ランの文字列から出現位置へのマップ
+  private final List<Map<String, Postings>> mPostingsOfModes = new ArrayList<Map<String, Postings>>();
+
+  // UNKNOWNのフレーズのための、文書全体と2文字目以降のダイジェストから出現位置へのマップ
+  private final Map<ByteBuffer, Postings> mPostingsOfUnknown = new HashMap<ByteBuffer, Postings>();
+
+  private final MessageDigest mDigest = newDigest();
+  private final byte[] mDigestBuffer = new byte[DIGEST_CHUNK_SIZE * 2];
+
+  private int mNumOfDocuments = 0;
+
+  public PhraseIndex() {
+    for (int i = 0; i < MODES.length; i++) {
+      mPostingsOfModes.add(new HashMap<String, Postings>());
+    }
+  }
+
+  /**
+   * 文書を追加する
+   * 
+   * @param text
+   * @return 文書ID（追加した順に0から振られる）
+   */
+  public int addDocument(String text) {
+    final int documentId = mNumOfDocuments;
+    addRuns(documentId, text);
+    addUnknown(documentId, text);
+    mNumOfDocuments++;
+    return documentId;
+  }
+
+  /**
+   * 複数の文書を追加する
+   * 
+   * @param texts
+   * @return 最初に追加した文書の文書ID
+   */
+  public int addDocuments(Collection<String> texts) {
+    final int firstDocumentId = mNumOfDocuments;
+    for (String text : texts) {
+      addDocument(text);
+    }
+    return firstDocumentId;
+  }
+
+  /**
+   * 文書の数を返す
+   * 
+   * @return
+   */
+  public int getNumOfDocuments() {
+    return mNumOfDocuments;
+  }
+
+  /**
+   * 文書を１回走査して、UNKNOWN以外のすべての分析モードのランに分割して記録する
+   * 
+   * @param documentId
+   * @param text
+   */
+  private void addRuns(int documentId, String text) {
+
+    // 分析モードごとの、走査中のランの開始位置（ランの外にいる場合は-1）
+    final int[] runStarts = new int[RUN_MODES.length];
+    Arrays.fill(runStarts, -1);
+
+    final int length = text.length();
+    for (int i = 0; i <= length; i++) {
+      // 末尾ではどの文字種別にも属さない文字があるとみなして、走査中のランを閉じる
+      final int charClass = i < length ? PhraseTypeDetector.getCharClass(text.charAt(i)) : 0;
+      for (int m = 0; m < RUN_MODES.length; m++) {
+        if ((charClass & RUN_DEPENDENT_CHAR_CLASSES[m]) != 0) {
+          if (runStarts[m] < 0) {
+            runStarts[m] = i;
+          }
+        } else if (runStarts[m] >= 0) {
+          addRun(mPostingsOfModes.get(RUN_MODES[m].ordinal()), documentId, text, runStarts[m], i);
+          runStarts[m] = -1;
+        }
+      }
+    }
+  }
+
+  /**
+   * ランを記録する
+   * 
+   * @param postingsMap
+   * @param documentId
+   * @param text
+   * @param startIndex
+   * @param endIndex
+   */
+  private static void addRun(Map<String, Postings> postingsMap, int documentId, String text, int startIndex, int endIndex) {
+    addPosting(postingsMap, text.substring(startIndex, endIndex), documentId, startIndex);
+    if (isSecondCharIndependent(text, startIndex, endIndex)) {
+      addPosting(postingsMap, text.substring(1, endIndex), documentId, 1);
+    }
+  }
+
+  /**
+   * 文書全体と2文字目以降のダイジェストを、UNKNOWNのフレーズのために記録する
+   * 
+   * @param documentId
+   * @param text
+   */
+  private void addUnknown(int documentId, String text) {
+    final int length = text.length();
+    if (length == 0) {
+      return;
+    }
+    addPosting(mPostingsOfUnknown, digestOf(text, 0), documentId, 0);
+    if (isSecondCharIndependent(text, 0, length)) {
+      addPosting(mPostingsOfUnknown, digestOf(text, 1), documentId, 1);
+    }
+  }
+
+  /**
+   * 先頭のランの2文字目以降を、独立したフレーズとして記録するか否か
+   * 
+   * findPhraseは位置1から始まるフレーズの前の文字を判定しないので、先頭のランの2文字目以降も独立とみなす
+   * （ただし、位置0から同じフレーズが重なって始まる場合は、そちらが先に候補になり位置1は候補にならない）
+   * 
+   * @param text
+   * @param startIndex
+   * @param endIndex
+   * @return
+   */
+  private static boolean isSecondCharIndependent(String text, int startIndex, int endIndex) {
+    return startIndex == 0 && endIndex >= 2 && !(endIndex >= 3 && isSameChars(text, 0, endIndex));
+  }
+
+  private static boolean isSameChars(String text, int startIndex, int endIndex) {
+    for (int i = startIndex + 1; i < endIndex; i++) {
+      if (text.charAt(i) != text.charAt(startIndex)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * startIndex以降の文字列（UTF-16）のSHA-256のダイジェストを求める
+   * 
+   * @param text
+   * @param startIndex
+   * @return ダイジェストを保持するByteBuffer（内容で比較できる）
+   */
+  private ByteBuffer digestOf(String text, int startIndex) {
+    final byte[] buf = mDigestBuffer;
+    final int length = text.length();
+    for (int offset = startIndex; offset < length; offset += DIGEST_CHUNK_SIZE) {
+      final int numOfChars = Math.min(DIGEST_CHUNK_SIZE, length - offset);
+      for (int i = 0; i < numOfChars; i++) {
+        final char c = text.charAt(offset + i);
+        buf[i * 2] = (byte) (c >> 8);
+        buf[i * 2 + 1] = (byte) c;
+      }
+      mDigest.update(buf, 0, numOfChars * 2);
+    }
+    return ByteBuffer.wrap(mDigest.digest());
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // - SHA-256はすべてのJava実行環境で使える
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static <K> void addPosting(Map<K, Postings> postingsMap, K token, int documentId, int startIndex) {
+    Postings postings = postingsMap.get(token);
+    if (postings == null) {
+      postings = new Postings();
+      postingsMap.put(token, postings);
+    }
+    postings.add(documentId, startIndex);
+  }
+
+  private Postings getPostings(String phrase) {
+    if (phrase.length() == 0) {
+      return null;
+    }
+    final PhraseAnalysisMode mode = PhraseFinder.detectAnalysisMode(phrase);
+    if (mode == PhraseAnalysisMode.UNKNOWN) {
+      return mPostingsOfUnknown.get(digestOf(phrase, 0));
+    }
+    return mPostingsOfModes.get(mode.ordinal()).get(phrase);
+  }
+
+  /**
+   * フレーズが独立して含まれる文書ごとの検出位置を返す
+   * 
+   * @param phrase
+   * @return 文書IDから検出位置へのマップ（文書IDの昇順）
+   */
+  public Map<Integer, List<PhrasePos>> findPhrase(String phrase) {
+    final Map<Integer, List<PhrasePos>> result = new LinkedHashMap<Integer, List<PhrasePos>>();
+    final Postings postings = getPostings(phrase);
+    if (postings == null) {
+      return result;
+    }
+    for (int i = 0; i < postings.mSize; i++) {
+      final Integer documentId = postings.mDocumentIds[i];
+      List<PhrasePos> posList = result.get(documentId);
+      if (posList == null) {
+        posList = new ArrayList<PhrasePos>();
+        result.put(documentId, posList);
+      }
+      posList.add(newPhrasePos(postings.mStartIndexes[i], phrase));
+    }
+    return result;
+  }
+
+  /**
+   * 指定した文書での、フレーズの検出位置を返す
+   * 
+   * 結果は{@link PhraseFinder#findPhrase(String, String)}のposListと同じになる
+   * 
+   * @param documentId
+   * @param phrase
+   * @return
+   */
+  public List<PhrasePos> findPhrase(int documentId, String phrase) {
+    if (documentId < 0 || documentId >= mNumOfDocuments) {
+      throw new IndexOutOfBoundsException("documentId=" + documentId + ", numOfDocuments=" + mNumOfDocuments);
+    }
+    final List<PhrasePos> posList = new ArrayList<PhrasePos>();
+    final Postings postings = getPostings(phrase);
+    if (postings == null) {
+      return posList;
+    }
+    for (int i = postings.firstIndexOf(documentId); i < postings.mSize && postings.mDocumentIds[i] == documentId; i++) {
+      posList.add(newPhrasePos(postings.mStartIndexes[i], phrase));
+    }
+    return posList;
+  }
+
+  /**
+   * フレーズが独立して含まれる文書の文書IDを返す
+   * 
+   * @param phrase
+   * @return 文書ID（昇順）
+   */
+  public int[] findDocuments(String phrase) {
+    final Postings postings = getPostings(phrase);
+    if (postings == null) {
+      return new int[0];
+    }
+    return postings.documentIds();
+  }
+
+  /**
+   * すべてのフレーズが独立して含まれる文書の文書IDを返す
+   * 
+   * 出現する文書の少ないフレーズから順に、文書IDの積集合をとる
+   * 
+   * @param phrases
+   * @return 文書ID（昇順）
+   */
+  public int[] findDocumentsContainingAll(Collection<String> phrases) {
+
+    if (phrases.isEmpty()) {
+      return new int[0];
+    }
+
+    final List<int[]> documentIdsList = new ArrayList<int[]>();
+    for (String phrase : phrases) {
+      final int[] documentIds = findDocuments(phrase);
+      if (documentIds.length == 0) {
+        return documentIds;
+      }
+      documentIdsList.add(documentIds);
+    }
+    Collections.sort(documentIdsList, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] o1, int[] o2) {
+        return o1.length - o2.length;
+      }
+    });
+
+    int[] result = documentIdsList.get(0);
+    for (int i = 1; i < documentIdsList.size() && result.length > 0; i++) {
+      result = intersect(result, documentIdsList.get(i));
+    }
+    return result;
+  }
+
+  private static int[] intersect(int[] smaller, int[] larger) {
+    final int[] result = new int[smaller.length];
+    int size = 0;
+    int from = 0;
+    for (int documentId : smaller) {
+      final int found = Arrays.binarySearch(larger, from, larger.length, documentId);
+      if (found >= 0) {
+        result[size++] = documentId;
+        from = found + 1;
+      } else {
+        from = -found - 1;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private static PhrasePos newPhrasePos(int startIndex, String phrase) {
+    final PhrasePos pos = new PhrasePos();
+    pos.startIndex = startIndex;
+    pos.endIndex = startIndex + phrase.length();
+    return pos;
+  }
+
+  /**
+   * ランの出現位置（文書IDと開始位置の昇順に並ぶ）
+   */
+  private static final class Postings {
+
+    private int[] mDocumentIds = new int[2];
+    private int[] mStartIndexes = new int[2];
+    private int mSize = 0;
+
+    void add(int documentId, int startIndex) {
+      if (mSize == mDocumentIds.length) {
+        mDocumentIds = Arrays.copyOf(mDocumentIds, mSize * 2);
+        mStartIndexes = Arrays.copyOf(mStartIndexes, mSize * 2);
+      }
+      mDocumentIds[mSize] = documentId;
+      mStartIndexes[mSize] = startIndex;
+      mSize++;
+    }
+
+    /**
+     * 指定した文書の最初の出現位置のインデックスを返す（無い場合は次の文書の出現位置のインデックス）
+     * 
+     * @param documentId
+     * @return
+     */
+    int firstIndexOf(int documentId) {
+      int low = 0;
+      int high = mSize;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (mDocumentIds[mid] < documentId) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * 重複を除いた文書IDを返す
+     * 
+     * @return
+     */
+    int[] documentIds() {
+      final int[] documentIds = new int[mSize];
+      int size = 0;
+      for (int i = 0; i < mSize; i++) {
+        if (size == 0 || documentIds[size - 1] != mDocumentIds[i]) {
+          documentIds[size++] = mDocumentIds[i];
+        }
+      }
+      return Arrays.copyOf(documentIds, size);
+    }
+  }
+}
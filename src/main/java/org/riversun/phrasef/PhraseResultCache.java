@@ -0,0 +1,258 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+
+/**
+ * 検索結果を保持する、大きさに上限のあるキャッシュ
+ * 
+ * ImmutablePhraseFinder.Builder#setResultCacheで指定すると、
+ * 同じテキストを同じPhraseSetで検索したときに、テキストを走査せずに前回の検出位置を使う。<br>
+ * キーはテキストの内容（SHA-256のダイジェストと長さ）とPhraseSetの同一性からなる。
+ * 保持するのはキーと検出位置（{@link PhrasefCompactResult}）だけで、テキストやヒントは保持しない。
+ * １件あたりの大きさは、ダイジェストとヒット数に比例する検出位置の配列の分だけになる。<br>
+ * ヒントを含むPhrasefResultSetは、呼び出しごとに検出位置から組み立てるので、呼び出し元の間で共有されない。
+ * ヒントの設定が違うImmutablePhraseFinderどうしでも共有できる。<br>
+ * 上限を超えた場合は、最も長く使われていない検索結果から捨てる（LRU）。<br>
+ * 複数のスレッドから同時に利用できる。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseResultCache {
+
+  private final int mMaximumSize;
+
+  // アクセス順に並ぶLinkedHashMap（先頭が最も長く使われていないもの）
+  private final LinkedHashMap<Key, PhrasefCompactResult> mEntries;
+
+  private final LongAdder mHitCount = new LongAdder();
+  private final LongAdder mMissCount = new LongAdder();
+  private final LongAdder mEvictionCount = new LongAdder();
+
+  /**
+   * @param maximumSize
+   *          保持する検索結果の数の上限
+   */
+  public PhraseResultCache(final int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("maximumSize must be positive. maximumSize=" + maximumSize);
+    }
+    mMaximumSize = maximumSize;
+    mEntries = new LinkedHashMap<Key, PhrasefCompactResult>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Key, PhrasefCompactResult> eldest) {
+        if (size() > mMaximumSize) {
+          mEvictionCount.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * キャッシュした検出位置を返す（無い場合はnull）
+   * 
+   * @param key
+   * @return
+   */
+  PhrasefCompactResult get(Key key) {
+    final PhrasefCompactResult compactResult;
+    synchronized (mEntries) {
+      compactResult = mEntries.get(key);
+    }
+    if (compactResult != null) {
+      mHitCount.increment();
+    } else {
+      mMissCount.increment();
+    }
+    return compactResult;
+  }
+
+  /**
+   * 検出位置をキャッシュする
+   * 
+   * @param key
+   * @param compactResult
+   */
+  void put(Key key, PhrasefCompactResult compactResult) {
+    synchronized (mEntries) {
+      mEntries.put(key, compactResult);
+    }
+  }
+
+  /**
+   * キャッシュした検索結果をすべて捨てる（統計値はそのまま）
+   */
+  public void clear() {
+    synchronized (mEntries) {
+      mEntries.clear();
+    }
+  }
+
+  /**
+   * キャッシュしている検索結果の数を返す
+   * 
+   * @return
+   */
+  public int size() {
+    synchronized (mEntries) {
+      return mEntries.size();
+    }
+  }
+
+  /**
+   * 保持する検索結果の数の上限を返す
+   * 
+   * @return
+   */
+  public int getMaximumSize() {
+    return mMaximumSize;
+  }
+
+  /**
+   * キャッシュした検索結果を返した回数を返す
+   * 
+   * @return
+   */
+  public long getHitCount() {
+    return mHitCount.sum();
+  }
+
+  /**
+   * キャッシュに検索結果が無かった回数を返す
+   * 
+   * @return
+   */
+  public long getMissCount() {
+    return mMissCount.sum();
+  }
+
+  /**
+   * 上限を超えたために捨てた検索結果の数を返す
+   * 
+   * @return
+   */
+  public long getEvictionCount() {
+    return mEvictionCount.sum();
+  }
+
+  /**
+   * キャッシュした検索結果を返した割合を返す（まだ使われていない場合は0）
+   * 
+   * @return
+   */
+  public double getHitRate() {
+    final long hitCount = getHitCount();
+    final long requestCount = hitCount + getMissCount();
+    return requestCount == 0 ? 0 : (double) hitCount / requestCount;
+  }
+
+  @Override
+  public String toString() {
+    return "PhraseResultCache [size=" + size() + ", maximumSize=" + mMaximumSize + ", hitCount=" + getHitCount() + ", missCount=" + getMissCount()
+        + ", evictionCount=" + getEvictionCount() + "]";
+  }
+
+  /**
+   * キャッシュのキー
+   * 
+   * テキストはダイジェストと長さだけを保持する
+   */
+  static final class Key {
+
+    // ダイジェストを求めるときに、一度に変換する文字数
+    private static final int DIGEST_CHUNK_SIZE = 4096;
+
+    private final int mTextLength;
+    private final byte[] mTextDigest;
+    private final PhraseSet mPhraseSet;
+    private final int mHashCode;
+
+    Key(String srcText, PhraseSet phraseSet) {
+      mTextLength = srcText.length();
+      mTextDigest = digestOf(srcText);
+      mPhraseSet = phraseSet;
+      mHashCode = Arrays.hashCode(mTextDigest) * 31 + System.identityHashCode(phraseSet);
+    }
+
+    /**
+     * テキストのUTF-16の文字列からSHA-256のダイジェストを求める
+     * 
+     * @param srcText
+     * @return
+     */
+    private static byte[] digestOf(String srcText) {
+      final MessageDigest md;
+      try {
+        md = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        // - SHA-256はすべてのJava実行環境で使える
+        throw new IllegalStateException(e);
+      }
+      final int length = srcText.length();
+      final byte[] buf = new byte[Math.min(length, DIGEST_CHUNK_SIZE) * 2];
+      for (int offset = 0; offset < length; offset += DIGEST_CHUNK_SIZE) {
+        final int numOfChars = Math.min(DIGEST_CHUNK_SIZE, length - offset);
+        for (int i = 0; i < numOfChars; i++) {
+          final char c = srcText.charAt(offset + i);
+          buf[i * 2] = (byte) (c >> 8);
+          buf[i * 2 + 1] = (byte) c;
+        }
+        md.update(buf, 0, numOfChars * 2);
+      }
+      return md.digest();
+    }
+
+    @Override
+    public int hashCode() {
+      return mHashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return mHashCode == other.mHashCode
+          && mPhraseSet == other.mPhraseSet
+          && mTextLength == other.mTextLength
+          && Arrays.equals(mTextDigest, other.mTextDigest);
+    }
+  }
+}
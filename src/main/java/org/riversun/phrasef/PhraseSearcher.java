@@ -0,0 +1,282 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.util.Arrays;
+
+/**
+ * テキストから１つのフレーズの出現位置を探す
+ * 
+ * フレーズごとに{@link Strategy}で生成する。findPhraseは独立しているか否かを判定する前の候補を、
+ * このクラスで順に探す。生成後は不変なので、複数のスレッドから同時に利用できる。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public abstract class PhraseSearcher {
+
+  /**
+   * String#indexOfで探す
+   */
+  public static final Strategy INDEX_OF = new Strategy() {
+    @Override
+    public PhraseSearcher compile(String phrase) {
+      return new IndexOfSearcher(phrase);
+    }
+  };
+
+  /**
+   * Boyer-Moore-Horspool法で探す
+   */
+  public static final Strategy HORSPOOL = new Strategy() {
+    @Override
+    public PhraseSearcher compile(String phrase) {
+      return new HorspoolSearcher(phrase);
+    }
+  };
+
+  /**
+   * フレーズの長さと文字の種類から、速い方の探し方を選ぶ（デフォルト）
+   */
+  public static final Strategy AUTO = new Strategy() {
+    @Override
+    public PhraseSearcher compile(String phrase) {
+      if (isHorspoolSuitable(phrase)) {
+        return new HorspoolSearcher(phrase);
+      }
+      return new IndexOfSearcher(phrase);
+    }
+  };
+
+  // Horspool法を選ぶフレーズの最小の長さ
+  static final int HORSPOOL_MIN_PHRASE_LENGTH = 16;
+
+  // すべてLatin-1の文字からなるフレーズで、Horspool法を選ぶ最小の長さ
+  // （Latin-1のテキストではString#indexOfがSIMD命令で処理されるので、長いフレーズでないと速くならない）
+  static final int HORSPOOL_MIN_LATIN1_PHRASE_LENGTH = 64;
+
+  // Horspool法を選ぶフレーズの、最小の文字の種類数（少ないとずらす量が小さくなる）
+  static final int HORSPOOL_MIN_DISTINCT_CHARS = 4;
+
+  final String mPhrase;
+
+  PhraseSearcher(String phrase) {
+    mPhrase = phrase;
+  }
+
+  /**
+   * 探すフレーズを返す
+   * 
+   * @return
+   */
+  public String getPhrase() {
+    return mPhrase;
+  }
+
+  /**
+   * fromIndex以降で最初にフレーズが出現する位置を返す
+   * 
+   * String#indexOf(String, int)と同じ結果になる
+   * 
+   * @param text
+   * @param fromIndex
+   * @return 出現位置（無い場合は-1）
+   */
+  public abstract int indexOf(String text, int fromIndex);
+
+  /**
+   * 全角・半角、大文字・小文字の違いを無視して探すPhraseSearcherを生成する
+   * 
+   * テキストの変換したコピーは作らず、１文字ずつ変換して比較する
+   * 
+   * @param phrase
+   * @return
+   */
+  static PhraseSearcher folding(String phrase) {
+    return new FoldingSearcher(phrase);
+  }
+
+  /**
+   * Horspool法の方が速いと見込まれるフレーズか否かを判定する
+   * 
+   * 短いフレーズではずらす量が小さく、String#indexOf（JVMの組み込み処理）の方が速い
+   * 
+   * @param phrase
+   * @return
+   */
+  static boolean isHorspoolSuitable(String phrase) {
+    if (phrase.length() < HORSPOOL_MIN_PHRASE_LENGTH) {
+      return false;
+    }
+    if (phrase.length() < HORSPOOL_MIN_LATIN1_PHRASE_LENGTH && isLatin1(phrase)) {
+      return false;
+    }
+    int numOfDistinctChars = 0;
+    final char[] seen = new char[HORSPOOL_MIN_DISTINCT_CHARS];
+    for (int i = 0; i < phrase.length() && numOfDistinctChars < HORSPOOL_MIN_DISTINCT_CHARS; i++) {
+      final char c = phrase.charAt(i);
+      boolean found = false;
+      for (int j = 0; j < numOfDistinctChars; j++) {
+        if (seen[j] == c) {
+          found = true;
+          break;
+        }
+      }
+      if (!found) {
+        seen[numOfDistinctChars++] = c;
+      }
+    }
+    return numOfDistinctChars >= HORSPOOL_MIN_DISTINCT_CHARS;
+  }
+
+  private static boolean isLatin1(String phrase) {
+    for (int i = 0; i < phrase.length(); i++) {
+      if (phrase.charAt(i) > 0xFF) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * フレーズごとにPhraseSearcherを生成する
+   */
+  public interface Strategy {
+    public PhraseSearcher compile(String phrase);
+  }
+
+  /**
+   * String#indexOfで探す
+   */
+  private static final class IndexOfSearcher extends PhraseSearcher {
+
+    IndexOfSearcher(String phrase) {
+      super(phrase);
+    }
+
+    @Override
+    public int indexOf(String text, int fromIndex) {
+      return text.indexOf(mPhrase, fromIndex);
+    }
+  }
+
+  /**
+   * 全角・半角、大文字・小文字の違いを無視して探す
+   */
+  private static final class FoldingSearcher extends PhraseSearcher {
+
+    // 変換したフレーズ
+    private final char[] mFoldedChars;
+
+    FoldingSearcher(String phrase) {
+      super(phrase);
+      mFoldedChars = CharFolding.fold(phrase).toCharArray();
+    }
+
+    @Override
+    public int indexOf(String text, int fromIndex) {
+
+      final char[] p = mFoldedChars;
+      final int m = p.length;
+      final int n = text.length();
+
+      int i = Math.max(fromIndex, 0);
+      if (m == 0) {
+        return Math.min(i, n);
+      }
+
+      final char firstChar = p[0];
+
+      for (; i <= n - m; i++) {
+        if (CharFolding.fold(text.charAt(i)) != firstChar) {
+          continue;
+        }
+        int j = 1;
+        while (j < m && CharFolding.fold(text.charAt(i + j)) == p[j]) {
+          j++;
+        }
+        if (j == m) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Boyer-Moore-Horspool法で探す
+   * 
+   * ずらす量の表は文字の下位8ビットで引く。同じ下位8ビットを持つ文字どうしでは小さい方のずらす量を使うので、
+   * 見落としは起きない。
+   */
+  static final class HorspoolSearcher extends PhraseSearcher {
+
+    private static final int TABLE_SIZE = 256;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    private final char[] mPhraseChars;
+
+    // 比較範囲の末尾の文字から求める、次に比較する位置までのずらす量
+    private final int[] mShifts = new int[TABLE_SIZE];
+
+    HorspoolSearcher(String phrase) {
+      super(phrase);
+      mPhraseChars = phrase.toCharArray();
+      final int m = mPhraseChars.length;
+      Arrays.fill(mShifts, Math.max(m, 1));
+      for (int i = 0; i < m - 1; i++) {
+        mShifts[mPhraseChars[i] & TABLE_MASK] = m - 1 - i;
+      }
+    }
+
+    @Override
+    public int indexOf(String text, int fromIndex) {
+
+      final char[] p = mPhraseChars;
+      final int m = p.length;
+      final int n = text.length();
+
+      int i = Math.max(fromIndex, 0);
+      if (m == 0) {
+        return Math.min(i, n);
+      }
+
+      final int last = m - 1;
+      final char lastChar = p[last];
+
+      while (i <= n - m) {
+        final char c = text.charAt(i + last);
+        if (c == lastChar) {
+          int j = last - 1;
+          while (j >= 0 && text.charAt(i + j) == p[j]) {
+            j--;
+          }
+          if (j < 0) {
+            return i;
+          }
+        }
+        i += mShifts[c & TABLE_MASK];
+      }
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,686 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.riversun.phrasef.PhraseFinder.MatchMode;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+
+/**
+ * 検索対象のフレーズ群をコンパイルしたもの
+ * 
+ * フレーズごとの分析モードと境界判定ルール、すべてのフレーズを１回の走査で検出するための
+ * オートマトンを事前に計算して保持する。<br>
+ * 生成後は不変なので、複数のスレッドから同時に利用できる。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseSet {
+
+  // フレーズ（重複を除き、最初に出現した順）
+  private final List<String> mPhrases;
+
+  // フレーズからフレーズIDへのマップ
+  private final Map<String, Integer> mPhraseIds;
+
+  // フレーズごとの分析モード
+  private final PhraseAnalysisMode[] mAnalysisModes;
+
+  // フレーズごとの、従属とみなす文字種別（境界判定ルール）
+  private final int[] mDependentCharClasses;
+
+  // すべてのフレーズを検出するオートマトン
+  private final PhraseAutomaton mAutomaton;
+
+  // もっとも長いフレーズの長さ
+  private final int mMaxPhraseLength;
+
+  // 文字の比較方法
+  private final MatchMode mMatchMode;
+
+  // 全角・半角、大文字・小文字の違いを無視して比較するか否か
+  private final boolean mFolding;
+
+  // UTF-8のバイト列を検索するためのオートマトン（必要になったときに構築する）
+  private volatile Utf8Automaton mUtf8Automaton;
+
+  private PhraseSet(List<String> phrases, MatchMode matchMode, BoundaryPolicy boundaryPolicy) {
+    this(phrases, matchMode, detectAnalysisModes(foldIfNeeded(phrases, matchMode)), boundaryPolicy, new PhraseAutomaton(foldIfNeeded(phrases, matchMode)));
+  }
+
+  private PhraseSet(List<String> phrases, MatchMode matchMode, PhraseAnalysisMode[] analysisModes, BoundaryPolicy boundaryPolicy, PhraseAutomaton automaton) {
+    this(phrases, matchMode, analysisModes, resolveDependentCharClasses(phrases, analysisModes, boundaryPolicy), automaton);
+  }
+
+  private PhraseSet(List<String> phrases, MatchMode matchMode, PhraseAnalysisMode[] analysisModes, int[] dependentCharClasses, PhraseAutomaton automaton) {
+
+    final int numOfPhrases = phrases.size();
+
+    mPhrases = Collections.unmodifiableList(phrases);
+    mPhraseIds = new HashMap<String, Integer>();
+    mAnalysisModes = analysisModes;
+    mDependentCharClasses = dependentCharClasses;
+    mMatchMode = matchMode;
+    mFolding = matchMode == MatchMode.FOLD_WIDTH_AND_CASE;
+
+    int maxPhraseLength = 0;
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      final String phrase = phrases.get(phraseId);
+      mPhraseIds.put(mFolding ? CharFolding.fold(phrase) : phrase, phraseId);
+      maxPhraseLength = Math.max(maxPhraseLength, phrase.length());
+    }
+    mMaxPhraseLength = maxPhraseLength;
+
+    mAutomaton = automaton;
+  }
+
+  private static List<String> foldIfNeeded(List<String> phrases, MatchMode matchMode) {
+    if (matchMode != MatchMode.FOLD_WIDTH_AND_CASE) {
+      return phrases;
+    }
+    final List<String> foldedPhrases = new ArrayList<String>(phrases.size());
+    for (String phrase : phrases) {
+      foldedPhrases.add(CharFolding.fold(phrase));
+    }
+    return foldedPhrases;
+  }
+
+  private static int[] resolveDependentCharClasses(List<String> phrases, PhraseAnalysisMode[] analysisModes, BoundaryPolicy boundaryPolicy) {
+    final int[] dependentCharClasses = new int[analysisModes.length];
+    for (int phraseId = 0; phraseId < dependentCharClasses.length; phraseId++) {
+      dependentCharClasses[phraseId] = boundaryPolicy.getDependentCharClass(phrases.get(phraseId), analysisModes[phraseId]);
+    }
+    return dependentCharClasses;
+  }
+
+  private static PhraseAnalysisMode[] detectAnalysisModes(List<String> phrases) {
+    final PhraseAnalysisMode[] analysisModes = new PhraseAnalysisMode[phrases.size()];
+    for (int phraseId = 0; phraseId < analysisModes.length; phraseId++) {
+      analysisModes[phraseId] = PhraseFinder.detectAnalysisMode(phrases.get(phraseId));
+    }
+    return analysisModes;
+  }
+
+  /**
+   * スナップショットから読み込んだフレーズ、分析モード、従属とみなす文字種別、オートマトンでPhraseSetを生成する
+   * 
+   * @param phrases
+   *          重複のないフレーズ
+   * @param matchMode
+   * @param analysisModes
+   * @param dependentCharClasses
+   * @param automaton
+   * @return
+   */
+  static PhraseSet restore(List<String> phrases, MatchMode matchMode, PhraseAnalysisMode[] analysisModes, int[] dependentCharClasses, PhraseAutomaton automaton) {
+    return new PhraseSet(phrases, matchMode, analysisModes, dependentCharClasses, automaton);
+  }
+
+  /**
+   * フレーズのリストをコンパイルする
+   * 
+   * 同じフレーズが複数含まれている場合は１つにまとめられる
+   * 
+   * @param phrases
+   * @return
+   */
+  public static PhraseSet compile(Collection<String> phrases) {
+    return compile(phrases, MatchMode.EXACT);
+  }
+
+  /**
+   * 文字の比較方法を指定して、フレーズのリストをコンパイルする
+   * 
+   * MatchMode.FOLD_WIDTH_AND_CASEの場合は、全角・半角、大文字・小文字の違いを無視して比較する。
+   * 分析モードは変換後のフレーズで判定し、前後の文字も変換後の文字種別で判定する。
+   * 変換すると同じになるフレーズは、最初に出現したものに１つにまとめられる。
+   * 
+   * @param phrases
+   * @param matchMode
+   * @return
+   */
+  public static PhraseSet compile(Collection<String> phrases, MatchMode matchMode) {
+    return compile(phrases, matchMode, BoundaryPolicy.DEFAULT);
+  }
+
+  /**
+   * 文字の比較方法と境界判定ルールを指定して、フレーズのリストをコンパイルする
+   * 
+   * 境界判定ルールは、コンパイル時にフレーズごとに一度だけ解決される
+   * 
+   * @param phrases
+   * @param matchMode
+   * @param boundaryPolicy
+   * @return
+   */
+  public static PhraseSet compile(Collection<String> phrases, MatchMode matchMode, BoundaryPolicy boundaryPolicy) {
+    if (matchMode == null) {
+      throw new NullPointerException("matchMode must not be null");
+    }
+    if (boundaryPolicy == null) {
+      throw new NullPointerException("boundaryPolicy must not be null");
+    }
+    final boolean folding = matchMode == MatchMode.FOLD_WIDTH_AND_CASE;
+    final Map<String, String> uniquePhrases = new LinkedHashMap<String, String>();
+    for (String phrase : phrases) {
+      if (phrase == null) {
+        throw new NullPointerException("phrase must not be null");
+      }
+      final String key = folding ? CharFolding.fold(phrase) : phrase;
+      if (!uniquePhrases.containsKey(key)) {
+        uniquePhrases.put(key, phrase);
+      }
+    }
+    return new PhraseSet(new ArrayList<String>(uniquePhrases.values()), matchMode, boundaryPolicy);
+  }
+
+  /**
+   * コンパイル済みのフレーズ群をスナップショットとしてファイルに書き込む
+   * 
+   * フレーズ、分析モード、境界判定ルールを解決した文字種別、オートマトンをそのままバイナリ形式で書き込む。
+   * {@link #loadSnapshot(Path)}で読み込むと、フレーズの分析やオートマトンの構築をせずに復元できる。<br>
+   * 一時ファイルに書き込んでから置き換えるので、読み込み中のスナップショットが壊れることはない。
+   * 
+   * @param file
+   * @throws IOException
+   */
+  public void writeSnapshot(Path file) throws IOException {
+    PhraseSetSnapshot.write(PhraseSet.this, file);
+  }
+
+  /**
+   * スナップショットのファイルを読み込む
+   * 
+   * ファイルはメモリマップして読み込む。形式のバージョンが異なる場合や、チェックサムが一致しない場合はIOExceptionとなる。
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   */
+  public static PhraseSet loadSnapshot(Path file) throws IOException {
+    return PhraseSetSnapshot.read(file);
+  }
+
+  /**
+   * フレーズの数を返す
+   * 
+   * @return
+   */
+  public int size() {
+    return mPhrases.size();
+  }
+
+  /**
+   * フレーズのリストを返す（リスト内のインデックスがフレーズIDとなる）
+   * 
+   * @return
+   */
+  public List<String> getPhrases() {
+    return mPhrases;
+  }
+
+  /**
+   * フレーズIDに対応するフレーズを返す
+   * 
+   * @param phraseId
+   * @return
+   */
+  public String getPhrase(int phraseId) {
+    return mPhrases.get(phraseId);
+  }
+
+  /**
+   * フレーズに対応するフレーズIDを返す（含まれていない場合は-1）
+   * 
+   * MatchMode.FOLD_WIDTH_AND_CASEの場合は、変換すると同じになるフレーズのIDを返す
+   * 
+   * @param phrase
+   * @return
+   */
+  public int getPhraseId(String phrase) {
+    final Integer phraseId = mPhraseIds.get(mFolding ? CharFolding.fold(phrase) : phrase);
+    return phraseId != null ? phraseId : -1;
+  }
+
+  /**
+   * 文字の比較方法を返す
+   * 
+   * @return
+   */
+  public MatchMode getMatchMode() {
+    return mMatchMode;
+  }
+
+  /**
+   * 全角・半角、大文字・小文字の違いを無視して比較するか否か
+   * 
+   * @return
+   */
+  boolean isFolding() {
+    return mFolding;
+  }
+
+  /**
+   * フレーズIDに対応する分析モードを返す
+   * 
+   * @param phraseId
+   * @return
+   */
+  public PhraseAnalysisMode getAnalysisMode(int phraseId) {
+    return mAnalysisModes[phraseId];
+  }
+
+  /**
+   * フレーズIDに対応する、従属とみなす文字種別（境界判定ルール）を返す
+   * 
+   * @param phraseId
+   * @return
+   */
+  int getDependentCharClass(int phraseId) {
+    return mDependentCharClasses[phraseId];
+  }
+
+  /**
+   * すべてのフレーズを検出するオートマトンを返す
+   * 
+   * @return
+   */
+  PhraseAutomaton getAutomaton() {
+    return mAutomaton;
+  }
+
+  /**
+   * UTF-8にエンコードしたフレーズを検出するオートマトンを返す
+   * 
+   * 状態遷移は各バイトを0～255の文字とみなして行う
+   * 
+   * @return
+   */
+  Utf8Automaton getUtf8Automaton() {
+    Utf8Automaton utf8Automaton = mUtf8Automaton;
+    if (utf8Automaton == null) {
+      // 複数のスレッドで同時に構築されても結果は同じなので、排他はしない
+      utf8Automaton = new Utf8Automaton(mPhrases);
+      mUtf8Automaton = utf8Automaton;
+    }
+    return utf8Automaton;
+  }
+
+  /**
+   * UTF-8にエンコードしたフレーズを検出するオートマトン
+   */
+  static final class Utf8Automaton {
+
+    final PhraseAutomaton automaton;
+
+    // フレーズごとのUTF-8でのバイト数
+    final int[] byteLengths;
+
+    // もっとも長いフレーズのUTF-8でのバイト数
+    final int maxByteLength;
+
+    private Utf8Automaton(List<String> phrases) {
+      final List<String> bytePhrases = new ArrayList<String>(phrases.size());
+      byteLengths = new int[phrases.size()];
+      int max = 0;
+      for (int phraseId = 0; phraseId < phrases.size(); phraseId++) {
+        final byte[] bytes = phrases.get(phraseId).getBytes(StandardCharsets.UTF_8);
+        // バイトをそのまま0～255の文字にする
+        bytePhrases.add(new String(bytes, StandardCharsets.ISO_8859_1));
+        byteLengths[phraseId] = bytes.length;
+        max = Math.max(max, bytes.length);
+      }
+      maxByteLength = max;
+      automaton = new PhraseAutomaton(bytePhrases);
+    }
+  }
+
+  /**
+   * もっとも長いフレーズの長さを返す
+   * 
+   * @return
+   */
+  public int getMaxPhraseLength() {
+    return mMaxPhraseLength;
+  }
+
+  /**
+   * テキストを１回走査し、独立したフレーズの出現位置を終了位置の順に通知する
+   * 
+   * 同じフレーズの候補どうしは重ならないように、先に見つかったものを優先する（findPhraseと同じ）
+   * 
+   * @param srcText
+   * @param handler
+   */
+  void scan(String srcText, HitHandler handler) {
+    scan(srcText, handler, null);
+  }
+
+  /**
+   * テキストを１回走査し、独立したフレーズの出現位置を終了位置の順に通知する
+   * 
+   * numOfCandidatesを指定した場合は、フレーズIDごとに前後の文字による判定の前の候補の数を数える
+   * 
+   * @param srcText
+   * @param handler
+   * @param numOfCandidates
+   *          候補の数を数える配列（数えない場合はnull）
+   */
+  void scan(String srcText, final HitHandler handler, final int[] numOfCandidates) {
+    new CandidateScanner(srcText, 0, srcText.length(), srcText.length(), true).scan(new ScanHandler() {
+      @Override
+      public boolean onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent) {
+        if (numOfCandidates != null) {
+          numOfCandidates[phraseId]++;
+        }
+        if (isIndependent) {
+          handler.onHit(phraseId, startIndex, endIndex);
+        }
+        return true;
+      }
+    });
+  }
+
+  /**
+   * テキストを走査し、独立したフレーズの数を数える
+   * 
+   * 数がlimitに達した時点で走査を打ち切る。
+   * 数える対象はscanで通知されるものと同じになる。
+   * 
+   * @param srcText
+   * @param limit
+   * @return 独立したフレーズの数（limitを超えない）
+   */
+  int count(String srcText, final int limit) {
+    final int[] numOfHits = new int[1];
+    new CandidateScanner(srcText, 0, srcText.length(), srcText.length(), true).scan(new ScanHandler() {
+      @Override
+      public boolean onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent) {
+        if (isIndependent) {
+          numOfHits[0]++;
+        }
+        return numOfHits[0] < limit;
+      }
+    });
+    return numOfHits[0];
+  }
+
+  /**
+   * テキストの一部を走査し、開始位置が[fromIndex, toIndex)にあるすべての候補を終了位置の順に通知する
+   * 
+   * 同じフレーズの候補どうしが重なっていてもすべて通知する。
+   * 前後の文字はテキスト全体から判定するので、テキストを分割して並列に走査できる。
+   * 
+   * @param srcText
+   * @param fromIndex
+   * @param toIndex
+   * @param handler
+   */
+  void scanCandidates(String srcText, int fromIndex, int toIndex, final CandidateHandler handler) {
+
+    // 開始位置がtoIndexより前にある候補は、toIndex+(もっとも長いフレーズの長さ-1)までに終わる
+    final int scanEndIndex = (int) Math.min(srcText.length(), (long) toIndex + mMaxPhraseLength - 1);
+
+    new CandidateScanner(srcText, fromIndex, toIndex, scanEndIndex, false).scan(new ScanHandler() {
+      @Override
+      public boolean onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent) {
+        handler.onCandidate(phraseId, startIndex, endIndex, isIndependent);
+        return true;
+      }
+    });
+  }
+
+  /**
+   * テキスト中の[startIndex,endIndex)にあるフレーズが、前後の文字に対して独立しているか否かを判定する
+   * 
+   * @param srcText
+   * @param startIndex
+   * @param endIndex
+   * @param phraseId
+   * @return
+   */
+  private boolean isIndependentAt(String srcText, int startIndex, int endIndex, int phraseId) {
+    if (mFolding) {
+      return PhraseFinder.isIndependentAtFolded(srcText, startIndex, endIndex, mDependentCharClasses[phraseId]);
+    }
+    return PhraseFinder.isIndependentAt(srcText, startIndex, endIndex, mDependentCharClasses[phraseId]);
+  }
+
+  /**
+   * オートマトンでテキストを走査し、候補を終了位置の順に通知する
+   * 
+   * scan、count、scanCandidates、HitCursorは、すべてこの走査を使う
+   * （文字の比較方法や前後の文字による判定を変える場合は、ここだけを変えればよい）。<br>
+   * ScanHandlerがfalseを返すと走査を打ち切り、次にscanを呼ぶと続きから走査する。
+   */
+  private final class CandidateScanner {
+
+    private final String mSrcText;
+
+    // 開始位置がこれより前にある候補だけを通知する
+    private final int mToIndex;
+
+    // 読む文字の終わりの位置
+    private final int mScanEndIndex;
+
+    // フレーズごとに、直前に検出した候補の終了位置（nullの場合は、同じフレーズの候補どうしが重なっていてもすべて通知する）
+    private final int[] mLastEndIndexes;
+
+    private int mState = PhraseAutomaton.ROOT;
+
+    // 次に読む文字の位置
+    private int mIndex;
+
+    // 直前に読んだ文字の位置で、まだ調べていない出力を持つ状態
+    private int mMatch = PhraseAutomaton.NO_OUTPUT;
+
+    /**
+     * @param srcText
+     * @param fromIndex
+     *          読みはじめる位置
+     * @param toIndex
+     *          開始位置がこれより前にある候補だけを通知する
+     * @param scanEndIndex
+     *          読む文字の終わりの位置
+     * @param skipOverlaps
+     *          同じフレーズの直前の候補と重なる候補を通知しない場合はtrue
+     */
+    CandidateScanner(String srcText, int fromIndex, int toIndex, int scanEndIndex, boolean skipOverlaps) {
+      mSrcText = srcText;
+      mIndex = fromIndex;
+      mToIndex = toIndex;
+      mScanEndIndex = scanEndIndex;
+      mLastEndIndexes = skipOverlaps ? new int[mPhrases.size()] : null;
+    }
+
+    /**
+     * 候補を通知しながら走査する
+     * 
+     * @param handler
+     * @return handlerがfalseを返して打ち切った場合はtrue（テキストの終わりまで走査した場合はfalse）
+     */
+    boolean scan(ScanHandler handler) {
+      final PhraseAutomaton automaton = mAutomaton;
+      final String srcText = mSrcText;
+      final int[] lastEndIndexes = mLastEndIndexes;
+
+      int state = mState;
+      int index = mIndex;
+      int match = mMatch;
+
+      while (true) {
+        while (match != PhraseAutomaton.NO_OUTPUT) {
+          final int phraseId = automaton.phraseIdOf(match);
+          match = automaton.nextMatch(match);
+
+          final int endIndex = index;
+          final int startIndex = endIndex - mPhrases.get(phraseId).length();
+
+          if (startIndex >= mToIndex) {
+            // - 後ろのかたまりが担当する候補の場合
+            continue;
+          }
+          if (lastEndIndexes != null) {
+            if (startIndex < lastEndIndexes[phraseId]) {
+              // - 同じフレーズの直前の候補と重なっている場合
+              continue;
+            }
+            lastEndIndexes[phraseId] = endIndex;
+          }
+
+          if (!handler.onCandidate(phraseId, startIndex, endIndex, isIndependentAt(srcText, startIndex, endIndex, phraseId))) {
+            mState = state;
+            mIndex = index;
+            mMatch = match;
+            return true;
+          }
+        }
+        if (index >= mScanEndIndex) {
+          mState = state;
+          mIndex = index;
+          mMatch = match;
+          return false;
+        }
+        final char c = srcText.charAt(index);
+        state = automaton.nextState(state, mFolding ? CharFolding.fold(c) : c);
+        index++;
+        match = automaton.firstMatch(state);
+      }
+    }
+  }
+
+  /**
+   * CandidateScannerが見つけた候補を受け取る
+   */
+  private interface ScanHandler {
+
+    /**
+     * @param phraseId
+     * @param startIndex
+     * @param endIndex
+     * @param isIndependent
+     *          前後の文字に対して独立しているか否か
+     * @return 走査を続ける場合はtrue
+     */
+    boolean onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent);
+  }
+
+  /**
+   * 独立したフレーズを１つずつ取り出しながら、テキストを少しずつ走査するカーソルを返す
+   * 
+   * @param srcText
+   * @return
+   */
+  HitCursor cursor(String srcText) {
+    return new HitCursor(srcText);
+  }
+
+  /**
+   * テキストを少しずつ走査して、独立したフレーズを１つずつ取り出す
+   * 
+   * 取り出す順番と内容はscanで通知されるものと同じになる
+   */
+  final class HitCursor implements ScanHandler {
+
+    private final CandidateScanner mScanner;
+
+    private int mPhraseId;
+    private int mStartIndex;
+    private int mEndIndex;
+
+    private HitCursor(String srcText) {
+      mScanner = new CandidateScanner(srcText, 0, srcText.length(), srcText.length(), true);
+    }
+
+    /**
+     * 次の独立したフレーズまで走査する
+     * 
+     * @return フレーズID（テキストの終わりまで走査した場合は-1）
+     */
+    int next() {
+      return mScanner.scan(HitCursor.this) ? mPhraseId : -1;
+    }
+
+    @Override
+    public boolean onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent) {
+      if (!isIndependent) {
+        return true;
+      }
+      mPhraseId = phraseId;
+      mStartIndex = startIndex;
+      mEndIndex = endIndex;
+      return false;
+    }
+
+    /**
+     * 直前にnextで見つかったフレーズの開始位置を返す
+     * 
+     * @return
+     */
+    int getStartIndex() {
+      return mStartIndex;
+    }
+
+    /**
+     * 直前にnextで見つかったフレーズの終了位置を返す
+     * 
+     * @return
+     */
+    int getEndIndex() {
+      return mEndIndex;
+    }
+
+    /**
+     * どの位置まで読んだかを返す
+     * 
+     * @return 次に読む文字の位置
+     */
+    int getScannedIndex() {
+      return mScanner.mIndex;
+    }
+  }
+
+  /**
+   * 走査中に見つかった独立したフレーズを受け取る
+   */
+  interface HitHandler {
+    void onHit(int phraseId, int startIndex, int endIndex);
+  }
+
+  /**
+   * 走査中に見つかった候補を受け取る
+   */
+  interface CandidateHandler {
+    void onCandidate(int phraseId, int startIndex, int endIndex, boolean isIndependent);
+  }
+}
@@ -0,0 +1,269 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.riversun.phrasef.PhraseFinder.MatchMode;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+
+/**
+ * PhraseSetのスナップショットの読み書き
+ * 
+ * <pre>
+ * ヘッダ（ビッグエンディアン）
+ *   magic            4バイト "PHFS"
+ *   version          int
+ *   payloadLength    int
+ *   payloadCrc32     int（payloadのCRC32）
+ * payload
+ *   matchMode        byte（MatchModeの順序）
+ *   numOfPhrases     int
+ *   フレーズごとに
+ *     analysisMode   byte（PhraseAnalysisModeの順序）
+ *     dependentCharClass int（従属とみなす文字種別。境界判定ルールを解決したもの）
+ *     length         int
+ *     chars          char * length
+ *   オートマトン（{@link PhraseAutomaton#writeTo(ByteBuffer)}の形式）
+ * </pre>
+ * 
+ * PhraseAnalysisModeやMatchModeの並び、オートマトンの形式を変えた場合はVERSIONを上げること<br>
+ * 境界判定ルール（BoundaryPolicy）は解決済みの文字種別として保存するので、読み込み時にルールを指定する必要はない
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class PhraseSetSnapshot {
+
+  private static final int MAGIC = ('P' << 24) | ('H' << 16) | ('F' << 8) | 'S';
+
+  static final int VERSION = 3;
+
+  private static final int HEADER_SIZE = 16;
+
+  private PhraseSetSnapshot() {
+  }
+
+  /**
+   * スナップショットをファイルに書き込む
+   * 
+   * @param phraseSet
+   * @param file
+   * @throws IOException
+   */
+  static void write(PhraseSet phraseSet, Path file) throws IOException {
+
+    final ByteBuffer buf = toBytes(phraseSet);
+
+    // 一時ファイルに書き込んでから置き換える
+    final Path absFile = file.toAbsolutePath();
+    final Path tmpFile = Files.createTempFile(absFile.getParent(), absFile.getFileName().toString(), ".tmp");
+    try {
+      final FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      try {
+        while (buf.hasRemaining()) {
+          channel.write(buf);
+        }
+        channel.force(true);
+      } finally {
+        channel.close();
+      }
+      try {
+        Files.move(tmpFile, absFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tmpFile, absFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tmpFile);
+    }
+  }
+
+  /**
+   * スナップショットのファイルをメモリマップして読み込む
+   * 
+   * @param file
+   * @return
+   * @throws IOException
+   *           ファイルが読めない場合、スナップショットとして正しくない場合
+   */
+  static PhraseSet read(Path file) throws IOException {
+    final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      final long size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("Snapshot too large: " + file);
+      }
+      final MappedByteBuffer buf = channel.map(MapMode.READ_ONLY, 0, size);
+      return fromBytes(buf);
+    } catch (IOException e) {
+      throw new IOException(e.getMessage() + ": " + file, e);
+    } finally {
+      channel.close();
+    }
+  }
+
+  /**
+   * スナップショットのバイト列を作る
+   * 
+   * @param phraseSet
+   * @return 読み込み位置が先頭のバッファ
+   */
+  static ByteBuffer toBytes(PhraseSet phraseSet) {
+
+    final int numOfPhrases = phraseSet.size();
+    final PhraseAutomaton automaton = phraseSet.getAutomaton();
+
+    long payloadLength = 1 + 4;
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      payloadLength += 1 + 4 + 4 + phraseSet.getPhrase(phraseId).length() * 2L;
+    }
+    payloadLength += automaton.serializedSize();
+    if (HEADER_SIZE + payloadLength > Integer.MAX_VALUE) {
+      throw new IllegalStateException("PhraseSet too large for a snapshot");
+    }
+
+    final ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + (int) payloadLength);
+    buf.position(HEADER_SIZE);
+    buf.put((byte) phraseSet.getMatchMode().ordinal());
+    buf.putInt(numOfPhrases);
+    for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+      final String phrase = phraseSet.getPhrase(phraseId);
+      buf.put((byte) phraseSet.getAnalysisMode(phraseId).ordinal());
+      buf.putInt(phraseSet.getDependentCharClass(phraseId));
+      buf.putInt(phrase.length());
+      for (int i = 0; i < phrase.length(); i++) {
+        buf.putChar(phrase.charAt(i));
+      }
+    }
+    automaton.writeTo(buf);
+
+    final CRC32 crc = new CRC32();
+    crc.update(buf.array(), HEADER_SIZE, (int) payloadLength);
+
+    buf.putInt(0, MAGIC);
+    buf.putInt(4, VERSION);
+    buf.putInt(8, (int) payloadLength);
+    buf.putInt(12, (int) crc.getValue());
+    buf.position(0);
+    return buf;
+  }
+
+  /**
+   * スナップショットのバイト列からPhraseSetを復元する
+   * 
+   * @param buf
+   *          positionからlimitまでを読む
+   * @return
+   * @throws IOException
+   *           スナップショットとして正しくない場合
+   */
+  static PhraseSet fromBytes(ByteBuffer buf) throws IOException {
+
+    final ByteBuffer header = buf.duplicate();
+    if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+      throw new IOException("Not a PhraseSet snapshot");
+    }
+    final int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("Unsupported snapshot version " + version + " (expected " + VERSION + ")");
+    }
+    final int payloadLength = header.getInt();
+    final int expectedCrc = header.getInt();
+    if (payloadLength < 0 || payloadLength != header.remaining()) {
+      throw new IOException("Snapshot is truncated or has trailing data");
+    }
+
+    final ByteBuffer payload = header.slice();
+    final CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+    if ((int) crc.getValue() != expectedCrc) {
+      throw new IOException("Snapshot checksum mismatch");
+    }
+
+    try {
+      final PhraseAnalysisMode[] modes = PhraseAnalysisMode.values();
+
+      final int matchModeOrdinal = payload.get();
+      if (matchModeOrdinal < 0 || matchModeOrdinal >= MatchMode.values().length) {
+        throw new IllegalArgumentException("invalid match mode " + matchModeOrdinal);
+      }
+      final MatchMode matchMode = MatchMode.values()[matchModeOrdinal];
+      final boolean folding = matchMode == MatchMode.FOLD_WIDTH_AND_CASE;
+
+      final int numOfPhrases = payload.getInt();
+      if (numOfPhrases < 0 || numOfPhrases > payload.remaining() / 9) {
+        throw new IllegalArgumentException("invalid number of phrases " + numOfPhrases);
+      }
+
+      final List<String> phrases = new ArrayList<String>(numOfPhrases);
+      final Set<String> uniquePhrases = new HashSet<String>();
+      final PhraseAnalysisMode[] analysisModes = new PhraseAnalysisMode[numOfPhrases];
+      final int[] dependentCharClasses = new int[numOfPhrases];
+      for (int phraseId = 0; phraseId < numOfPhrases; phraseId++) {
+        final int mode = payload.get();
+        final int dependentCharClass = payload.getInt();
+        final int length = payload.getInt();
+        if (mode < 0 || mode >= modes.length || length < 0 || length > payload.remaining() / 2) {
+          throw new IllegalArgumentException("invalid phrase. phraseId=" + phraseId);
+        }
+        final char[] chars = new char[length];
+        payload.asCharBuffer().get(chars);
+        payload.position(payload.position() + length * 2);
+
+        final String phrase = new String(chars);
+        if (!uniquePhrases.add(folding ? CharFolding.fold(phrase) : phrase)) {
+          throw new IllegalArgumentException("duplicate phrase. phraseId=" + phraseId);
+        }
+        phrases.add(phrase);
+        analysisModes[phraseId] = modes[mode];
+        dependentCharClasses[phraseId] = dependentCharClass;
+      }
+
+      final PhraseAutomaton automaton = PhraseAutomaton.readFrom(payload, numOfPhrases);
+      if (payload.hasRemaining()) {
+        throw new IllegalArgumentException("trailing data");
+      }
+
+      return PhraseSet.restore(phrases, matchMode, analysisModes, dependentCharClasses, automaton);
+
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid snapshot: " + e.getMessage(), e);
+    } catch (BufferUnderflowException e) {
+      throw new IOException("Invalid snapshot: unexpected end of data", e);
+    }
+  }
+}
@@ -0,0 +1,239 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+import org.riversun.phrasef.PhraseFinder.PhraseHitListener;
+
+/**
+ * 少しずつ与えられるテキストから、独立したフレーズを検索する
+ * 
+ * テキスト全体をメモリに読み込まずに、ReaderやCharSequenceのかたまりを順に与えて検索する。
+ * 保持するのは直近の（もっとも長いフレーズの長さ＋１）文字と検索途中の候補だけなので、
+ * 使用するメモリはテキストの長さによらず一定となる。<br>
+ * チャンクの境目をまたぐフレーズや前後の文字も正しく判定される。<br>
+ * ヒットしたフレーズは、テキスト先頭からの絶対位置でPhraseHitListenerに通知される。
+ * 
+ * このクラスは状態を持つので、スレッド間で共有しないこと。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class PhraseStreamScanner {
+
+  private static final int READ_BUFFER_SIZE = 8192;
+
+  private final PhraseSet mPhraseSet;
+  private final PhraseAutomaton mAutomaton;
+  private final PhraseHitListener mListener;
+
+  // 直近に読んだ文字（リングバッファ）
+  private final char[] mRecentChars;
+
+  // フレーズごとに、直前に検出した候補の終了位置
+  private final long[] mLastEndIndexes;
+
+  // 次の文字を読むまで独立か否かが決まらない候補
+  private int[] mPendingPhraseIds;
+  private long[] mPendingStartIndexes;
+  private int mNumOfPending = 0;
+
+  private int mState = PhraseAutomaton.ROOT;
+
+  // これまでに読んだ文字数
+  private long mPosition = 0;
+
+  private long mNumOfHits = 0;
+
+  private boolean mFinished = false;
+
+  public PhraseStreamScanner(PhraseSet phraseSet, PhraseHitListener listener) {
+    mPhraseSet = phraseSet;
+    mAutomaton = phraseSet.getAutomaton();
+    mListener = listener;
+    mRecentChars = new char[phraseSet.getMaxPhraseLength() + 1];
+    mLastEndIndexes = new long[phraseSet.size()];
+    mPendingPhraseIds = new int[Math.max(1, Math.min(phraseSet.size(), 16))];
+    mPendingStartIndexes = new long[mPendingPhraseIds.length];
+  }
+
+  /**
+   * Readerから最後まで読み込んで検索する
+   * 
+   * 読み込みが終わると{@link #finish()}を呼ぶ。Readerはcloseしない。
+   * 
+   * @param reader
+   * @return ヒット数
+   * @throws IOException
+   */
+  public long scan(Reader reader) throws IOException {
+    final char[] buf = new char[READ_BUFFER_SIZE];
+    int len;
+    while ((len = reader.read(buf)) >= 0) {
+      feed(buf, 0, len);
+    }
+    finish();
+    return mNumOfHits;
+  }
+
+  /**
+   * テキストの続きを与える
+   * 
+   * @param chunk
+   * @return
+   */
+  public PhraseStreamScanner feed(CharSequence chunk) {
+    for (int i = 0; i < chunk.length(); i++) {
+      feed(chunk.charAt(i));
+    }
+    return PhraseStreamScanner.this;
+  }
+
+  /**
+   * テキストの続きを与える
+   * 
+   * @param chunk
+   * @param offset
+   * @param length
+   * @return
+   */
+  public PhraseStreamScanner feed(char[] chunk, int offset, int length) {
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      feed(chunk[i]);
+    }
+    return PhraseStreamScanner.this;
+  }
+
+  /**
+   * テキストの続きを１文字与える
+   * 
+   * @param c
+   * @return
+   */
+  public PhraseStreamScanner feed(char c) {
+
+    if (mFinished) {
+      throw new IllegalStateException("already finished");
+    }
+
+    if (mPhraseSet.isFolding()) {
+      // 全角・半角、大文字・小文字の違いを無視する場合は、変換した文字で照合と判定をする
+      c = CharFolding.fold(c);
+    }
+
+    // 前の文字で終わっている候補は、この文字が独立していればヒットとなる
+    for (int i = 0; i < mNumOfPending; i++) {
+      final int phraseId = mPendingPhraseIds[i];
+      if (PhraseFinder.isIndependent(c, mPhraseSet.getDependentCharClass(phraseId))) {
+        notifyHit(phraseId, mPendingStartIndexes[i], mPosition);
+      }
+    }
+    mNumOfPending = 0;
+
+    mRecentChars[(int) (mPosition % mRecentChars.length)] = c;
+
+    mState = mAutomaton.nextState(mState, c);
+
+    final long endIndex = mPosition + 1;
+
+    for (int match = mAutomaton.firstMatch(mState); match != PhraseAutomaton.NO_OUTPUT; match = mAutomaton.nextMatch(match)) {
+
+      final int phraseId = mAutomaton.phraseIdOf(match);
+      final long startIndex = endIndex - mPhraseSet.getPhrase(phraseId).length();
+
+      if (startIndex < mLastEndIndexes[phraseId]) {
+        // - 同じフレーズの直前の候補と重なっている場合
+        continue;
+      }
+      mLastEndIndexes[phraseId] = endIndex;
+
+      // 対象キーワードの前にある１文字が独立しているか否か（findPhraseと同じ判定）
+      if (startIndex - 1 > 0) {
+        final char previousOneChar = mRecentChars[(int) ((startIndex - 1) % mRecentChars.length)];
+        if (!PhraseFinder.isIndependent(previousOneChar, mPhraseSet.getDependentCharClass(phraseId))) {
+          continue;
+        }
+      }
+
+      addPending(phraseId, startIndex);
+    }
+
+    mPosition = endIndex;
+
+    return PhraseStreamScanner.this;
+  }
+
+  /**
+   * テキストの終わりを通知する
+   * 
+   * 末尾で終わっている候補はここでヒットとなる
+   * 
+   * @return ヒット数
+   */
+  public long finish() {
+    if (!mFinished) {
+      for (int i = 0; i < mNumOfPending; i++) {
+        notifyHit(mPendingPhraseIds[i], mPendingStartIndexes[i], mPosition);
+      }
+      mNumOfPending = 0;
+      mFinished = true;
+    }
+    return mNumOfHits;
+  }
+
+  /**
+   * これまでに読んだ文字数を返す
+   * 
+   * @return
+   */
+  public long getPosition() {
+    return mPosition;
+  }
+
+  /**
+   * これまでのヒット数を返す
+   * 
+   * @return
+   */
+  public long getNumOfHits() {
+    return mNumOfHits;
+  }
+
+  private void addPending(int phraseId, long startIndex) {
+    if (mNumOfPending == mPendingPhraseIds.length) {
+      mPendingPhraseIds = Arrays.copyOf(mPendingPhraseIds, mNumOfPending * 2);
+      mPendingStartIndexes = Arrays.copyOf(mPendingStartIndexes, mNumOfPending * 2);
+    }
+    mPendingPhraseIds[mNumOfPending] = phraseId;
+    mPendingStartIndexes[mNumOfPending] = startIndex;
+    mNumOfPending++;
+  }
+
+  private void notifyHit(int phraseId, long startIndex, long endIndex) {
+    mNumOfHits++;
+    mListener.onPhraseHit(mPhraseSet.getPhrase(phraseId), phraseId, startIndex, endIndex);
+  }
+}
@@ -22,8 +22,6 @@
  */
 package org.riversun.phrasef;
 
-import java.util.regex.Pattern;
-
 /**
  * 
  * 語句の構成要素を判定する
@@ -43,26 +41,167 @@ import java.util.regex.Pattern;
 
 public class PhraseTypeDetector {
 
-  // 全角カタカナ＋音引きのみで構成される語句を検出する正規表現
-  private static Pattern zenkakuKatakanaPattern = Pattern.compile("^[ァ-ヶー]+$");
+  // 文字種別のビット（１つの文字が複数の文字種別に属することもある）
+
+  // 全角カタカナ＋音引き [ァ-ヶー]
+  public static final int CHAR_CLASS_ZENKAKU_KATAKANA = 1 << 0;
+
+  // 全角ひらがな＋音引き [ぁ-んー]
+  public static final int CHAR_CLASS_ZENKAKU_HIRAGANA = 1 << 1;
+
+  // 全角数字 [０-９]
+  public static final int CHAR_CLASS_ZENKAKU_NUMERIC = 1 << 2;
+
+  // 全角漢字 [一-龥]
+  public static final int CHAR_CLASS_ZENKAKU_KANJI = 1 << 3;
+
+  // 半角英数字 [0-9a-zA-Z\-\_]
+  public static final int CHAR_CLASS_HANKAKU_ALPHA_NUMERIC = 1 << 4;
+
+  // 半角英字 [a-zA-Z\-\_]
+  public static final int CHAR_CLASS_HANKAKU_ALPHABET = 1 << 5;
+
+  // 半角数字 [0-9]
+  public static final int CHAR_CLASS_HANKAKU_NUMERIC = 1 << 6;
+
+  // UTF-16の各コード単位に対する文字種別のビットマスク
+  private static final byte[] CHAR_CLASS_TABLE = new byte[Character.MAX_VALUE + 1];
+
+  static {
+    setCharClass('ァ', 'ヶ', CHAR_CLASS_ZENKAKU_KATAKANA);
+    setCharClass('ー', 'ー', CHAR_CLASS_ZENKAKU_KATAKANA);
 
-  // 全角ひらがな＋音引きのみで構成される語句を検出する正規表現
-  private static Pattern zenkakuHiraganaPattern = Pattern.compile("^[ぁ-んー]+$");
+    setCharClass('ぁ', 'ん', CHAR_CLASS_ZENKAKU_HIRAGANA);
+    setCharClass('ー', 'ー', CHAR_CLASS_ZENKAKU_HIRAGANA);
 
-  // 全角数字のみで構成される語句を検出する正規表現
-  private static Pattern zenkakuNumericPattern = Pattern.compile("^[０-９]+$");
+    setCharClass('０', '９', CHAR_CLASS_ZENKAKU_NUMERIC);
 
-  // 全角漢字のみで構成される語句を検出する正規表現
-  private static Pattern zenkakuKanji = Pattern.compile("^[一-龥]+$");
+    setCharClass('一', '龥', CHAR_CLASS_ZENKAKU_KANJI);
 
-  // 半角英数字のみで構成される語句を検出する正規表現
-  private static Pattern hankakuAlphaNumericPattern = Pattern.compile("^[0-9a-zA-Z\\-\\_]+$");
+    setCharClass('0', '9', CHAR_CLASS_HANKAKU_ALPHA_NUMERIC | CHAR_CLASS_HANKAKU_NUMERIC);
+    setCharClass('a', 'z', CHAR_CLASS_HANKAKU_ALPHA_NUMERIC | CHAR_CLASS_HANKAKU_ALPHABET);
+    setCharClass('A', 'Z', CHAR_CLASS_HANKAKU_ALPHA_NUMERIC | CHAR_CLASS_HANKAKU_ALPHABET);
+    setCharClass('-', '-', CHAR_CLASS_HANKAKU_ALPHA_NUMERIC | CHAR_CLASS_HANKAKU_ALPHABET);
+    setCharClass('_', '_', CHAR_CLASS_HANKAKU_ALPHA_NUMERIC | CHAR_CLASS_HANKAKU_ALPHABET);
+  }
 
-  // 半角英字のみで構成される語句を検出する正規表現
-  private static Pattern hankakuAlphabetPattern = Pattern.compile("^[a-zA-Z\\-\\_]+$");
+  private static void setCharClass(char from, char to, int charClass) {
+    for (int c = from; c <= to; c++) {
+      CHAR_CLASS_TABLE[c] |= charClass;
+    }
+  }
+
+  /**
+   * 文字の文字種別（CHAR_CLASS_*のビットの組み合わせ）を返す
+   * 
+   * @param c
+   * @return
+   */
+  public static int getCharClass(char c) {
+    return CHAR_CLASS_TABLE[c] & 0xFF;
+  }
 
-  // 半角数字のみで構成される語句を検出する正規表現
-  private static Pattern hankakuNumericPattern = Pattern.compile("^[0-9]+$");
+  /**
+   * コードポイントの文字種別（CHAR_CLASS_*のビットの組み合わせ）を返す
+   * 
+   * 補助文字はどの文字種別にも属さないので0を返す
+   * 
+   * @param codePoint
+   * @return
+   */
+  public static int getCodePointClass(int codePoint) {
+    if (codePoint < 0 || codePoint > Character.MAX_VALUE) {
+      return 0;
+    }
+    return CHAR_CLASS_TABLE[codePoint] & 0xFF;
+  }
+
+  /**
+   * 文字列を構成するすべての文字に共通する文字種別を返す（空文字列の場合は0）
+   * 
+   * @param str
+   * @return
+   */
+  public static int getCommonCharClass(String str) {
+    if (str.length() == 0) {
+      return 0;
+    }
+    int commonClass = ~0;
+    for (int i = 0; i < str.length() && commonClass != 0; i++) {
+      commonClass &= CHAR_CLASS_TABLE[str.charAt(i)];
+    }
+    return commonClass & 0xFF;
+  }
+
+  /**
+   * 文字が全角カタカナ（音引きを含む）か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isZenkakuKatakana(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_ZENKAKU_KATAKANA) != 0;
+  }
+
+  /**
+   * 文字が全角ひらがな（音引きを含む）か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isZenkakuHiragana(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_ZENKAKU_HIRAGANA) != 0;
+  }
+
+  /**
+   * 文字が半角英数（"-"と"_"を含む）か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isHankakuAlphaNumeric(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_HANKAKU_ALPHA_NUMERIC) != 0;
+  }
+
+  /**
+   * 文字が半角アルファベット（"-"と"_"を含む）か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isHankakuAlphabet(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_HANKAKU_ALPHABET) != 0;
+  }
+
+  /**
+   * 文字が半角数字か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isHankakuNumeric(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_HANKAKU_NUMERIC) != 0;
+  }
+
+  /**
+   * 文字が全角数字か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isZenkakuNumeric(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_ZENKAKU_NUMERIC) != 0;
+  }
+
+  /**
+   * 文字が全角漢字か否か
+   * 
+   * @param c
+   * @return
+   */
+  public static boolean isZenkakuKanji(char c) {
+    return (CHAR_CLASS_TABLE[c] & CHAR_CLASS_ZENKAKU_KANJI) != 0;
+  }
 
   /**
    * 文字列が全角カタカナのみで構成されているか否か
@@ -71,7 +210,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isZenkakuKatakanaOnly(String str) {
-    return zenkakuKatakanaPattern.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_ZENKAKU_KATAKANA) != 0;
   }
 
   /**
@@ -81,7 +220,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isZenkakuHiraganaOnly(String str) {
-    return zenkakuHiraganaPattern.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_ZENKAKU_HIRAGANA) != 0;
   }
 
   /**
@@ -91,7 +230,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isHankakuAlphaNumericOnly(String str) {
-    return hankakuAlphaNumericPattern.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_HANKAKU_ALPHA_NUMERIC) != 0;
   }
 
   /**
@@ -101,7 +240,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isHankakuAlphabetOnly(String str) {
-    return hankakuAlphabetPattern.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_HANKAKU_ALPHABET) != 0;
   }
 
   /**
@@ -111,7 +250,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isHankakuNumericOnly(String str) {
-    return hankakuNumericPattern.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_HANKAKU_NUMERIC) != 0;
   }
 
   /**
@@ -121,7 +260,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isZenkakuNumericOnly(String str) {
-    return zenkakuNumericPattern.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_ZENKAKU_NUMERIC) != 0;
   }
 
   /**
@@ -131,7 +270,7 @@ public class PhraseTypeDetector {
    * @return
    */
   public static boolean isZenkakuKanjiOnly(String str) {
-    return zenkakuKanji.matcher(str).matches();
+    return (getCommonCharClass(str) & CHAR_CLASS_ZENKAKU_KANJI) != 0;
   }
 
   /**
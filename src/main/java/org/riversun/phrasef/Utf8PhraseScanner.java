@@ -0,0 +1,386 @@
+/* 
+ *  Copyright (c) 2006- Tom Misawa, riversun.org@gmail.com
+ *  
+ *  Permission is hereby granted, free of charge, to any person obtaining a
+ *  copy of this software and associated documentation files (the "Software"),
+ *  to deal in the Software without restriction, including without limitation
+ *  the rights to use, copy, modify, merge, publish, distribute, sublicense,
+ *  and/or sell copies of the Software, and to permit persons to whom the
+ *  Software is furnished to do so, subject to the following conditions:
+ *  
+ *  The above copyright notice and this permission notice shall be included in
+ *  all copies or substantial portions of the Software.
+ *  
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ *  FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER
+ *  DEALINGS IN THE SOFTWARE.
+ *  
+ */
+package org.riversun.phrasef;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.riversun.phrasef.PhraseFinder.Utf8PhraseHitListener;
+import org.riversun.phrasef.PhraseSet.Utf8Automaton;
+
+/**
+ * UTF-8のバイト列から、文字列にデコードせずに独立したフレーズを検索する
+ * 
+ * フレーズはUTF-8にエンコードしたバイト列のまま照合し、前後の文字の判定だけを
+ * 隣接するコードポイントをデコードして行う。<br>
+ * ヒットしたフレーズは、バイト単位の位置と文字（UTF-16のchar）単位の位置の両方で通知される。<br>
+ * 入力は正しいUTF-8であることを前提とする。
+ * 
+ * このクラスは状態を持つので、スレッド間で共有しないこと。
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public final class Utf8PhraseScanner {
+
+  // ファイルを一度にマップする大きさ
+  private static final long MAP_WINDOW_SIZE = 256L * 1024 * 1024;
+
+  // デコードできなかった場合のコードポイント
+  private static final int REPLACEMENT_CODE_POINT = 0xFFFD;
+
+  private final PhraseSet mPhraseSet;
+  private final PhraseAutomaton mAutomaton;
+  private final int[] mByteLengths;
+  private final Utf8PhraseHitListener mListener;
+
+  // 直近に読んだバイト（リングバッファ）
+  private final byte[] mRecentBytes;
+
+  // フレーズごとに、直前に検出した候補の終了位置（バイト単位）
+  private final long[] mLastEndIndexes;
+
+  // 次のコードポイントを読むまで独立か否かが決まらない候補
+  private int[] mPendingPhraseIds;
+  private long[] mPendingByteStartIndexes;
+  private long[] mPendingCharStartIndexes;
+  private long[] mPendingByteEndIndexes;
+  private long[] mPendingCharEndIndexes;
+  private int mNumOfPending = 0;
+
+  // デコード中のコードポイント
+  private int mCodePoint = 0;
+  private int mRemainingBytes = 0;
+
+  private int mState = PhraseAutomaton.ROOT;
+
+  // これまでに読んだバイト数
+  private long mBytePosition = 0;
+
+  // これまでに読んだ文字数（UTF-16のchar単位）
+  private long mCharPosition = 0;
+
+  private long mNumOfHits = 0;
+
+  private boolean mFinished = false;
+
+  public Utf8PhraseScanner(PhraseSet phraseSet, Utf8PhraseHitListener listener) {
+    if (phraseSet.isFolding()) {
+      // 全角と半角ではUTF-8のバイト数が異なり、バイト列のまま照合できない
+      throw new IllegalArgumentException("PhraseSet with MatchMode." + phraseSet.getMatchMode() + " is not supported for UTF-8 scanning");
+    }
+    final Utf8Automaton utf8Automaton = phraseSet.getUtf8Automaton();
+    mPhraseSet = phraseSet;
+    mAutomaton = utf8Automaton.automaton;
+    mByteLengths = utf8Automaton.byteLengths;
+    mListener = listener;
+    // 候補の直前のコードポイント（最大4バイト）までさかのぼれるようにする
+    mRecentBytes = new byte[utf8Automaton.maxByteLength + 4];
+    mLastEndIndexes = new long[phraseSet.size()];
+    mPendingPhraseIds = new int[Math.max(1, Math.min(phraseSet.size(), 16))];
+    mPendingByteStartIndexes = new long[mPendingPhraseIds.length];
+    mPendingCharStartIndexes = new long[mPendingPhraseIds.length];
+    mPendingByteEndIndexes = new long[mPendingPhraseIds.length];
+    mPendingCharEndIndexes = new long[mPendingPhraseIds.length];
+  }
+
+  /**
+   * ファイルをメモリマップして最後まで検索する
+   * 
+   * ファイルはヒープに読み込まず、一定の大きさごとにマップしながら読み進める。
+   * 読み終わると{@link #finish()}を呼ぶ。
+   * 
+   * @param file
+   * @return ヒット数
+   * @throws IOException
+   */
+  public long scan(Path file) throws IOException {
+    final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      final long size = channel.size();
+      for (long position = 0; position < size; position += MAP_WINDOW_SIZE) {
+        final MappedByteBuffer window = channel.map(MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_SIZE, size - position));
+        feed(window);
+      }
+    } finally {
+      channel.close();
+    }
+    return finish();
+  }
+
+  /**
+   * バイト列の続きを与える
+   * 
+   * bufferのpositionからlimitまでを読む。bufferのpositionは変更しない。
+   * 
+   * @param buffer
+   * @return
+   */
+  public Utf8PhraseScanner feed(ByteBuffer buffer) {
+    final int limit = buffer.limit();
+    for (int i = buffer.position(); i < limit; i++) {
+      feed(buffer.get(i));
+    }
+    return Utf8PhraseScanner.this;
+  }
+
+  /**
+   * バイト列の続きを与える
+   * 
+   * @param bytes
+   * @param offset
+   * @param length
+   * @return
+   */
+  public Utf8PhraseScanner feed(byte[] bytes, int offset, int length) {
+    final int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      feed(bytes[i]);
+    }
+    return Utf8PhraseScanner.this;
+  }
+
+  /**
+   * バイト列の続きを１バイト与える
+   * 
+   * @param b
+   * @return
+   */
+  public Utf8PhraseScanner feed(byte b) {
+
+    if (mFinished) {
+      throw new IllegalStateException("already finished");
+    }
+
+    mRecentBytes[(int) (mBytePosition % mRecentBytes.length)] = b;
+
+    // コードポイントのデコード
+    if ((b & 0xC0) != 0x80) {
+      // - 先頭バイトの場合
+      if (mRemainingBytes > 0) {
+        // - 前のコードポイントが途中で終わっていた場合
+        onCodePoint(REPLACEMENT_CODE_POINT);
+      }
+      final int numOfBytes = numOfBytes(b);
+      mCodePoint = leadBits(b, numOfBytes);
+      mRemainingBytes = numOfBytes - 1;
+      mCharPosition += numOfBytes == 4 ? 2 : 1;
+      if (mRemainingBytes == 0) {
+        onCodePoint(mCodePoint);
+      }
+    } else if (mRemainingBytes > 0) {
+      // - 継続バイトの場合
+      mCodePoint = (mCodePoint << 6) | (b & 0x3F);
+      mRemainingBytes--;
+      if (mRemainingBytes == 0) {
+        onCodePoint(mCodePoint);
+      }
+    }
+
+    mState = mAutomaton.nextState(mState, (char) (b & 0xFF));
+
+    final long byteEndIndex = mBytePosition + 1;
+
+    for (int match = mAutomaton.firstMatch(mState); match != PhraseAutomaton.NO_OUTPUT; match = mAutomaton.nextMatch(match)) {
+
+      final int phraseId = mAutomaton.phraseIdOf(match);
+      final long byteStartIndex = byteEndIndex - mByteLengths[phraseId];
+      final long charStartIndex = mCharPosition - mPhraseSet.getPhrase(phraseId).length();
+
+      if (byteStartIndex < mLastEndIndexes[phraseId]) {
+        // - 同じフレーズの直前の候補と重なっている場合
+        continue;
+      }
+      mLastEndIndexes[phraseId] = byteEndIndex;
+
+      // 対象キーワードの前にある１文字が独立しているか否か（findPhraseと同じ判定）
+      if (charStartIndex - 1 > 0) {
+        if (!PhraseFinder.isIndependentCodePoint(previousCodePoint(byteStartIndex), mPhraseSet.getDependentCharClass(phraseId))) {
+          continue;
+        }
+      }
+
+      addPending(phraseId, byteStartIndex, byteEndIndex, charStartIndex, mCharPosition);
+    }
+
+    mBytePosition = byteEndIndex;
+
+    return Utf8PhraseScanner.this;
+  }
+
+  /**
+   * バイト列の終わりを通知する
+   * 
+   * 末尾で終わっている候補はここでヒットとなる
+   * 
+   * @return ヒット数
+   */
+  public long finish() {
+    if (!mFinished) {
+      if (mRemainingBytes > 0) {
+        onCodePoint(REPLACEMENT_CODE_POINT);
+        mRemainingBytes = 0;
+      }
+      for (int i = 0; i < mNumOfPending; i++) {
+        notifyHit(i);
+      }
+      mNumOfPending = 0;
+      mFinished = true;
+    }
+    return mNumOfHits;
+  }
+
+  /**
+   * これまでに読んだバイト数を返す
+   * 
+   * @return
+   */
+  public long getBytePosition() {
+    return mBytePosition;
+  }
+
+  /**
+   * これまでに読んだ文字数（UTF-16のchar単位）を返す
+   * 
+   * @return
+   */
+  public long getCharPosition() {
+    return mCharPosition;
+  }
+
+  /**
+   * これまでのヒット数を返す
+   * 
+   * @return
+   */
+  public long getNumOfHits() {
+    return mNumOfHits;
+  }
+
+  /**
+   * コードポイントを１つ読み終えたときに呼ばれる
+   * 
+   * 直前で終わっている候補は、このコードポイントが独立していればヒットとなる
+   * 
+   * @param codePoint
+   */
+  private void onCodePoint(int codePoint) {
+    for (int i = 0; i < mNumOfPending; i++) {
+      if (PhraseFinder.isIndependentCodePoint(codePoint, mPhraseSet.getDependentCharClass(mPendingPhraseIds[i]))) {
+        notifyHit(i);
+      }
+    }
+    mNumOfPending = 0;
+  }
+
+  /**
+   * 指定したバイト位置の直前にあるコードポイントをデコードする
+   * 
+   * @param byteIndex
+   * @return
+   */
+  private int previousCodePoint(long byteIndex) {
+    long leadIndex = byteIndex - 1;
+    while (leadIndex > 0 && byteIndex - leadIndex < 4 && (recentByte(leadIndex) & 0xC0) == 0x80) {
+      leadIndex--;
+    }
+    final int lead = recentByte(leadIndex);
+    final int numOfBytes = numOfBytes((byte) lead);
+    if (numOfBytes != byteIndex - leadIndex) {
+      return REPLACEMENT_CODE_POINT;
+    }
+    int codePoint = leadBits((byte) lead, numOfBytes);
+    for (long i = leadIndex + 1; i < byteIndex; i++) {
+      codePoint = (codePoint << 6) | (recentByte(i) & 0x3F);
+    }
+    return codePoint;
+  }
+
+  private int recentByte(long byteIndex) {
+    return mRecentBytes[(int) (byteIndex % mRecentBytes.length)] & 0xFF;
+  }
+
+  /**
+   * 先頭バイトから、そのコードポイントのバイト数を求める
+   * 
+   * @param lead
+   * @return
+   */
+  private static int numOfBytes(byte lead) {
+    if ((lead & 0x80) == 0) {
+      return 1;
+    } else if ((lead & 0xE0) == 0xC0) {
+      return 2;
+    } else if ((lead & 0xF0) == 0xE0) {
+      return 3;
+    } else if ((lead & 0xF8) == 0xF0) {
+      return 4;
+    }
+    return 1;
+  }
+
+  /**
+   * 先頭バイトのうち、コードポイントの値となるビットを取り出す
+   * 
+   * @param lead
+   * @param numOfBytes
+   * @return
+   */
+  private static int leadBits(byte lead, int numOfBytes) {
+    if (numOfBytes == 1) {
+      // 先頭バイトとして不正な値はデコードできない
+      return (lead & 0x80) == 0 ? lead : REPLACEMENT_CODE_POINT;
+    }
+    return lead & (0xFF >> (numOfBytes + 1));
+  }
+
+  private void addPending(int phraseId, long byteStartIndex, long byteEndIndex, long charStartIndex, long charEndIndex) {
+    if (mNumOfPending == mPendingPhraseIds.length) {
+      final int newLength = mNumOfPending * 2;
+      mPendingPhraseIds = Arrays.copyOf(mPendingPhraseIds, newLength);
+      mPendingByteStartIndexes = Arrays.copyOf(mPendingByteStartIndexes, newLength);
+      mPendingByteEndIndexes = Arrays.copyOf(mPendingByteEndIndexes, newLength);
+      mPendingCharStartIndexes = Arrays.copyOf(mPendingCharStartIndexes, newLength);
+      mPendingCharEndIndexes = Arrays.copyOf(mPendingCharEndIndexes, newLength);
+    }
+    mPendingPhraseIds[mNumOfPending] = phraseId;
+    mPendingByteStartIndexes[mNumOfPending] = byteStartIndex;
+    mPendingByteEndIndexes[mNumOfPending] = byteEndIndex;
+    mPendingCharStartIndexes[mNumOfPending] = charStartIndex;
+    mPendingCharEndIndexes[mNumOfPending] = charEndIndex;
+    mNumOfPending++;
+  }
+
+  private void notifyHit(int pendingIndex) {
+    final int phraseId = mPendingPhraseIds[pendingIndex];
+    mNumOfHits++;
+    mListener.onPhraseHit(mPhraseSet.getPhrase(phraseId), phraseId,
+        mPendingByteStartIndexes[pendingIndex], mPendingByteEndIndexes[pendingIndex],
+        mPendingCharStartIndexes[pendingIndex], mPendingCharEndIndexes[pendingIndex]);
+  }
+}
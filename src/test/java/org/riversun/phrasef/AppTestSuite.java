@@ -12,6 +12,19 @@ import org.junit.runners.Suite;
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
     TestPhraseFinder.class,// done
+    TestPhraseTypeDetector.class,// done
+    TestPhraseSet.class,// done
+    TestPhraseStreamScanner.class,// done
+    TestUtf8PhraseScanner.class,// done
+    TestImmutablePhraseFinder.class,// done
+    TestPhraseFinderMetrics.class,// done
+    TestPhraseIndex.class,// done
+    TestPhraseSearcher.class,// done
+    TestPhraseResultCache.class,// done
+    TestPhraseHitPublisher.class,// done
+    TestPhraseFinderCli.class,// done
+    TestPhraseEditSession.class,// done
+    TestBoundaryPolicy.class,// done
 
 })
 public class AppTestSuite {
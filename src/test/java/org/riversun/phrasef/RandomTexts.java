@@ -0,0 +1,31 @@
+package org.riversun.phrasef;
+
+import java.util.Random;
+
+/**
+ * Random text generator for tests <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+final class RandomTexts {
+
+  private RandomTexts() {
+  }
+
+  /**
+   * charsの文字をランダムに並べた文字列を返す
+   * 
+   * @param random
+   * @param chars
+   * @param length
+   * @return
+   */
+  static String randomString(Random random, String chars, int length) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      sb.append(chars.charAt(random.nextInt(chars.length())));
+    }
+    return sb.toString();
+  }
+}
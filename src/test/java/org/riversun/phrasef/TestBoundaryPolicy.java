@@ -0,0 +1,111 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.riversun.phrasef.RandomTexts.randomString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.PhrasefResult;
+
+/**
+ * Test for BoundaryPolicy class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestBoundaryPolicy {
+
+  // 漢字とカタカナが混ざったフレーズ（UNKNOWN）を、前後に漢字かカタカナが無ければ独立とみなすルール
+  private static final BoundaryPolicy KANJI_KATAKANA = BoundaryPolicy.DEFAULT.override(PhraseAnalysisMode.UNKNOWN,
+      PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI | PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KATAKANA);
+
+  @Test
+  public void test_default() throws Exception {
+    // テストの期待動作：DEFAULTのルールは分析モードごとの標準の文字種別を返し、検索結果も変わらないこと
+    for (PhraseAnalysisMode mode : PhraseAnalysisMode.values()) {
+      assertEquals(mode.name(), PhraseFinder.dependentCharClassOf(mode), BoundaryPolicy.DEFAULT.getDependentCharClass("", mode));
+    }
+    assertEquals(BoundaryPolicy.DEPENDENT_ON_ALL_CHARS, BoundaryPolicy.DEFAULT.getDependentCharClass("東京タワー", PhraseAnalysisMode.UNKNOWN));
+
+    final String chars = "aZ1-_ アーあ漢０、。 ";
+    final Random random = new Random(1);
+    final PhraseFinder finder = new PhraseFinder();
+    final PhraseFinder defaultFinder = new PhraseFinder().setBoundaryPolicy(BoundaryPolicy.DEFAULT);
+    for (int i = 0; i < 1000; i++) {
+      final String text = randomString(random, chars, random.nextInt(40));
+      final String phrase = randomString(random, chars, 1 + random.nextInt(3));
+      assertEquals(phrase + " in " + text, finder.findPhrase(text, phrase).toString(), defaultFinder.findPhrase(text, phrase).toString());
+    }
+  }
+
+  @Test
+  public void test_override() throws Exception {
+    // テストの期待動作：UNKNOWNのルールを置き換えると、漢字とカタカナが混ざったフレーズも独立していれば検出されること
+    // （"東京タワービル"の"ビ"、"新東京タワー"の"新"は従属とみなされる）
+    final String TEXT = "東京タワーへ行く。東京タワービル、新東京タワー。";
+    final String PHRASE = "東京タワー";
+
+    assertEquals(0, new PhraseFinder().findPhrase(TEXT, PHRASE).numOfHits);
+
+    final PhraseFinder finder = new PhraseFinder().setBoundaryPolicy(KANJI_KATAKANA);
+    final PhrasefResult result = finder.findPhrase(TEXT, PHRASE);
+    assertEquals(PhraseAnalysisMode.UNKNOWN, result.analysisMode);
+    assertEquals(1, result.numOfHits);
+    assertEquals(0, result.posList.get(0).startIndex);
+    assertEquals(5, result.posList.get(0).endIndex);
+    assertEquals("[東京タワー]へ行く。東京タワービル、新東京タワー。", result.hint);
+    assertEquals(1, finder.countPhrase(TEXT, PHRASE));
+    assertEquals(1, finder.findPhrases(TEXT, Arrays.asList(PHRASE, "ビル")).phraseResultMap.get(PHRASE).numOfHits);
+
+    // ほかの分析モードのフレーズは、置き換える前のルールで判定されること
+    assertEquals(new PhraseFinder().findPhrase(TEXT, "タワー").toString(), finder.findPhrase(TEXT, "タワー").toString());
+
+    // コンパイル時にルールが解決され、PhraseSetを使うどの検索でも同じ結果となること
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList(PHRASE), PhraseFinder.MatchMode.EXACT, KANJI_KATAKANA);
+    assertEquals(KANJI_KATAKANA.getDependentCharClass(PHRASE, PhraseAnalysisMode.UNKNOWN), phraseSet.getDependentCharClass(0));
+    assertEquals(0, new PhraseFinder().countPhrases(TEXT, PhraseSet.compile(Arrays.asList(PHRASE))));
+    assertEquals(1, new PhraseFinder().countPhrases(TEXT, phraseSet));
+    assertEquals(1, new PhraseFinder().findPhrasesParallel(TEXT, phraseSet).numOfHits);
+
+    final List<Long> starts = new ArrayList<Long>();
+    new PhraseStreamScanner(phraseSet, new PhraseFinder.PhraseHitListener() {
+      @Override
+      public void onPhraseHit(String phrase, int phraseId, long startIndex, long endIndex) {
+        starts.add(startIndex);
+      }
+    }).feed(TEXT).finish();
+    assertEquals(Arrays.asList(0L), starts);
+
+    // スナップショットには解決済みの文字種別が保存されること
+    final PhraseSet loaded = PhraseSetSnapshot.fromBytes(PhraseSetSnapshot.toBytes(phraseSet));
+    assertEquals(phraseSet.getDependentCharClass(0), loaded.getDependentCharClass(0));
+    assertEquals(1, new PhraseFinder().countPhrases(TEXT, loaded));
+  }
+
+  @Test
+  public void test_override_chain() throws Exception {
+    // テストの期待動作：置き換えを重ねると、後から指定したものが優先されること
+    final BoundaryPolicy policy = KANJI_KATAKANA
+        .override(PhraseAnalysisMode.ZENKAKU_KATAKANA, BoundaryPolicy.DEPENDENT_ON_ALL_CHARS)
+        .override(PhraseAnalysisMode.UNKNOWN, PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI);
+    assertEquals(PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI, policy.getDependentCharClass("東京タワー", PhraseAnalysisMode.UNKNOWN));
+    assertEquals(BoundaryPolicy.DEPENDENT_ON_ALL_CHARS, policy.getDependentCharClass("タワー", PhraseAnalysisMode.ZENKAKU_KATAKANA));
+    assertEquals(PhraseTypeDetector.CHAR_CLASS_ZENKAKU_HIRAGANA, policy.getDependentCharClass("へ", PhraseAnalysisMode.ZENKAKU_HIRAGANA));
+
+    // 元のルールは変わらないこと
+    assertEquals(PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KANJI | PhraseTypeDetector.CHAR_CLASS_ZENKAKU_KATAKANA,
+        KANJI_KATAKANA.getDependentCharClass("東京タワー", PhraseAnalysisMode.UNKNOWN));
+
+    try {
+      new PhraseFinder().setBoundaryPolicy(null);
+      fail();
+    } catch (NullPointerException e) {
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+
+/**
+ * Test for ImmutablePhraseFinder class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestImmutablePhraseFinder {
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。ただ、基盤としてビットコインが消えることは無い。";
+
+  @Test
+  public void test_builder() throws Exception {
+    // テストの期待動作：Builderで指定したカッコ文字列でヒントが組み立てられること
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setHintBrace("【", "】").build();
+    final PhrasefResultSet resultSet = obj.findPhrases(TEXT, Arrays.asList("ビットコイン", "ビットコインキャッシュ"));
+
+    assertEquals("これから仮想通貨として期待できるのは【ビットコイン】よりもむしろ【ビットコインキャッシュ】であろう。ただ、基盤として【ビットコイン】が消えることは無い。", resultSet.hint);
+  }
+
+  @Test
+  public void test_findPhrasesInBatch() throws Exception {
+    // テストの期待動作：複数のテキストを並列に検索し、入力と同じ順で結果が得られること
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().build();
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "DENT", "日本"));
+
+    final List<String> texts = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      switch (i % 3) {
+      case 0:
+        texts.add(TEXT + i);
+        break;
+      case 1:
+        texts.add("仮想通貨DENT" + i + "はDENTAL COINとは別モノです。");
+        break;
+      default:
+        texts.add("日本" + i);
+        break;
+      }
+    }
+
+    final PhraseFinder sequential = new PhraseFinder();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<PhrasefResultSet> results = obj.findPhrasesInBatch(texts, phraseSet, executor);
+      final List<PhrasefResultSet> resultsOnCommonPool = obj.findPhrasesInBatch(texts, phraseSet);
+      final List<PhrasefResultSet> asyncResults = obj.findPhrasesInBatchAsync(texts, phraseSet, executor).get();
+
+      assertEquals(texts.size(), results.size());
+      for (int i = 0; i < texts.size(); i++) {
+        final String expected = sequential.findPhrases(texts.get(i), phraseSet).toString();
+        assertEquals(expected, results.get(i).toString());
+        assertEquals(expected, resultsOnCommonPool.get(i).toString());
+        assertEquals(expected, asyncResults.get(i).toString());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+
+/**
+ * Test for PhraseEditSession class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseEditSession {
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。";
+
+  private static void assertSameResult(PhrasefCompactResult expected, PhrasefCompactResult actual) {
+    final PhraseSet phraseSet = expected.getPhraseSet();
+    for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+      assertEquals(phraseSet.getPhrase(phraseId), Arrays.toString(expected.getStartIndexes(phraseId)), Arrays.toString(actual.getStartIndexes(phraseId)));
+      assertEquals(phraseSet.getPhrase(phraseId), Arrays.toString(expected.getEndIndexes(phraseId)), Arrays.toString(actual.getEndIndexes(phraseId)));
+    }
+    assertEquals(expected.getNumOfHits(), actual.getNumOfHits());
+  }
+
+  @Test
+  public void test_applyEdit() throws Exception {
+    // テストの期待動作：編集後の検索結果が、編集後のテキスト全体を検索した結果と同じになること
+    final PhraseFinder obj = new PhraseFinder();
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "仮想通貨"));
+    final PhraseEditSession session = obj.openEditSession(TEXT, phraseSet);
+    assertEquals(3, session.getNumOfHits());
+
+    // 「ビットコイン」の直後に１文字追加すると、独立したフレーズではなくなる
+    session.applyEdit(24, 0, "ズ");
+    assertEquals("これから仮想通貨として期待できるのはビットコインズよりもむしろビットコインキャッシュであろう。", session.getText());
+    assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+    assertEquals(2, session.getNumOfHits());
+
+    // 削除して元に戻す
+    session.applyEdit(24, 1, "");
+    assertEquals(TEXT, session.getText());
+    assertEquals(obj.findPhrases(TEXT, phraseSet).toString(), session.getResultSet().toString());
+
+    // 置き換え
+    session.applyEdit(4, 4, "ビットコイン");
+    assertEquals("これからビットコインとして期待できるのはビットコインよりもむしろビットコインキャッシュであろう。", session.getText());
+    assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+    assertEquals(3, session.getNumOfHits());
+  }
+
+  @Test
+  public void test_applyEdit_cascade() throws Exception {
+    // テストの期待動作：同じフレーズの候補が連続している場合も、重ならない候補の選び方が全体を検索した場合と同じになること
+    final PhraseFinder obj = new PhraseFinder();
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ララ", "ララララ"));
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 1001; i++) {
+      sb.append('ラ');
+    }
+    final PhraseEditSession session = obj.openEditSession(sb.toString(), phraseSet);
+
+    // 先頭の１文字を削除すると、後ろまで候補の選び方がずれる
+    session.applyEdit(0, 1, "");
+    assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+
+    session.applyEdit(500, 0, "ラ");
+    assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+
+    session.applyEdit(0, 0, "。");
+    assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+  }
+
+  @Test
+  public void test_applyEdit_random() throws Exception {
+    // テストの期待動作：ランダムな編集を繰り返しても、全体を検索した結果と同じになること
+    final PhraseFinder obj = new PhraseFinder();
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ab", "abab", "b", "ラ", "ララ", "ラーメン", "メン", "12", "1", "日本", "日本語"));
+    final String alphabet = "abab12ララー メン日本語。 X";
+    final Random random = new Random(20261017L);
+
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 400; i++) {
+      sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+    }
+    final PhraseEditSession session = obj.openEditSession(sb.toString(), phraseSet);
+    assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+
+    for (int n = 0; n < 2000; n++) {
+      final int length = session.getTextLength();
+      final int offset = random.nextInt(length + 1);
+      final int deletedLength = random.nextInt(Math.min(length - offset, 5) + 1);
+      final StringBuilder inserted = new StringBuilder();
+      final int insertedLength = random.nextInt(6);
+      for (int i = 0; i < insertedLength; i++) {
+        inserted.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      session.applyEdit(offset, deletedLength, inserted.toString());
+      assertEquals(length - deletedLength + insertedLength, session.getTextLength());
+      assertSameResult(obj.findPhrasesCompact(session.getText(), phraseSet), session.getCompactResult());
+    }
+  }
+
+  @Test
+  public void test_singlePhrase() throws Exception {
+    // テストの期待動作：１つのフレーズのセッションでも、findPhraseと同じ位置になること
+    final PhraseFinder obj = new PhraseFinder();
+    final PhraseEditSession session = obj.openEditSession(TEXT, "ビットコイン");
+    session.applyEdit(0, 0, "ビットコイン、");
+    final PhrasefCompactResult result = session.getCompactResult();
+    assertEquals(obj.findPhrase(session.getText(), "ビットコイン").numOfHits, result.getNumOfHits());
+    assertEquals(0, result.getStartIndex(0, 0));
+  }
+
+  @Test
+  public void test_invalidEdit() throws Exception {
+    // テストの期待動作：範囲外の編集は例外となり、テキストは変更されないこと
+    final PhraseEditSession session = new ImmutablePhraseFinder.Builder().build().openEditSession(TEXT, "ビットコイン");
+    try {
+      session.applyEdit(TEXT.length(), 1, "");
+      fail("IndexOutOfBoundsException expected");
+    } catch (IndexOutOfBoundsException e) {
+      assertEquals(TEXT, session.getText());
+    }
+  }
+}
@@ -3,18 +3,29 @@ package org.riversun.phrasef;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 import org.riversun.phrasef.PhraseFinder.HintContent;
+import org.riversun.phrasef.PhraseFinder.HintContext;
+import org.riversun.phrasef.PhraseFinder.HintContextListener;
 import org.riversun.phrasef.PhraseFinder.HintListener;
+import org.riversun.phrasef.PhraseFinder.HintMode;
+import org.riversun.phrasef.PhraseFinder.HintOverlapPolicy;
+import org.riversun.phrasef.PhraseFinder.MatchMode;
 import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.PhraseHitListener;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
 import org.riversun.phrasef.PhraseFinder.PhrasefResult;
 import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
 
@@ -308,4 +319,283 @@ public class TestPhraseFinder {
     obj.setHintListener(null);
 
   }
-}
\ No newline at end of file
+
+  @Test
+  public void test_findPhrases_same_result_as_findPhrase() throws Exception {
+    // テストの期待動作：findPhrasesで得られる個々のフレーズの結果が、findPhraseで個別に検索した結果と一致すること
+    final String TEXT = "DENT 週刊PRESIDENTオンラインの記事では仮想通貨DENTに関する記事を3000円で閲覧できます。DENTはDENTAL COINとは別モノです。300円、スキー、ハスキー、日本代表、日本。";
+    final List<String> SEARCH_PHRASES = new ArrayList<>(Arrays.asList("DENT", "DENTAL", "300", "3000", "スキー", "日本", "ENT", "記事"));
+
+    final PhrasefResultSet resultSet = obj.findPhrases(TEXT, SEARCH_PHRASES);
+
+    int numOfHits = 0;
+    for (String phrase : SEARCH_PHRASES) {
+      final PhrasefResult expected = obj.findPhrase(TEXT, phrase);
+      final PhrasefResult actual = resultSet.phraseResultMap.get(phrase);
+      assertEquals(expected.toString(), actual.toString());
+      numOfHits += expected.numOfHits;
+    }
+    assertEquals(numOfHits, resultSet.numOfHits);
+    assertEquals("[DENT] 週刊PRESIDENTオンラインの[記事]では仮想通貨[DENT]に関する[記事]を[3000]円で閲覧できます。[DENT]は[DENTAL] COINとは別モノです。[300]円、[スキー]、ハスキー、日本代表、[日本]。", resultSet.hint);
+  }
+
+  @Test
+  public void test_findPhrases_overlapping_candidates() throws Exception {
+    // テストの期待動作：同じフレーズの候補どうしが重なる場合、findPhraseと同じく先に見つかった候補を優先すること
+    final String TEXT = "ああああ、あああ";
+    final List<String> SEARCH_PHRASES = new ArrayList<>(Arrays.asList("ああ", "あああ"));
+
+    final PhrasefResultSet resultSet = obj.findPhrases(TEXT, SEARCH_PHRASES);
+
+    assertEquals(obj.findPhrase(TEXT, "ああ").toString(), resultSet.phraseResultMap.get("ああ").toString());
+    assertEquals(obj.findPhrase(TEXT, "あああ").toString(), resultSet.phraseResultMap.get("あああ").toString());
+    assertEquals(1, resultSet.numOfHits);
+    assertEquals("ああああ、[あああ]", resultSet.hint);
+  }
+
+  @Test
+  public void test_findPhrasesCompact() throws Exception {
+    // テストの期待動作：検出位置がフレーズIDごとにプリミティブ配列で得られ、通常の検索結果に変換できること
+    final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。ただ、基盤としてビットコインが消えることは無い。";
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "DENT"));
+
+    final PhrasefCompactResult compactResult = obj.findPhrasesCompact(TEXT, phraseSet);
+
+    assertTrue(compactResult.isHit());
+    assertEquals(3, compactResult.getNumOfHits());
+    assertEquals(2, compactResult.getNumOfHits(0));
+    assertEquals(1, compactResult.getNumOfHits(1));
+    assertEquals(0, compactResult.getNumOfHits(2));
+    assertEquals(18, compactResult.getStartIndex(0, 0));
+    assertEquals(24, compactResult.getEndIndex(0, 0));
+    assertEquals(54, compactResult.getStartIndex(0, 1));
+    assertEquals(30, compactResult.getStartIndex(1, 0));
+    assertEquals(41, compactResult.getEndIndex(1, 0));
+
+    assertEquals(obj.findPhrases(TEXT, phraseSet).toString(), obj.toResultSet(TEXT, compactResult).toString());
+  }
+
+  @Test
+  public void test_hintMode() throws Exception {
+    // テストの期待動作：LAZYではgetHint()が呼ばれたときにヒントが組み立てられ、NONEではヒントが組み立てられないこと
+    final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。ただ、基盤としてビットコインが消えることは無い。";
+    final List<String> SEARCH_PHRASES = new ArrayList<>(Arrays.asList("ビットコイン", "ビットコインキャッシュ"));
+
+    final PhrasefResultSet expected = obj.findPhrases(TEXT, SEARCH_PHRASES);
+
+    obj.setHintMode(HintMode.LAZY);
+    final PhrasefResultSet lazyResultSet = obj.findPhrases(TEXT, SEARCH_PHRASES);
+    final PhrasefResult lazyResult = obj.findPhrase(TEXT, "ビットコイン");
+    assertNull(lazyResultSet.hint);
+    assertNull(lazyResult.hint);
+    assertEquals(3, lazyResultSet.numOfHits);
+    assertEquals(expected.getHint(), lazyResultSet.getHint());
+    assertEquals(expected.phraseResultMap.get("ビットコイン").hint, lazyResult.getHint());
+    assertEquals(expected.phraseResultMap.get("ビットコイン").posList.toString(), lazyResult.posList.toString());
+
+    obj.setHintMode(HintMode.NONE);
+    final PhrasefResult noneResult = obj.findPhrase(TEXT, "ビットコイン");
+    assertTrue(noneResult.isHit);
+    assertEquals(2, noneResult.numOfHits);
+    assertNull(noneResult.getHint());
+
+    obj.setHintMode(HintMode.EAGER);
+  }
+
+  @Test
+  public void test_findPhrasesParallel() throws Exception {
+    // テストの期待動作：大きなテキストを分割して並列に検索しても、分割しない場合と同じ結果が得られること
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; sb.length() < 200000; i++) {
+      sb.append("DENT 週刊PRESIDENTの記事では仮想通貨DENTに関する記事を").append(i).append("円で。ああああ、あああ。300円、スキー、日本。");
+    }
+    final String TEXT = sb.toString();
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("DENT", "300", "スキー", "日本", "記事", "ああ", "あああ"));
+
+    final PhrasefResultSet expected = obj.findPhrases(TEXT, phraseSet);
+    final PhrasefResultSet actual = obj.findPhrasesParallel(TEXT, phraseSet);
+    assertEquals(expected.toString(), actual.toString());
+
+    assertEquals(obj.findPhrase(TEXT, "ああ").toString(), obj.findPhraseParallel(TEXT, "ああ").toString());
+
+    // かたまりを小さくして、境目をまたぐ候補を多くする
+    final String text = TEXT.substring(0, 3000);
+    final PhrasefCompactResult expectedCompact = obj.findPhrasesCompact(text, phraseSet);
+    for (int segmentSize = 1; segmentSize < 64; segmentSize += 7) {
+      final List<List<Integer>> startIndexes = new ArrayList<>();
+      for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+        startIndexes.add(new ArrayList<Integer>());
+      }
+      ParallelPhraseScanner.scan(text, phraseSet, ForkJoinPool.commonPool(), segmentSize, new PhraseSet.HitHandler() {
+        @Override
+        public void onHit(int phraseId, int startIndex, int endIndex) {
+          startIndexes.get(phraseId).add(startIndex);
+        }
+      });
+      for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+        assertEquals(Arrays.toString(expectedCompact.getStartIndexes(phraseId)), startIndexes.get(phraseId).toString());
+      }
+    }
+  }
+
+  @Test
+  public void test_containsPhrase_countPhrase() throws Exception {
+    // テストの期待動作：検出位置を作らない判定・カウントの結果が、findPhrase、findPhrasesの結果と一致すること
+    final String TEXT = "DENT 週刊PRESIDENTの記事では仮想通貨DENTに関する記事を300円で。ああああ、あああ。300円、スキー、日本。";
+    final List<String> phrases = Arrays.asList("DENT", "300", "スキー", "日本", "記事", "ああ", "あああ", "PRES", "コイン");
+
+    for (String phrase : phrases) {
+      final PhrasefResult result = obj.findPhrase(TEXT, phrase);
+      assertEquals(phrase, result.numOfHits, obj.countPhrase(TEXT, phrase));
+      assertEquals(phrase, result.isHit, obj.containsPhrase(TEXT, phrase));
+    }
+
+    final PhraseSet phraseSet = PhraseSet.compile(phrases);
+    assertEquals(obj.findPhrases(TEXT, phraseSet).numOfHits, obj.countPhrases(TEXT, phraseSet));
+    assertEquals(true, obj.containsAnyPhrase(TEXT, phraseSet));
+    assertEquals(false, obj.containsAnyPhrase(TEXT, Arrays.asList("PRES", "コイン")));
+    assertEquals(false, obj.containsAnyPhrase(TEXT, Arrays.<String> asList()));
+    assertEquals(0, obj.countPhrase(TEXT, ""));
+  }
+
+  @Test
+  public void test_writeHint_setHintContextListener() throws Exception {
+    // テストの期待動作：outに書き込んだヒントが、組み立てたヒントと同じになり、HintContextが使い回されること
+    final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。ただ、基盤としてビットコインが消えることは無い。";
+    final List<String> SEARCH_PHRASES = Arrays.asList("ビットコイン", "ビットコインキャッシュ");
+
+    final StringWriter out = new StringWriter();
+    obj.writeHint(TEXT, obj.findPhrases(TEXT, SEARCH_PHRASES), out);
+    assertEquals(obj.findPhrases(TEXT, SEARCH_PHRASES).hint, out.toString());
+
+    final StringBuilder sb = new StringBuilder();
+    final PhrasefResult result = obj.findPhrase(TEXT, "ビットコイン");
+    obj.writeHint(TEXT, result, sb);
+    assertEquals(result.hint, sb.toString());
+
+    final List<HintContext> contexts = new ArrayList<>();
+    obj.setHintContextListener(new HintContextListener() {
+      @Override
+      public void onPhraseFound(HintContext context) {
+        contexts.add(context);
+        context.hintPrefix = "<b>";
+        context.hintSuffix = "</b>";
+        context.additionalInfo = "(" + context.startIndex + "-" + context.endIndex + ")";
+      }
+    });
+    final StringWriter html = new StringWriter();
+    obj.writeHint(TEXT, obj.setHintMode(HintMode.NONE).findPhrases(TEXT, SEARCH_PHRASES), html);
+    assertEquals("これから仮想通貨として期待できるのは<b>ビットコイン</b>(18-24)よりもむしろ<b>ビットコインキャッシュ</b>(30-41)であろう。ただ、基盤として<b>ビットコイン</b>(54-60)が消えることは無い。", html.toString());
+    assertEquals(3, contexts.size());
+    assertTrue(contexts.get(0) == contexts.get(2));
+
+    // 解除
+    obj.setHintContextListener(null);
+    obj.setHintMode(HintMode.EAGER);
+  }
+
+  @Test
+  public void test_hintOverlapPolicy() throws Exception {
+    // テストの期待動作：検出位置が重なる場合に、HintOverlapPolicyにしたがってカッコで囲まれること
+    // （"カー"と"ーああ"は位置8の"ー"を共有する）
+    final String TEXT = "DENT2と、カーああ。";
+    final List<String> SEARCH_PHRASES = Arrays.asList("DENT", "DENT2", "カー", "ーああ");
+
+    final StringBuilder sb = new StringBuilder();
+    obj.writeHint(TEXT, obj.findPhrases(TEXT, SEARCH_PHRASES), sb);
+    assertEquals("[DENT2]と、[カー]ああ。", sb.toString());
+    assertEquals("[DENT2]と、[カー]ああ。", obj.findPhrases(TEXT, SEARCH_PHRASES).hint);
+
+    obj.setHintOverlapPolicy(HintOverlapPolicy.LONGEST);
+    assertEquals("[DENT2]と、カ[ーああ]。", obj.findPhrases(TEXT, SEARCH_PHRASES).hint);
+
+    obj.setHintOverlapPolicy(HintOverlapPolicy.ALL);
+    // （入れ子になる"DENT"と"DENT2"は両方を囲み、交差する"カー"と"ーああ"はFIRSTと同じく先に始まるものを囲む）
+    assertEquals("[[DENT]2]と、[カー]ああ。", obj.findPhrases(TEXT, SEARCH_PHRASES).hint);
+
+    obj.setHintListener(new HintListener() {
+      @Override
+      public HintContent onPhraseFound(HintContent hint) {
+        hint.hintPrefix = "<" + hint.phrase + ">";
+        hint.hintSuffix = "</>";
+        hint.additionalInfo = "*";
+        return hint;
+      }
+    });
+    assertEquals("<DENT2><DENT>DENT</>*2</>*と、<カー>カー</>*ああ。", obj.findPhrases(TEXT, SEARCH_PHRASES).hint);
+
+    // 入れ子と交差が混ざる場合も、カッコの対応が崩れないこと
+    obj.setHintListener(null);
+    // （"ーああ"は"カーああ"の中に入れ子になるが、先に開いた"カー"と交差するので囲まない）
+    assertEquals("[[カー]ああ]", obj.findPhrases("カーああ", Arrays.asList("カー", "カーああ", "ーああ")).hint);
+
+    // 重ならない場合は、どのHintOverlapPolicyでも同じ
+    obj.setHintListener(null);
+    assertEquals("[DENT]と、[カー]。", obj.findPhrases("DENTと、カー。", SEARCH_PHRASES).hint);
+
+    obj.setHintOverlapPolicy(HintOverlapPolicy.FIRST);
+  }
+
+  @Test
+  public void test_matchMode() throws Exception {
+    // テストの期待動作：MatchMode.FOLD_WIDTH_AND_CASEでは全角・半角、大文字・小文字の違いを無視して検出され、
+    // 検出位置は元のテキストでの位置となること。前後の文字も変換した文字種別で判定されること
+    // （"DENTａ"の"ａ"は"a"とみなされるので、"DENT"は独立していない）
+    final String TEXT = "ＤＥＮＴと、dentと、DENTａと、Ｄｅｎｔ。";
+
+    assertEquals(MatchMode.EXACT, PhraseSet.compile(Arrays.asList("DENT")).getMatchMode());
+    // MatchMode.EXACTでは"DENT"だけが検出され、全角の"ａ"は独立した文字とみなされる
+    assertEquals(1, obj.findPhrase(TEXT, "DENT").numOfHits);
+    assertEquals(12, obj.findPhrase(TEXT, "DENT").posList.get(0).startIndex);
+
+    obj.setMatchMode(MatchMode.FOLD_WIDTH_AND_CASE);
+    try {
+      for (String phrase : Arrays.asList("DENT", "dent", "ＤＥＮＴ")) {
+        final PhrasefResult result = obj.findPhrase(TEXT, phrase);
+        assertEquals(phrase, result.phrase);
+        assertEquals(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY, result.analysisMode);
+        assertEquals(3, result.numOfHits);
+        assertEquals(0, result.posList.get(0).startIndex);
+        assertEquals(4, result.posList.get(0).endIndex);
+        assertEquals(6, result.posList.get(1).startIndex);
+        assertEquals(19, result.posList.get(2).startIndex);
+        assertEquals(23, result.posList.get(2).endIndex);
+        assertEquals(3, obj.countPhrase(TEXT, phrase));
+
+        // フレーズのリストやPhraseSetで検索しても同じ結果となること
+        final PhrasefResultSet resultSet = obj.findPhrases(TEXT, Arrays.asList(phrase));
+        assertEquals(3, resultSet.numOfHits);
+        assertEquals(19, resultSet.phraseResultMap.get(phrase).posList.get(2).startIndex);
+        assertEquals(result.hint, resultSet.hint);
+
+        final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList(phrase), MatchMode.FOLD_WIDTH_AND_CASE);
+        assertEquals(MatchMode.FOLD_WIDTH_AND_CASE, phraseSet.getMatchMode());
+        assertEquals(0, phraseSet.getPhraseId("ｄｅｎｔ"));
+        assertEquals(3, obj.findPhrases(TEXT, phraseSet).numOfHits);
+        assertEquals(3, obj.findPhrasesParallel(TEXT, phraseSet).numOfHits);
+
+        final List<Long> starts = new ArrayList<Long>();
+        new PhraseStreamScanner(phraseSet, new PhraseHitListener() {
+          @Override
+          public void onPhraseHit(String hitPhrase, int phraseId, long startIndex, long endIndex) {
+            starts.add(startIndex);
+          }
+        }).feed(TEXT).finish();
+        assertEquals(Arrays.asList(0L, 6L, 19L), starts);
+      }
+      assertEquals("[ＤＥＮＴ]と、[dent]と、DENTａと、[Ｄｅｎｔ]。", obj.findPhrase(TEXT, "dent").hint);
+
+      // UTF-8のバイト列のままでは全角と半角を照合できないので、受け付けないこと
+      try {
+        obj.findPhrases(TEXT.getBytes("UTF-8"), 0, 3, PhraseSet.compile(Arrays.asList("DENT"), MatchMode.FOLD_WIDTH_AND_CASE), null);
+        fail();
+      } catch (IllegalArgumentException e) {
+      }
+
+      // 変換すると同じになるフレーズは１つにまとめられる
+      assertEquals(1, PhraseSet.compile(Arrays.asList("DENT", "ｄｅｎｔ"), MatchMode.FOLD_WIDTH_AND_CASE).size());
+    } finally {
+      obj.setMatchMode(MatchMode.EXACT);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Test for PhraseFinderCli class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseFinderCli {
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。";
+
+  private String[] mOutput = new String[2];
+
+  private int run(String... args) throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+    final int status = PhraseFinderCli.run(args, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+    mOutput[0] = new String(out.toByteArray(), StandardCharsets.UTF_8);
+    mOutput[1] = new String(err.toByteArray(), StandardCharsets.UTF_8);
+    return status;
+  }
+
+  private Path prepare() throws Exception {
+    final Path phraseFile = mFolder.newFile("phrases.txt").toPath();
+    Files.write(phraseFile, Arrays.asList("ビットコイン", "", "ビットコインキャッシュ", "apple"), StandardCharsets.UTF_8);
+
+    final Path root = mFolder.newFolder("docs").toPath();
+    Files.write(root.resolve("a.txt"), TEXT.getBytes(StandardCharsets.UTF_8));
+    Files.createDirectories(root.resolve("sub/deeper"));
+    Files.write(root.resolve("sub/b.txt"), "I have an apple and a pineapple.".getBytes(StandardCharsets.UTF_8));
+    Files.write(root.resolve("sub/deeper/c.txt"), "nothing here".getBytes(StandardCharsets.UTF_8));
+    return phraseFile;
+  }
+
+  @Test
+  public void test_tsv() throws Exception {
+    // テストの期待動作：ディレクトリ以下のすべてのファイルについて、独立したフレーズが１行ずつ出力されること
+    final Path phraseFile = prepare();
+    final Path root = phraseFile.getParent().resolve("docs");
+
+    assertEquals(0, run("-t", "3", phraseFile.toString(), root.toString()));
+
+    final List<String> lines = new ArrayList<String>(Arrays.asList(mOutput[0].split("\n")));
+    Collections.sort(lines);
+    final int byteStart = TEXT.substring(0, 30).getBytes(StandardCharsets.UTF_8).length;
+    assertEquals(Arrays.asList(
+        root.resolve("a.txt") + "\tビットコイン\tZENKAKU_KATAKANA\t18\t24\t54\t72",
+        root.resolve("a.txt") + "\tビットコインキャッシュ\tZENKAKU_KATAKANA\t30\t41\t" + byteStart + "\t" + (byteStart + 33),
+        root.resolve("sub/b.txt") + "\tapple\tHANKAKU_ALPHABET_ONLY\t10\t15\t10\t15"), lines);
+
+    assertTrue(mOutput[1].startsWith("files=3 bytes="));
+    assertTrue(mOutput[1].contains(" hits=3 filesWithHits=2 errors=0 "));
+  }
+
+  @Test
+  public void test_json() throws Exception {
+    // テストの期待動作：JSON形式ではJSON Linesで出力されること
+    final Path phraseFile = prepare();
+    final Path output = mFolder.getRoot().toPath().resolve("out.jsonl");
+
+    assertEquals(0, run("--format", "json", "-o", output.toString(), phraseFile.toString(), phraseFile.getParent().resolve("docs/sub").toString()));
+    assertEquals("", mOutput[0]);
+
+    final List<String> lines = Files.readAllLines(output, StandardCharsets.UTF_8);
+    assertEquals(1, lines.size());
+    final String fileName = phraseFile.getParent().resolve("docs/sub/b.txt").toString().replace("\\", "\\\\");
+    assertEquals("{\"file\":\"" + fileName + "\",\"phrase\":\"apple\",\"analysisMode\":\"HANKAKU_ALPHABET_ONLY\","
+        + "\"startIndex\":10,\"endIndex\":15,\"byteStartIndex\":10,\"byteEndIndex\":15}", lines.get(0));
+  }
+
+  @Test
+  public void test_usage() throws Exception {
+    // テストの期待動作：引数が誤っている場合は終了コード2で使い方が出力されること
+    assertEquals(2, run("only-one-operand"));
+    assertTrue(mOutput[1].contains("Usage:"));
+    assertEquals(2, run("--threads", "0", "a", "b"));
+    assertEquals(2, run("--unknown", "a", "b"));
+  }
+}
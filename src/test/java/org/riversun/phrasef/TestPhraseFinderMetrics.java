@@ -0,0 +1,114 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.HintContent;
+import org.riversun.phrasef.PhraseFinder.HintListener;
+import org.riversun.phrasef.PhraseFinder.MatchMode;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinderMetrics.Snapshot;
+
+/**
+ * Test for PhraseFinderMetrics class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseFinderMetrics {
+
+  private static final String TEXT = "仮想通貨DENTはDENTAL COINとは別モノです。DENTは日本の会社です。";
+
+  @Test
+  public void test_findPhrase() throws Exception {
+    // テストの期待動作：findPhraseの候補数、除外された候補数、ヒット数が分析モードごとに集計されること
+    final PhraseFinderMetrics metrics = new PhraseFinderMetrics();
+    final PhraseFinder obj = new PhraseFinder().setMetrics(metrics);
+
+    obj.findPhrase(TEXT, "DENT");
+    obj.findPhrase(TEXT, "日本");
+
+    final Snapshot snapshot = metrics.snapshot();
+    assertEquals(1, snapshot.getNumOfPhraseSearches(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(3, snapshot.getNumOfCandidates(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(1, snapshot.getNumOfRejectedCandidates(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(2, snapshot.getNumOfHits(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertTrue(snapshot.getPhraseSearchNanos(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY) > 0);
+
+    // "日本の"は漢字の後にひらがなが続くので独立
+    assertEquals(1, snapshot.getNumOfPhraseSearches(PhraseAnalysisMode.ZENKAKU_KANJI));
+    assertEquals(1, snapshot.getNumOfHits(PhraseAnalysisMode.ZENKAKU_KANJI));
+
+    assertEquals(2, snapshot.getNumOfPhraseSearches());
+    assertEquals(4, snapshot.getNumOfCandidates());
+    assertEquals(3, snapshot.getNumOfHits());
+    assertEquals(0, snapshot.getNumOfMultiPhraseScans());
+  }
+
+  @Test
+  public void test_findPhrases() throws Exception {
+    // テストの期待動作：findPhrasesでも、findPhraseと同じ候補数、ヒット数が集計されること
+    final PhraseFinderMetrics metrics = new PhraseFinderMetrics();
+    final PhraseFinder obj = new PhraseFinder().setMetrics(metrics);
+
+    obj.findPhrases(TEXT, Arrays.asList("DENT", "日本", "COIN"));
+
+    final Snapshot snapshot = metrics.snapshot();
+    assertEquals(1, snapshot.getNumOfMultiPhraseScans());
+    assertEquals(0, snapshot.getNumOfPhraseSearches());
+    assertEquals(4, snapshot.getNumOfCandidates(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(1, snapshot.getNumOfRejectedCandidates(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(3, snapshot.getNumOfHits(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(1, snapshot.getNumOfHits(PhraseAnalysisMode.ZENKAKU_KANJI));
+  }
+
+  @Test
+  public void test_hintCallbacks() throws Exception {
+    // テストの期待動作：HintListenerの呼び出し回数が集計され、ヒントの内容は変わらないこと
+    final PhraseFinderMetrics metrics = new PhraseFinderMetrics();
+    final PhraseFinder obj = new PhraseFinder().setMetrics(metrics);
+    obj.setHintListener(new HintListener() {
+      @Override
+      public HintContent onPhraseFound(HintContent hint) {
+        hint.additionalInfo = "*";
+        return hint;
+      }
+    });
+
+    assertEquals("仮想通貨[DENT]*はDENTAL COINとは別モノです。[DENT]*は日本の会社です。", obj.findPhrase(TEXT, "DENT").hint);
+    assertEquals(2, metrics.snapshot().getNumOfHintCallbacks(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+
+    // 全角・半角を区別しない場合は、変換したフレーズの分析モード（実際に使われた分析モード）で集計されること
+    metrics.reset();
+    obj.setMatchMode(MatchMode.FOLD_WIDTH_AND_CASE);
+    assertEquals(2, obj.findPhrase(TEXT, "ＤＥＮＴ").numOfHits);
+    obj.findPhrases(TEXT, Arrays.asList("ＤＥＮＴ"));
+    // （findPhrasesでは、フレーズごとのヒントとまとめたヒントの両方を組み立てる）
+    assertEquals(2 + 2 * 2, metrics.snapshot().getNumOfHintCallbacks(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY));
+    assertEquals(2 + 2 * 2, metrics.snapshot().getNumOfHintCallbacks());
+
+    metrics.reset();
+    assertEquals(0, metrics.snapshot().getNumOfHintCallbacks());
+    assertEquals(0, metrics.snapshot().getNumOfPhraseSearches());
+  }
+
+  @Test
+  public void test_disabled() throws Exception {
+    // テストの期待動作：集計先を指定しない場合も検索結果が変わらないこと
+    final PhraseFinder obj = new PhraseFinder();
+    assertNull(obj.getMetrics());
+
+    final PhraseFinderMetrics metrics = new PhraseFinderMetrics();
+    final PhraseFinder objWithMetrics = new PhraseFinder().setMetrics(metrics);
+    assertEquals(obj.findPhrases(TEXT, Arrays.asList("DENT", "日本")).toString(), objWithMetrics.findPhrases(TEXT, Arrays.asList("DENT", "日本")).toString());
+
+    objWithMetrics.setMetrics(null);
+    objWithMetrics.findPhrase(TEXT, "DENT");
+    assertEquals(1, metrics.snapshot().getNumOfMultiPhraseScans());
+    assertEquals(0, metrics.snapshot().getNumOfPhraseSearches());
+  }
+}
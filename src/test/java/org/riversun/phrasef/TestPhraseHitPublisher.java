@@ -0,0 +1,251 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+import org.riversun.phrasef.PhraseHitPublisher.PhraseHit;
+import org.riversun.phrasef.PhraseHitPublisher.Subscriber;
+import org.riversun.phrasef.PhraseHitPublisher.Subscription;
+
+/**
+ * Test for PhraseHitPublisher class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseHitPublisher {
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。ビットコイン、ビットコインキャッシュ、イーサリアム";
+
+  private static final PhraseSet PHRASE_SET = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "イーサリアム", "仮想通貨"));
+
+  /**
+   * 受け取った通知を記録する購読者
+   */
+  private static class RecordingSubscriber implements Subscriber {
+
+    final List<PhraseHit> hits = new ArrayList<PhraseHit>();
+    Subscription subscription;
+    Throwable error;
+    boolean completed;
+
+    // onSubscribeとonNextのたびに要求する数（0の場合は要求しない）
+    final long requestEach;
+
+    RecordingSubscriber(long requestEach) {
+      this.requestEach = requestEach;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+      this.subscription = subscription;
+      if (requestEach > 0) {
+        subscription.request(requestEach);
+      }
+    }
+
+    @Override
+    public void onNext(PhraseHit hit) {
+      hits.add(hit);
+      if (requestEach > 0) {
+        subscription.request(requestEach);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+    }
+  }
+
+  private static void assertSameHits(PhrasefCompactResult expected, List<PhraseHit> hits) {
+    final PhraseSet phraseSet = expected.getPhraseSet();
+    final int[] nth = new int[phraseSet.size()];
+    for (PhraseHit hit : hits) {
+      assertEquals(phraseSet.getPhrase(hit.phraseId), hit.phrase);
+      assertEquals(expected.getStartIndex(hit.phraseId, nth[hit.phraseId]), hit.startIndex);
+      assertEquals(expected.getEndIndex(hit.phraseId, nth[hit.phraseId]), hit.endIndex);
+      nth[hit.phraseId]++;
+    }
+    assertEquals(expected.getNumOfHits(), hits.size());
+  }
+
+  @Test
+  public void test_publishPhrases() {
+    // テストの期待動作：通知されるフレーズがfindPhrasesCompactの結果と同じで、終了位置の順に並ぶこと
+    final PhraseFinder obj = new PhraseFinder();
+    final RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+    obj.publishPhrases(TEXT, PHRASE_SET).subscribe(subscriber);
+
+    assertSameHits(obj.findPhrasesCompact(TEXT, PHRASE_SET), subscriber.hits);
+    assertTrue(subscriber.completed);
+    assertNull(subscriber.error);
+
+    for (int i = 1; i < subscriber.hits.size(); i++) {
+      assertTrue(subscriber.hits.get(i - 1).endIndex <= subscriber.hits.get(i).endIndex);
+    }
+  }
+
+  @Test
+  public void test_publishPhrase() {
+    // テストの期待動作：１つのフレーズでもfindPhraseと同じ位置が通知されること
+    final PhraseFinder obj = new PhraseFinder();
+    final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+    obj.publishPhrase(TEXT, "ビットコイン").subscribe(subscriber);
+
+    final List<PhraseFinder.PhrasePos> expected = obj.findPhrase(TEXT, "ビットコイン").posList;
+    assertEquals(expected.size(), subscriber.hits.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).startIndex, subscriber.hits.get(i).startIndex);
+      assertEquals(expected.get(i).endIndex, subscriber.hits.get(i).endIndex);
+    }
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void test_backpressure() {
+    // テストの期待動作：要求した数を超えて通知されず、要求を追加すると続きから通知されること
+    final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    new PhraseHitPublisher(TEXT, PHRASE_SET).subscribe(subscriber);
+    assertEquals(0, subscriber.hits.size());
+
+    subscriber.subscription.request(2);
+    assertEquals(2, subscriber.hits.size());
+    assertFalse(subscriber.completed);
+
+    subscriber.subscription.request(1);
+    assertEquals(3, subscriber.hits.size());
+
+    subscriber.subscription.request(100);
+    assertTrue(subscriber.completed);
+    assertSameHits(new PhraseFinder().findPhrasesCompact(TEXT, PHRASE_SET), subscriber.hits);
+  }
+
+  @Test
+  public void test_cancel() {
+    // テストの期待動作：cancelすると、それ以降は通知されないこと
+    final RecordingSubscriber subscriber = new RecordingSubscriber(0) {
+      @Override
+      public void onNext(PhraseHit hit) {
+        super.onNext(hit);
+        if (hits.size() == 2) {
+          subscription.cancel();
+        }
+      }
+    };
+    new PhraseHitPublisher(TEXT, PHRASE_SET).subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+
+    assertEquals(2, subscriber.hits.size());
+    subscriber.subscription.request(10);
+    assertEquals(2, subscriber.hits.size());
+    assertFalse(subscriber.completed);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void test_cancelOutsideOnNext() {
+    // テストの期待動作：要求した数だけ通知したら走査を止め、onNextの外からcancelしても残りのテキストを走査しないこと
+    final StringBuilder sb = new StringBuilder("ビットコイン");
+    for (int i = 0; i < 100000; i++) {
+      sb.append("ああ");
+    }
+    sb.append("イーサリアム");
+    final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    new PhraseHitPublisher(sb.toString(), PHRASE_SET).subscribe(subscriber);
+    final PhraseHitPublisher.HitSubscription subscription = (PhraseHitPublisher.HitSubscription) subscriber.subscription;
+
+    subscription.request(1);
+    assertEquals(1, subscriber.hits.size());
+    assertEquals(subscriber.hits.get(0).endIndex, subscription.getScannedIndex());
+
+    subscription.cancel();
+    subscription.request(1);
+    assertEquals(1, subscriber.hits.size());
+    assertEquals(-1, subscription.getScannedIndex());
+    assertFalse(subscriber.completed);
+    assertNull(subscriber.error);
+  }
+
+  @Test
+  public void test_invalidRequest() {
+    // テストの期待動作：0以下を要求するとonErrorが通知され、購読が終わること
+    final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    new PhraseHitPublisher(TEXT, PHRASE_SET).subscribe(subscriber);
+    subscriber.subscription.request(0);
+
+    assertTrue(subscriber.error instanceof IllegalArgumentException);
+    subscriber.subscription.request(10);
+    assertEquals(0, subscriber.hits.size());
+    assertFalse(subscriber.completed);
+  }
+
+  @Test
+  public void test_noHits() {
+    // テストの期待動作：フレーズが無い場合は、要求に応じた走査がテキストの終わりに達した時点で完了が通知されること
+    final RecordingSubscriber subscriber = new RecordingSubscriber(0);
+    new PhraseHitPublisher("ビットコインキャッシュ", PhraseSet.compile(Arrays.asList("イーサリアム"))).subscribe(subscriber);
+    subscriber.subscription.request(1);
+    assertTrue(subscriber.completed);
+
+    final RecordingSubscriber empty = new RecordingSubscriber(0);
+    new PhraseHitPublisher("", PHRASE_SET).subscribe(empty);
+    empty.subscription.request(1);
+    assertTrue(empty.completed);
+    assertEquals(0, empty.hits.size());
+  }
+
+  @Test
+  public void test_reentrantRequest() {
+    // テストの期待動作：onNextの中から１つずつ要求しても、再帰せずにすべて通知されること
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; i++) {
+      sb.append("ビットコイン、");
+    }
+    final String text = sb.toString();
+    final RecordingSubscriber subscriber = new RecordingSubscriber(1);
+    new PhraseHitPublisher(text, PHRASE_SET).subscribe(subscriber);
+
+    assertEquals(20000, subscriber.hits.size());
+    assertTrue(subscriber.completed);
+  }
+
+  @Test
+  public void test_executor() throws Exception {
+    // テストの期待動作：Executorを指定した場合も、すべて通知されて完了すること
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      final CountDownLatch latch = new CountDownLatch(1);
+      final RecordingSubscriber subscriber = new RecordingSubscriber(1) {
+        @Override
+        public void onComplete() {
+          super.onComplete();
+          latch.countDown();
+        }
+      };
+      new ImmutablePhraseFinder.Builder().build().publishPhrases(TEXT, PHRASE_SET, executor).subscribe(subscriber);
+
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+      assertSameHits(new PhraseFinder().findPhrasesCompact(TEXT, PHRASE_SET), subscriber.hits);
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.riversun.phrasef.RandomTexts.randomString;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.PhrasePos;
+
+/**
+ * Test for PhraseIndex class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseIndex {
+
+  private static final List<String> DOCUMENTS = Arrays.asList(
+      "DENT 週刊PRESIDENTの記事では仮想通貨DENTに関する記事を300円で。",
+      "ああああ、あああ。300円、スキー、日本。",
+      "DENTALではなくDENT-COINでもなくDENT",
+      "xDENT",
+      "日本");
+
+  @Test
+  public void test_findPhrase() throws Exception {
+    // テストの期待動作：文書ごとの検出位置がfindPhraseと同じになること
+    final PhraseIndex index = new PhraseIndex();
+    assertEquals(0, index.addDocuments(DOCUMENTS));
+    assertEquals(DOCUMENTS.size(), index.getNumOfDocuments());
+
+    final Map<Integer, List<PhrasePos>> result = index.findPhrase("DENT");
+    assertEquals("[0, 2, 3]", result.keySet().toString());
+    assertEquals("[PhrasePos [startIndex=0, endIndex=4], PhrasePos [startIndex=25, endIndex=29]]", result.get(0).toString());
+
+    // 位置1から始まるフレーズは、前の文字を判定しない（findPhraseと同じ）
+    assertEquals("[PhrasePos [startIndex=1, endIndex=5]]", result.get(3).toString());
+
+    assertEquals("[PhrasePos [startIndex=5, endIndex=8]]", index.findPhrase(1, "あああ").toString());
+    assertEquals("[]", index.findPhrase(1, "DENT").toString());
+  }
+
+  @Test
+  public void test_findDocuments() throws Exception {
+    // テストの期待動作：フレーズを含む文書、すべてのフレーズを含む文書が得られること
+    final PhraseIndex index = new PhraseIndex();
+    index.addDocuments(DOCUMENTS);
+
+    assertArrayEquals(new int[] { 1, 4 }, index.findDocuments("日本"));
+    assertArrayEquals(new int[] { 0, 1 }, index.findDocuments("300"));
+    assertArrayEquals(new int[] { 1 }, index.findDocumentsContainingAll(Arrays.asList("300", "日本")));
+    assertArrayEquals(new int[] {}, index.findDocumentsContainingAll(Arrays.asList("300", "コイン")));
+    assertArrayEquals(new int[] {}, index.findDocuments(""));
+
+    // 文書を追加すると、以降の検索に反映されること
+    assertEquals(5, index.addDocument("日本の300円"));
+    assertArrayEquals(new int[] { 1, 5 }, index.findDocumentsContainingAll(Arrays.asList("300", "日本")));
+  }
+
+  @Test
+  public void test_unknown() throws Exception {
+    // テストの期待動作：UNKNOWNのフレーズは、findPhraseと同じく文書全体か2文字目以降と一致する場合にだけ検出されること
+    final PhraseIndex index = new PhraseIndex();
+    index.addDocument("東京タワー");
+    index.addDocument("新東京タワー");
+    index.addDocument("東京タワーへ行く");
+    index.addDocument("ああああ");
+
+    final PhraseFinder finder = new PhraseFinder();
+    for (String phrase : Arrays.asList("東京タワー", "新東京タワー", "東京タワーへ行く", "京タワー", "あああ")) {
+      for (int documentId = 0; documentId < index.getNumOfDocuments(); documentId++) {
+        final String document = Arrays.asList("東京タワー", "新東京タワー", "東京タワーへ行く", "ああああ").get(documentId);
+        assertEquals(phrase + " in " + document, finder.findPhrase(document, phrase).posList.toString(), index.findPhrase(documentId, phrase).toString());
+      }
+    }
+    assertArrayEquals(new int[] { 0, 1 }, index.findDocuments("東京タワー"));
+    assertArrayEquals(new int[] { 0 }, index.findDocuments("京タワー"));
+    assertArrayEquals(new int[0], index.findDocuments("あああ"));
+  }
+
+  @Test
+  public void test_same_result_as_findPhrase() throws Exception {
+    // テストの期待動作：いろいろな文字種別がまじった文書とフレーズで、findPhraseと同じ検出位置が得られること
+    final String chars = "aAb1２-_カナーあい漢字。 、x9";
+    final Random random = new Random(1);
+
+    final List<String> documents = new ArrayList<String>();
+    for (int i = 0; i < 300; i++) {
+      documents.add(randomString(random, chars, random.nextInt(12)));
+    }
+    final PhraseIndex index = new PhraseIndex();
+    index.addDocuments(documents);
+
+    final PhraseFinder finder = new PhraseFinder();
+    for (int i = 0; i < 500; i++) {
+      final String phrase = randomString(random, chars, 1 + random.nextInt(3));
+      for (int documentId = 0; documentId < documents.size(); documentId++) {
+        assertEquals(phrase + " in " + documents.get(documentId),
+            finder.findPhrase(documents.get(documentId), phrase).posList.toString(),
+            index.findPhrase(documentId, phrase).toString());
+      }
+    }
+  }
+}
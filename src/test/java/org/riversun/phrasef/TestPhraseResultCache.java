@@ -0,0 +1,203 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.HintContent;
+import org.riversun.phrasef.PhraseFinder.HintListener;
+import org.riversun.phrasef.PhraseFinder.HintMode;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+
+/**
+ * Test for PhraseResultCache class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseResultCache {
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。";
+
+  private static final PhraseSet PHRASE_SET = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ"));
+
+  @Test
+  public void test_hit_miss() throws Exception {
+    // テストの期待動作：同じテキスト（内容が同じ別の文字列も含む）とPhraseSetの検索ではキャッシュした結果が返ること
+    final PhraseResultCache cache = new PhraseResultCache(10);
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+
+    final PhrasefResultSet first = obj.findPhrases(TEXT, PHRASE_SET);
+    final PhrasefResultSet second = obj.findPhrases(new String(TEXT.toCharArray()), PHRASE_SET);
+    assertEquals(new PhraseFinder().findPhrases(TEXT, PHRASE_SET).toString(), first.toString());
+    assertEquals(first.toString(), second.toString());
+
+    // 内容が同じでも別のPhraseSetならキャッシュしない
+    assertEquals(first.toString(), obj.findPhrases(TEXT, PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ"))).toString());
+
+    assertEquals(1, cache.getHitCount());
+    assertEquals(2, cache.getMissCount());
+    assertEquals(2, cache.size());
+    assertEquals(1.0 / 3, cache.getHitRate(), 1e-9);
+  }
+
+  @Test
+  public void test_hint_config() throws Exception {
+    // テストの期待動作：ヒントの設定が違うImmutablePhraseFinderどうしでキャッシュを共有しても、それぞれの設定でヒントが組み立てられること
+    final PhraseResultCache cache = new PhraseResultCache(10);
+    final ImmutablePhraseFinder square = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+    final ImmutablePhraseFinder square2 = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+    final ImmutablePhraseFinder bracket = new ImmutablePhraseFinder.Builder().setHintBrace("【", "】").setResultCache(cache).build();
+
+    assertEquals("これから仮想通貨として期待できるのは[ビットコイン]よりもむしろ[ビットコインキャッシュ]であろう。", square.findPhrases(TEXT, PHRASE_SET).hint);
+    assertEquals("これから仮想通貨として期待できるのは【ビットコイン】よりもむしろ【ビットコインキャッシュ】であろう。", bracket.findPhrases(TEXT, PHRASE_SET).hint);
+    assertEquals(square.findPhrases(TEXT, PHRASE_SET).toString(), square2.findPhrases(TEXT, PHRASE_SET).toString());
+
+    // 検出位置は共有される
+    assertEquals(1, cache.size());
+    assertEquals(3, cache.getHitCount());
+  }
+
+  @Test
+  public void test_eviction() throws Exception {
+    // テストの期待動作：上限を超えると、最も長く使われていない検索結果から捨てられること
+    final PhraseResultCache cache = new PhraseResultCache(2);
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+
+    obj.findPhrases("A" + TEXT, PHRASE_SET);
+    obj.findPhrases("B" + TEXT, PHRASE_SET);
+    obj.findPhrases("A" + TEXT, PHRASE_SET);
+    assertEquals(1, cache.getHitCount());
+    obj.findPhrases("C" + TEXT, PHRASE_SET);
+
+    assertEquals(2, cache.size());
+    assertEquals(1, cache.getEvictionCount());
+    obj.findPhrases("A" + TEXT, PHRASE_SET);
+    assertEquals(2, cache.getHitCount());
+    obj.findPhrases("B" + TEXT, PHRASE_SET);
+    assertEquals(2, cache.getHitCount());
+
+    cache.clear();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void test_concurrent() throws Exception {
+    // テストの期待動作：複数のスレッドから同時に使っても、正しい検索結果が返ること
+    final PhraseResultCache cache = new PhraseResultCache(16);
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+
+    final List<String> texts = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      texts.add(i % 32 + TEXT);
+    }
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<PhrasefResultSet> results = obj.findPhrasesInBatch(texts, PHRASE_SET, executor);
+      final PhraseFinder finder = new PhraseFinder();
+      for (int i = 0; i < texts.size(); i++) {
+        assertEquals(finder.findPhrases(texts.get(i), PHRASE_SET).toString(), results.get(i).toString());
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertEquals(texts.size(), cache.getHitCount() + cache.getMissCount());
+  }
+
+  @Test
+  public void test_long_text() throws Exception {
+    // テストの期待動作：ダイジェストを求める単位より長いテキストでも、末尾だけが違うテキストを区別すること
+    final PhraseResultCache cache = new PhraseResultCache(10);
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+
+    final StringBuilder sb = new StringBuilder();
+    while (sb.length() < 10000) {
+      sb.append(TEXT);
+    }
+    final String base = sb.toString();
+
+    final PhrasefResultSet a = obj.findPhrases(base + "ビットコイン", PHRASE_SET);
+    final PhrasefResultSet b = obj.findPhrases(base + "ビットコイソ", PHRASE_SET);
+    assertEquals(0, cache.getHitCount());
+    assertEquals(a.numOfHits, b.numOfHits + 1);
+    assertEquals(a.toString(), obj.findPhrases(base + "ビットコイン", PHRASE_SET).toString());
+    assertEquals(1, cache.getHitCount());
+  }
+
+  @Test
+  public void test_isolation() throws Exception {
+    // テストの期待動作：キャッシュを使った検索結果を呼び出し元が変更しても、以降の検索結果に影響しないこと
+    final PhraseResultCache cache = new PhraseResultCache(10);
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setResultCache(cache).build();
+
+    final String expected = obj.findPhrases(TEXT, PHRASE_SET).toString();
+
+    final PhrasefResultSet modified = obj.findPhrases(TEXT, PHRASE_SET);
+    modified.hint = "changed";
+    modified.phraseResultMap.get("ビットコイン").posList.clear();
+    modified.phraseResultMap.get("ビットコインキャッシュ").numOfHits = 100;
+    modified.phraseResultMap.remove("ビットコイン");
+
+    assertEquals(expected, obj.findPhrases(TEXT, PHRASE_SET).toString());
+    assertEquals(2, cache.getHitCount());
+  }
+
+  @Test
+  public void test_lazy_hint_concurrent() throws Exception {
+    // テストの期待動作：HintMode.LAZYでキャッシュを使った検索結果を複数のスレッドから同時に使っても、
+    // ヒントは一度だけ組み立てられ、すべてのスレッドで同じヒントが得られること
+    final PhraseResultCache cache = new PhraseResultCache(16);
+    final AtomicInteger numOfRenders = new AtomicInteger();
+    final ImmutablePhraseFinder obj = new ImmutablePhraseFinder.Builder().setHintMode(HintMode.LAZY).setHintListener(new HintListener() {
+      @Override
+      public HintContent onPhraseFound(HintContent hint) {
+        numOfRenders.incrementAndGet();
+        return hint;
+      }
+    }).setResultCache(cache).build();
+
+    final String expected = new PhraseFinder().findPhrases(TEXT, PHRASE_SET).hint;
+    final int numOfThreads = 8;
+    final ExecutorService executor = Executors.newFixedThreadPool(numOfThreads);
+    try {
+      for (int round = 0; round < 50; round++) {
+        final String text = round + TEXT;
+        // 先に検索してキャッシュしておき、キャッシュを使った検索結果を共有する（ヒントはまだ組み立てられていない）
+        obj.findPhrases(text, PHRASE_SET);
+        final PhrasefResultSet resultSet = obj.findPhrases(text, PHRASE_SET);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < numOfThreads; i++) {
+          futures.add(executor.submit(new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              start.await();
+              return resultSet.getHint();
+            }
+          }));
+        }
+        start.countDown();
+        final String hint = futures.get(0).get();
+        assertEquals(round + expected, hint);
+        for (Future<String> future : futures) {
+          assertSame(hint, future.get());
+        }
+      }
+    } finally {
+      executor.shutdown();
+    }
+    // 共有した検索結果ごとに、２つのフレーズのヒントを一度ずつ組み立てる
+    assertEquals(50 * 2, numOfRenders.get());
+    assertEquals(50, cache.getHitCount());
+  }
+}
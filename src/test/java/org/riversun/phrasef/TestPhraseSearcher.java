@@ -0,0 +1,65 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.riversun.phrasef.RandomTexts.randomString;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Test for PhraseSearcher class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseSearcher {
+
+  @Test
+  public void test_same_result_as_indexOf() throws Exception {
+    // テストの期待動作：どの探し方でもString#indexOfと同じ位置が得られること
+    // （下位8ビットが同じ文字 'A'(0x41) と 'Ł'(0x141) を混ぜて、ずらす量の表の衝突も確認する）
+    final String chars = "ABAŁーカナ";
+    final Random random = new Random(1);
+    final PhraseSearcher.Strategy[] strategies = { PhraseSearcher.INDEX_OF, PhraseSearcher.HORSPOOL, PhraseSearcher.AUTO };
+
+    for (int i = 0; i < 2000; i++) {
+      final String text = randomString(random, chars, random.nextInt(40));
+      final String phrase = randomString(random, chars, random.nextInt(20));
+      for (PhraseSearcher.Strategy strategy : strategies) {
+        final PhraseSearcher searcher = strategy.compile(phrase);
+        for (int fromIndex = -1; fromIndex <= text.length() + 1; fromIndex++) {
+          assertEquals(phrase + " in " + text + " from " + fromIndex, text.indexOf(phrase, fromIndex), searcher.indexOf(text, fromIndex));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void test_auto() throws Exception {
+    // テストの期待動作：長く、文字の種類が多いフレーズだけHorspool法が選ばれること
+    assertFalse(PhraseSearcher.AUTO.compile("ビットコイン") instanceof PhraseSearcher.HorspoolSearcher);
+    assertFalse(PhraseSearcher.AUTO.compile("ーーーーーーーーーーーーーーーーーーーー") instanceof PhraseSearcher.HorspoolSearcher);
+    assertTrue(PhraseSearcher.AUTO.compile("ビットコインキャッシュとイーサリアムクラシック") instanceof PhraseSearcher.HorspoolSearcher);
+    assertFalse(PhraseSearcher.AUTO.compile("BitcoinCashAndEthereumClassic") instanceof PhraseSearcher.HorspoolSearcher);
+  }
+
+  @Test
+  public void test_findPhrase() throws Exception {
+    // テストの期待動作：探し方を変えてもfindPhraseの結果が変わらないこと
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 50; i++) {
+      sb.append("ビットコインキャッシュイーサリアムクラシック、ビットコインキャッシュイーサリアム").append(i % 3 == 0 ? "クラシック。" : "クラシックス");
+    }
+    final String TEXT = sb.toString();
+    final String phrase = "ビットコインキャッシュイーサリアムクラシック";
+
+    final PhraseFinder indexOf = new PhraseFinder().setSearchStrategy(PhraseSearcher.INDEX_OF);
+    final PhraseFinder horspool = new PhraseFinder().setSearchStrategy(PhraseSearcher.HORSPOOL);
+    assertEquals(indexOf.findPhrase(TEXT, phrase).toString(), horspool.findPhrase(TEXT, phrase).toString());
+    assertEquals(indexOf.countPhrase(TEXT, phrase), horspool.countPhrase(TEXT, phrase));
+    assertTrue(horspool.countPhrase(TEXT, phrase) > 0);
+  }
+}
@@ -0,0 +1,187 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.riversun.phrasef.PhraseFinder.MatchMode;
+import org.riversun.phrasef.PhraseFinder.PhraseAnalysisMode;
+import org.riversun.phrasef.PhraseFinder.PhrasefResultSet;
+
+/**
+ * Test for PhraseSet class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseSet {
+
+  @Rule
+  public TemporaryFolder mFolder = new TemporaryFolder();
+
+  private static final String TEXT = "これから仮想通貨として期待できるのはビットコインよりもむしろビットコインキャッシュであろう。ただ、基盤としてビットコインが消えることは無い。";
+
+  @Test
+  public void test_compile() throws Exception {
+    // テストの期待動作：重複を除いたフレーズにIDが振られ、分析モードが事前に判定されていること
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "DENT", "ビットコイン", "300"));
+
+    assertEquals(3, phraseSet.size());
+    assertEquals(0, phraseSet.getPhraseId("ビットコイン"));
+    assertEquals(1, phraseSet.getPhraseId("DENT"));
+    assertEquals(2, phraseSet.getPhraseId("300"));
+    assertEquals(-1, phraseSet.getPhraseId("日本"));
+    assertEquals("DENT", phraseSet.getPhrase(1));
+    assertEquals(PhraseAnalysisMode.ZENKAKU_KATAKANA, phraseSet.getAnalysisMode(0));
+    assertEquals(PhraseAnalysisMode.HANKAKU_ALPHABET_ONLY, phraseSet.getAnalysisMode(1));
+    assertEquals(PhraseAnalysisMode.HANKAKU_NUMERIC_ONLY, phraseSet.getAnalysisMode(2));
+    assertEquals(6, phraseSet.getMaxPhraseLength());
+  }
+
+  @Test
+  public void test_findPhrases_with_phraseSet() throws Exception {
+    // テストの期待動作：コンパイル済みのフレーズ群で検索した結果が、フレーズのリストで検索した結果と一致すること
+    final List<String> SEARCH_PHRASES = new ArrayList<>(Arrays.asList("ビットコイン", "ビットコインキャッシュ"));
+    final PhraseFinder obj = new PhraseFinder();
+
+    final PhrasefResultSet expected = obj.findPhrases(TEXT, SEARCH_PHRASES);
+    final PhrasefResultSet actual = obj.findPhrases(TEXT, PhraseSet.compile(SEARCH_PHRASES));
+
+    assertEquals(expected.toString(), actual.toString());
+  }
+
+  @Test
+  public void test_share_phraseSet_between_threads() throws Exception {
+    // テストの期待動作：１つのPhraseSetを複数のスレッドから同時に利用しても、同じ結果が得られること
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "仮想通貨"));
+    final String expected = new PhraseFinder().findPhrases(TEXT, phraseSet).toString();
+
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      final List<Future<String>> futures = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        futures.add(executor.submit(new Callable<String>() {
+          @Override
+          public String call() throws Exception {
+            return new PhraseFinder().findPhrases(TEXT, phraseSet).toString();
+          }
+        }));
+      }
+      for (Future<String> future : futures) {
+        assertEquals(expected, future.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void test_snapshot() throws Exception {
+    // テストの期待動作：スナップショットから読み込んだPhraseSetが、元のPhraseSetと同じ内容・同じ検索結果になること
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "仮想通貨", "DENT", "300", "", "基盤として"));
+    final Path file = mFolder.getRoot().toPath().resolve("phrases.snapshot");
+    phraseSet.writeSnapshot(file);
+
+    final PhraseSet loaded = PhraseSet.loadSnapshot(file);
+    assertEquals(phraseSet.getPhrases(), loaded.getPhrases());
+    for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+      assertEquals(phraseSet.getAnalysisMode(phraseId), loaded.getAnalysisMode(phraseId));
+      assertEquals(phraseId, loaded.getPhraseId(phraseSet.getPhrase(phraseId)));
+    }
+
+    final PhraseFinder obj = new PhraseFinder();
+    assertEquals(obj.findPhrases(TEXT, phraseSet).toString(), obj.findPhrases(TEXT, loaded).toString());
+    assertEquals(obj.countPhrases(TEXT, phraseSet), obj.countPhrases(TEXT, loaded));
+
+    // 上書きできること
+    PhraseSet.compile(Arrays.asList("DENT")).writeSnapshot(file);
+    assertEquals(Arrays.asList("DENT"), PhraseSet.loadSnapshot(file).getPhrases());
+
+    // 空のPhraseSet
+    PhraseSet.compile(new ArrayList<String>()).writeSnapshot(file);
+    assertEquals(0, PhraseSet.loadSnapshot(file).size());
+
+    // 全角・半角、大文字・小文字の違いを無視するPhraseSet
+    PhraseSet.compile(Arrays.asList("ＤＥＮＴ", "Dent2"), MatchMode.FOLD_WIDTH_AND_CASE).writeSnapshot(file);
+    final PhraseSet folding = PhraseSet.loadSnapshot(file);
+    assertEquals(MatchMode.FOLD_WIDTH_AND_CASE, folding.getMatchMode());
+    assertEquals(0, folding.getPhraseId("dent"));
+    assertEquals(3, obj.countPhrases("dentと、ＤＥＮＴ２。", folding));
+  }
+
+  @Test
+  public void test_snapshot_invalid() throws Exception {
+    // テストの期待動作：壊れたスナップショットやバージョンの異なるスナップショットは読み込まれないこと
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("ビットコイン", "ビットコインキャッシュ", "DENT"));
+    final Path file = mFolder.getRoot().toPath().resolve("phrases.snapshot");
+    phraseSet.writeSnapshot(file);
+    final byte[] original = Files.readAllBytes(file);
+
+    // 本体の１バイトが壊れている場合
+    final byte[] corrupted = original.clone();
+    corrupted[original.length / 2] ^= 0x01;
+    assertInvalidSnapshot(file, corrupted, "checksum");
+
+    // バージョンが異なる場合
+    final byte[] stale = original.clone();
+    stale[7] = (byte) (PhraseSetSnapshot.VERSION + 1);
+    assertInvalidSnapshot(file, stale, "version");
+
+    // 途中で切れている場合
+    assertInvalidSnapshot(file, Arrays.copyOf(original, original.length - 3), "truncated");
+
+    // スナップショットではない場合
+    assertInvalidSnapshot(file, "ビットコイン".getBytes("UTF-8"), "Not a PhraseSet snapshot");
+
+    // チェックサムは正しいが、失敗遷移や出力リンクが循環している場合（検索が終わらなくなるので読み込まないこと）
+    int automatonOffset = 16 + 1 + 4;
+    for (String phrase : Arrays.asList("ビットコイン", "ビットコインキャッシュ", "DENT")) {
+      automatonOffset += 1 + 4 + 4 + phrase.length() * 2;
+    }
+    final int numOfNodes = ByteBuffer.wrap(original).getInt(automatonOffset);
+    final int lastNode = numOfNodes - 1;
+    final int failOffset = original.length - numOfNodes * 4 * 3;
+    final int outputLinkOffset = original.length - numOfNodes * 4;
+
+    final byte[] cyclicFail = original.clone();
+    ByteBuffer.wrap(cyclicFail).putInt(failOffset + lastNode * 4, lastNode);
+    assertInvalidSnapshot(file, withValidChecksum(cyclicFail), "invalid automaton link");
+
+    final byte[] cyclicOutputLink = original.clone();
+    ByteBuffer.wrap(cyclicOutputLink).putInt(outputLinkOffset + lastNode * 4, lastNode);
+    assertInvalidSnapshot(file, withValidChecksum(cyclicOutputLink), "invalid automaton link");
+  }
+
+  private static byte[] withValidChecksum(byte[] bytes) {
+    final CRC32 crc = new CRC32();
+    crc.update(bytes, 16, bytes.length - 16);
+    ByteBuffer.wrap(bytes).putInt(12, (int) crc.getValue());
+    return bytes;
+  }
+
+  private static void assertInvalidSnapshot(Path file, byte[] bytes, String expectedMessage) throws Exception {
+    Files.write(file, bytes);
+    try {
+      PhraseSet.loadSnapshot(file);
+      fail("IOException expected");
+    } catch (IOException e) {
+      assertTrue(e.getMessage(), e.getMessage().contains(expectedMessage));
+    }
+  }
+}
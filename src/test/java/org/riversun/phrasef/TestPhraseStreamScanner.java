@@ -0,0 +1,108 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.riversun.phrasef.PhraseFinder.PhraseHitListener;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+
+/**
+ * Test for PhraseStreamScanner class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseStreamScanner {
+
+  private static final String TEXT = "DENT 週刊PRESIDENTオンラインの記事では仮想通貨DENTに関する記事を3000円で閲覧できます。DENTはDENTAL COINとは別モノです。300円、スキー、ハスキー、日本代表、日本。DENT";
+
+  private static final List<String> SEARCH_PHRASES = Arrays.asList("DENT", "DENTAL", "300", "3000", "スキー", "日本", "記事");
+
+  /**
+   * 指定した文字数ずつしか読み込めないReader
+   */
+  private static class ChunkedReader extends Reader {
+    private final Reader mReader;
+    private final int mChunkSize;
+
+    ChunkedReader(String text, int chunkSize) {
+      mReader = new StringReader(text);
+      mChunkSize = chunkSize;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      return mReader.read(cbuf, off, Math.min(len, mChunkSize));
+    }
+
+    @Override
+    public void close() throws IOException {
+      mReader.close();
+    }
+  }
+
+  private static List<String> collectHits(PhraseSet phraseSet, Reader reader) throws IOException {
+    final List<String> hits = new ArrayList<>();
+    new PhraseFinder().findPhrases(reader, phraseSet, new PhraseHitListener() {
+      @Override
+      public void onPhraseHit(String phrase, int phraseId, long startIndex, long endIndex) {
+        hits.add(phrase + ":" + startIndex + "-" + endIndex);
+      }
+    });
+    return hits;
+  }
+
+  private static List<String> expectedHits(PhraseSet phraseSet, String text) {
+    final PhrasefCompactResult compactResult = new PhraseFinder().findPhrasesCompact(text, phraseSet);
+    final List<String> hits = new ArrayList<>();
+    for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+      for (int n = 0; n < compactResult.getNumOfHits(phraseId); n++) {
+        hits.add(phraseSet.getPhrase(phraseId) + ":" + compactResult.getStartIndex(phraseId, n) + "-" + compactResult.getEndIndex(phraseId, n));
+      }
+    }
+    return hits;
+  }
+
+  @Test
+  public void test_stream_same_result_as_findPhrases() throws Exception {
+    // テストの期待動作：どのような大きさのチャンクで読み込んでも、文字列全体を検索した結果と同じヒットが得られること
+    final PhraseSet phraseSet = PhraseSet.compile(SEARCH_PHRASES);
+    final List<String> expected = expectedHits(phraseSet, TEXT);
+    expected.sort(null);
+
+    for (int chunkSize = 1; chunkSize <= 10; chunkSize++) {
+      final List<String> actual = collectHits(phraseSet, new ChunkedReader(TEXT, chunkSize));
+      actual.sort(null);
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void test_feed_chunks() throws Exception {
+    // テストの期待動作：チャンクの境目をまたぐフレーズと、その前後の文字を正しく判定すること
+    final PhraseSet phraseSet = PhraseSet.compile(Arrays.asList("DENT"));
+    final List<String> hits = new ArrayList<>();
+    final PhraseStreamScanner scanner = new PhraseStreamScanner(phraseSet, new PhraseHitListener() {
+      @Override
+      public void onPhraseHit(String phrase, int phraseId, long startIndex, long endIndex) {
+        hits.add(startIndex + "-" + endIndex);
+      }
+    });
+
+    scanner.feed("仮想通貨DE").feed("NTに関するPRESIDE").feed("NTとDENT");
+
+    // 末尾の"DENT"は、次の文字が届くかテキストが終わるまで確定しない
+    assertEquals(Arrays.asList("4-8"), hits);
+
+    assertEquals(2, scanner.finish());
+    assertEquals(Arrays.asList("4-8", "22-26"), hits);
+    assertEquals(26, scanner.getPosition());
+  }
+}
@@ -0,0 +1,66 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Test for PhraseTypeDetector class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestPhraseTypeDetector {
+
+  @Test
+  public void test_char_class_table_is_same_as_regex() throws Exception {
+    // テストの期待動作：文字種別テーブルによる判定が、以前の正規表現による判定とすべての文字で一致すること
+    final Pattern zenkakuKatakanaPattern = Pattern.compile("^[ァ-ヶー]+$");
+    final Pattern zenkakuHiraganaPattern = Pattern.compile("^[ぁ-んー]+$");
+    final Pattern zenkakuNumericPattern = Pattern.compile("^[０-９]+$");
+    final Pattern zenkakuKanji = Pattern.compile("^[一-龥]+$");
+    final Pattern hankakuAlphaNumericPattern = Pattern.compile("^[0-9a-zA-Z\\-\\_]+$");
+    final Pattern hankakuAlphabetPattern = Pattern.compile("^[a-zA-Z\\-\\_]+$");
+    final Pattern hankakuNumericPattern = Pattern.compile("^[0-9]+$");
+
+    for (int i = Character.MIN_VALUE; i <= Character.MAX_VALUE; i++) {
+      final char c = (char) i;
+      final String str = String.valueOf(c);
+
+      assertEquals(zenkakuKatakanaPattern.matcher(str).matches(), PhraseTypeDetector.isZenkakuKatakana(c));
+      assertEquals(zenkakuHiraganaPattern.matcher(str).matches(), PhraseTypeDetector.isZenkakuHiragana(c));
+      assertEquals(zenkakuNumericPattern.matcher(str).matches(), PhraseTypeDetector.isZenkakuNumeric(c));
+      assertEquals(zenkakuKanji.matcher(str).matches(), PhraseTypeDetector.isZenkakuKanji(c));
+      assertEquals(hankakuAlphaNumericPattern.matcher(str).matches(), PhraseTypeDetector.isHankakuAlphaNumeric(c));
+      assertEquals(hankakuAlphabetPattern.matcher(str).matches(), PhraseTypeDetector.isHankakuAlphabet(c));
+      assertEquals(hankakuNumericPattern.matcher(str).matches(), PhraseTypeDetector.isHankakuNumeric(c));
+
+      assertEquals(PhraseTypeDetector.getCharClass(c), PhraseTypeDetector.getCodePointClass(i));
+    }
+  }
+
+  @Test
+  public void test_string_only_methods() throws Exception {
+    // テストの期待動作：文字列がその文字種別のみで構成されている場合だけtrueとなること
+    assertTrue(PhraseTypeDetector.isZenkakuKatakanaOnly("スキー"));
+    assertFalse(PhraseTypeDetector.isZenkakuKatakanaOnly("スキーA"));
+    assertTrue(PhraseTypeDetector.isZenkakuHiraganaOnly("あたご"));
+    assertTrue(PhraseTypeDetector.isZenkakuKanjiOnly("日本"));
+    assertTrue(PhraseTypeDetector.isZenkakuNumericOnly("３０"));
+    assertTrue(PhraseTypeDetector.isHankakuNumericOnly("300"));
+    assertTrue(PhraseTypeDetector.isHankakuAlphabetOnly("DENT"));
+    assertFalse(PhraseTypeDetector.isHankakuAlphabetOnly("MAX280ES"));
+    assertTrue(PhraseTypeDetector.isHankakuAlphaNumericOnly("MAX280ES"));
+
+    // 空文字列はどの文字種別にも該当しない
+    assertFalse(PhraseTypeDetector.isHankakuAlphabetOnly(""));
+    assertEquals(0, PhraseTypeDetector.getCommonCharClass(""));
+
+    // 補助文字はどの文字種別にも該当しない
+    assertEquals(0, PhraseTypeDetector.getCodePointClass(0x20B9F));
+  }
+}
@@ -0,0 +1,148 @@
+package org.riversun.phrasef;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.riversun.phrasef.PhraseFinder.PhrasefCompactResult;
+import org.riversun.phrasef.PhraseFinder.PhrasefUtf8CompactResult;
+import org.riversun.phrasef.PhraseFinder.Utf8PhraseHitListener;
+
+/**
+ * Test for Utf8PhraseScanner class <br>
+ * <br>
+ * 
+ * @author Tom Misawa (riversun.org@gmail.com)
+ */
+public class TestUtf8PhraseScanner {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  // 補助文字（𠮷、絵文字）を含むテキスト
+  private static final String TEXT = "DENT 週刊PRESIDENTオンラインの記事では仮想通貨DENTに関する記事を3000円で閲覧できます。𠮷DENTはDENTAL COINとは別モノです😀300円、スキー、ハスキー、日本代表、日本。DENT";
+
+  private static final List<String> SEARCH_PHRASES = Arrays.asList("DENT", "DENTAL", "300", "3000", "スキー", "日本", "記事");
+
+  private static List<String> expectedHits(PhraseSet phraseSet, String text) {
+    final PhrasefCompactResult compactResult = new PhraseFinder().findPhrasesCompact(text, phraseSet);
+    final List<String> hits = new ArrayList<>();
+    for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+      for (int n = 0; n < compactResult.getNumOfHits(phraseId); n++) {
+        final int startIndex = compactResult.getStartIndex(phraseId, n);
+        final int endIndex = compactResult.getEndIndex(phraseId, n);
+        final int byteStartIndex = text.substring(0, startIndex).getBytes(StandardCharsets.UTF_8).length;
+        final int byteEndIndex = text.substring(0, endIndex).getBytes(StandardCharsets.UTF_8).length;
+        hits.add(phraseSet.getPhrase(phraseId) + ":" + byteStartIndex + "-" + byteEndIndex + "/" + startIndex + "-" + endIndex);
+      }
+    }
+    hits.sort(null);
+    return hits;
+  }
+
+  private static Utf8PhraseHitListener collectTo(final List<String> hits) {
+    return new Utf8PhraseHitListener() {
+      @Override
+      public void onPhraseHit(String phrase, int phraseId, long byteStartIndex, long byteEndIndex, long charStartIndex, long charEndIndex) {
+        hits.add(phrase + ":" + byteStartIndex + "-" + byteEndIndex + "/" + charStartIndex + "-" + charEndIndex);
+      }
+    };
+  }
+
+  @Test
+  public void test_findPhrasesInFile() throws Exception {
+    // テストの期待動作：UTF-8のファイルを文字列にデコードせずに検索し、文字列を検索した結果と同じ位置（バイト単位、文字単位）が得られること
+    final PhraseSet phraseSet = PhraseSet.compile(SEARCH_PHRASES);
+    final File file = tempFolder.newFile("text.txt");
+    Files.write(file.toPath(), TEXT.getBytes(StandardCharsets.UTF_8));
+
+    final List<String> hits = new ArrayList<>();
+    final long numOfHits = new PhraseFinder().findPhrasesInFile(file.toPath(), phraseSet, collectTo(hits));
+    hits.sort(null);
+
+    assertEquals(expectedHits(phraseSet, TEXT), hits);
+    assertEquals(hits.size(), numOfHits);
+  }
+
+  @Test
+  public void test_feed_bytes_one_by_one() throws Exception {
+    // テストの期待動作：１バイトずつ与えても、コードポイントやフレーズの境目を正しく判定すること
+    final PhraseSet phraseSet = PhraseSet.compile(SEARCH_PHRASES);
+    final byte[] bytes = TEXT.getBytes(StandardCharsets.UTF_8);
+
+    final List<String> hits = new ArrayList<>();
+    final Utf8PhraseScanner scanner = new Utf8PhraseScanner(phraseSet, collectTo(hits));
+    for (byte b : bytes) {
+      scanner.feed(b);
+    }
+    scanner.finish();
+    hits.sort(null);
+
+    assertEquals(expectedHits(phraseSet, TEXT), hits);
+    assertEquals(bytes.length, scanner.getBytePosition());
+    assertEquals(TEXT.length(), scanner.getCharPosition());
+  }
+
+  @Test
+  public void test_findPhrases_bytes() throws Exception {
+    // テストの期待動作：byte[]、ヒープとダイレクトのByteBufferから、文字列と同じフレーズがバイト単位と文字単位の位置で得られること
+    final PhraseSet phraseSet = PhraseSet.compile(SEARCH_PHRASES);
+    final byte[] utf8 = TEXT.getBytes(StandardCharsets.UTF_8);
+    final List<String> expected = expectedHits(phraseSet, TEXT);
+
+    final PhraseFinder obj = new PhraseFinder();
+
+    final List<String> hitsOfBytes = new ArrayList<>();
+    assertEquals(expected.size(), obj.findPhrases(utf8, phraseSet, collectTo(hitsOfBytes)));
+    hitsOfBytes.sort(null);
+    assertEquals(expected, hitsOfBytes);
+
+    final ByteBuffer direct = ByteBuffer.allocateDirect(utf8.length + 3);
+    direct.put(new byte[] { 'x', 'x', 'x' }).put(utf8).position(3);
+    for (ByteBuffer buffer : Arrays.asList(ByteBuffer.wrap(utf8), direct)) {
+      final List<String> hits = new ArrayList<>();
+      obj.findPhrases(buffer, phraseSet, collectTo(hits));
+      hits.sort(null);
+      assertEquals(expected, hits);
+      assertEquals(toHits(phraseSet, obj.findPhrasesCompact(buffer, phraseSet)), expected);
+    }
+    assertEquals(3, direct.position());
+
+    // 部分配列の位置はoffsetからの位置となる
+    final byte[] padded = ("xxx" + TEXT + "yyy").getBytes(StandardCharsets.UTF_8);
+    final List<String> hitsOfRange = new ArrayList<>();
+    obj.findPhrases(padded, 3, utf8.length, phraseSet, collectTo(hitsOfRange));
+    hitsOfRange.sort(null);
+    assertEquals(expected, hitsOfRange);
+
+    // 文字単位の位置は、文字列を検索した結果と同じになる
+    final PhrasefUtf8CompactResult compactResult = obj.findPhrasesCompact(utf8, phraseSet);
+    assertEquals(toHits(phraseSet, compactResult), expected);
+    final PhrasefCompactResult compactResultOfString = obj.findPhrasesCompact(TEXT, phraseSet);
+    for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+      assertEquals(Arrays.toString(compactResultOfString.getStartIndexes(phraseId)), Arrays.toString(compactResult.getStartIndexes(phraseId)));
+      assertEquals(Arrays.toString(compactResultOfString.getEndIndexes(phraseId)), Arrays.toString(compactResult.getEndIndexes(phraseId)));
+    }
+  }
+
+  private static List<String> toHits(PhraseSet phraseSet, PhrasefUtf8CompactResult compactResult) {
+    final List<String> hits = new ArrayList<>();
+    for (int phraseId = 0; phraseId < phraseSet.size(); phraseId++) {
+      for (int n = 0; n < compactResult.getNumOfHits(phraseId); n++) {
+        hits.add(phraseSet.getPhrase(phraseId) + ":" + compactResult.getByteStartIndex(phraseId, n) + "-" + compactResult.getByteEndIndex(phraseId, n) + "/"
+            + compactResult.getStartIndex(phraseId, n) + "-" + compactResult.getEndIndex(phraseId, n));
+      }
+    }
+    hits.sort(null);
+    return hits;
+  }
+}